@@ -0,0 +1,65 @@
+package benchmarks;
+
+import core.DuckFlock;
+import core.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for game ticks with a duck flock: a 1000x600 main world filled
+ * with ducks (a third each wandering, following the gardener and chasing
+ * carrots) while the gardener walks round in a square. Ticks are sampled one
+ * by one, so the results show the percentiles of a tick and not only its
+ * mean; ducks = 0 is the same world without a flock, for comparison.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuckFlockBenchmark {
+
+    // Number of ducks in the flock
+    @Param({"0", "3000"})
+    int ducks;
+
+    Session session;           // The game being ticked
+    int step;                  // Ticks run so far, to pick the next key
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        session = Session.newGame("n2024s", 1000, 600);
+        if (ducks > 0) {
+            DuckFlock flock = session.ducks();
+            flock.spawn(ducks / 3, DuckFlock.WANDER);
+            flock.spawn(ducks / 3, DuckFlock.FOLLOW);
+            flock.spawn(ducks - 2 * (ducks / 3), DuckFlock.CHASE);
+        }
+        session.fingerprint();  // Builds carrot world up front, not in the first tick
+    }
+
+    /**
+     * One game tick per call, the gardener going round in a square so it
+     * keeps moving instead of getting stuck against a wall.
+     */
+    @Benchmark
+    public long tick() {
+        session.tick("wdsa".charAt((step++ >> 2) & 3));
+        return session.fingerprint();
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import core.CarrotWorld;
+import core.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for generating the two worlds from a seed: the main world
+ * (rooms, hallways, carrots not included), the carrot world, and respawning
+ * the carrot on the picnic table after one has been eaten.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+    // A short seed and one using the whole long range
+    @Param({"n1234s", "n5197880843569031643s"})
+    String seed;
+
+    CarrotWorld carrotWorld;   // Carrot world whose carrot is respawned over and over
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        carrotWorld = new CarrotWorld(seed);
+    }
+
+    @Benchmark
+    public World world() {
+        return new World(seed);
+    }
+
+    @Benchmark
+    public CarrotWorld carrotWorld() {
+        return new CarrotWorld(seed);
+    }
+
+    @Benchmark
+    public long respawnCarrot() {
+        carrotWorld.respawnCarrot();
+        return carrotWorld.fingerprint();
+    }
+}
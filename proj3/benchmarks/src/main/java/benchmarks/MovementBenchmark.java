@@ -0,0 +1,107 @@
+package benchmarks;
+
+import core.AutograderBuddy;
+import core.AvatarMoves;
+import core.CarrotWorld;
+import core.MemorySaveStore;
+import core.World;
+import core.WorldDump;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tileengine.TETile;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for moving around: single avatar steps, and whole input scripts
+ * (seed plus thousands of moves) run through AutograderBuddy.getWorldFromInput
+ * the way the autograder does, with an in-memory save store and no world dump.
+ *
+ * @version 1.0
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovementBenchmark {
+
+    /**
+     * Avatars on the main world, walked around by avatarSteps.
+     */
+    @State(Scope.Thread)
+    public static class Walk {
+        AvatarMoves movement;      // Avatars being moved
+        int step;                  // Number of avatar steps taken so far
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            movement = new AvatarMoves(new World("n2024s"), new CarrotWorld("n2024s"));
+            movement.spawnAvatar();
+        }
+    }
+
+    /**
+     * An input script: "n2024s" followed by random gardener and duck moves.
+     */
+    @State(Scope.Thread)
+    public static class Script {
+        // Number of moves in the script
+        @Param({"100", "1000", "10000"})
+        int moves;
+
+        String input;              // The whole script
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random rand = new Random(2024);
+            StringBuilder sb = new StringBuilder("n2024s");
+            String keys = "wasdijkl";
+            for (int i = 0; i < moves; i++) {
+                sb.append(keys.charAt(rand.nextInt(keys.length())));
+            }
+            input = sb.toString();
+        }
+    }
+
+    /**
+     * One gardener step per call, going round in a square so the gardener
+     * keeps moving instead of getting stuck against a wall.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long avatarSteps(Walk walk) {
+        switch ((walk.step++ >> 3) & 3) {
+            case 0:
+                walk.movement.avatarUp();
+                break;
+            case 1:
+                walk.movement.avatarRight();
+                break;
+            case 2:
+                walk.movement.avatarDown();
+                break;
+            default:
+                walk.movement.avatarLeft();
+                break;
+        }
+        return walk.movement.fingerprint();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public TETile[][] worldFromInput(Script script) {
+        return AutograderBuddy.getWorldFromInput(script.input, new MemorySaveStore(), WorldDump.none());
+    }
+}
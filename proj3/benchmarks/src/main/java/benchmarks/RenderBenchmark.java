@@ -0,0 +1,62 @@
+package benchmarks;
+
+import core.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tileengine.TEImageRenderer;
+import tileengine.TETile;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for turning a frame into something to look at: the text form
+ * used by the autograder and world dumps (TETile.toString), and drawing
+ * every tile of the 100x60 game window.
+ *
+ * Drawing goes through TEImageRenderer, which draws the same tiles as
+ * TERenderer but into an image, because StdDraw opens a window and cannot
+ * run on a machine with no display. The fork runs with java.awt.headless
+ * set so the numbers do not depend on whether a display happens to exist.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    TETile[][] frame;          // Main world with both avatars, as on screen
+    TEImageRenderer renderer;  // Offscreen renderer the size of the game window
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Session session = Session.newGame("n2024s");
+        frame = session.frame();
+        renderer = new TEImageRenderer();
+        renderer.initialize(frame.length, frame[0].length);
+    }
+
+    @Benchmark
+    public String tilesToString() {
+        return TETile.toString(frame);
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+        renderer.renderFrame(frame);
+        return renderer.image();
+    }
+}
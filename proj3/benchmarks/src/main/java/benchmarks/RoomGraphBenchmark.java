@@ -0,0 +1,152 @@
+package benchmarks;
+
+import core.HierarchicalPathfinder;
+import core.RoomGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for HierarchicalPathfinder on a world too large to keep as tiles.
+ *
+ * The world is a lattice of 200x200 rooms (one per 50x50 block, with random
+ * sizes and centers, so 10000x10000 tiles) joined by L-shaped corridors to
+ * their neighbours, leaving out a third of the links so routes have to wind
+ * around. It is never stored as tiles; RoomGraph::walkable stands in for it.
+ * build times building the pathfinder; route and path time queries between
+ * random room centers, either nearby (within five rooms) or anywhere.
+ *
+ * @version 1.0
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomGraphBenchmark {
+
+    private static final int SIDE = 200;       // Rooms along each side of the lattice
+    private static final int CELL = 50;        // Side of the block each room sits in, in tiles
+    private static final int QUERIES = 1024;   // Number of queries cycled through, a power of two
+
+    /**
+     * The room lattice, with no pathfinder built yet.
+     */
+    @State(Scope.Benchmark)
+    public static class Lattice {
+        RoomGraph graph;           // The rooms and corridors
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            graph = lattice(new Random(2024));
+        }
+    }
+
+    /**
+     * The room lattice with its pathfinder, and queries between room centers.
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        // How far apart the two ends of a query are: "nearby" or "anywhere"
+        @Param({"nearby", "anywhere"})
+        String span;
+
+        HierarchicalPathfinder pathfinder;
+        int[] ends;                // Start x, start y, goal x and goal y of each query
+        int next;                  // Index of the next query
+
+        @Setup(Level.Trial)
+        public void setUp(Lattice lattice) {
+            RoomGraph graph = lattice.graph;
+            pathfinder = new HierarchicalPathfinder(graph, graph::walkable);
+            int reach = span.equals("nearby") ? 5 : SIDE;
+            Random random = new Random(2024);
+            ends = new int[4 * QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                int i = random.nextInt(SIDE);
+                int j = random.nextInt(SIDE);
+                int a = i * SIDE + j;
+                int b = clamp(i + random.nextInt(2 * reach + 1) - reach) * SIDE
+                        + clamp(j + random.nextInt(2 * reach + 1) - reach);
+                ends[4 * q] = graph.centerX(a);
+                ends[4 * q + 1] = graph.centerY(a);
+                ends[4 * q + 2] = graph.centerX(b);
+                ends[4 * q + 3] = graph.centerY(b);
+            }
+        }
+
+        // Returns the offset in ends of the next query to run
+        int next() {
+            int q = next;
+            next = (next + 1) & (QUERIES - 1);
+            return 4 * q;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public HierarchicalPathfinder build(Lattice lattice) {
+        return new HierarchicalPathfinder(lattice.graph, lattice.graph::walkable);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] route(Queries queries) {
+        int q = queries.next();
+        int[] ends = queries.ends;
+        return queries.pathfinder.route(ends[q], ends[q + 1], ends[q + 2], ends[q + 3]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] path(Queries queries) {
+        int q = queries.next();
+        int[] ends = queries.ends;
+        return queries.pathfinder.path(ends[q], ends[q + 1], ends[q + 2], ends[q + 3]);
+    }
+
+    private static RoomGraph lattice(Random random) {
+        RoomGraph graph = new RoomGraph();
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                int x0 = i * CELL + 5 + random.nextInt(5);
+                int y0 = j * CELL + 5 + random.nextInt(5);
+                int x1 = x0 + 15 + random.nextInt(15);
+                int y1 = y0 + 15 + random.nextInt(15);
+                graph.addRoom(x0, y0, x1, y1, x0 + 1 + random.nextInt(x1 - x0 - 1),
+                        y0 + 1 + random.nextInt(y1 - y0 - 1));
+            }
+        }
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                int room = i * SIDE + j;
+                if (i + 1 < SIDE && (j == 0 || random.nextInt(3) > 0)) {
+                    graph.addCorridor(graph.centerX(room), graph.centerY(room),
+                            graph.centerX(room + SIDE), graph.centerY(room + SIDE));
+                }
+                if (j + 1 < SIDE && random.nextInt(3) > 0) {
+                    graph.addCorridor(graph.centerX(room), graph.centerY(room),
+                            graph.centerX(room + 1), graph.centerY(room + 1));
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(SIDE - 1, v));
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tileengine.ChunkedGrid;
+import tileengine.TETile;
+import tileengine.Tileset;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for taking a snapshot of a world: a full copy of a tile array
+ * (TETile.copyOf) against a copy-on-write ChunkedGrid snapshot, alone and
+ * followed by the one-tile write a move makes.
+ *
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    // Side of the square world, in tiles
+    @Param({"100", "4096"})
+    int size;
+
+    TETile[][] array;          // The world as a plain array
+    ChunkedGrid chunked;       // The same world in chunks
+    int step;                  // Moves made so far, to vary the tile written
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = new TETile[size][size];
+        for (TETile[] column : array) {
+            Arrays.fill(column, Tileset.GRASS);
+        }
+        chunked = ChunkedGrid.of(array);
+    }
+
+    @Benchmark
+    public TETile[][] copyArray() {
+        return TETile.copyOf(array);
+    }
+
+    @Benchmark
+    public ChunkedGrid snapshot() {
+        return chunked.snapshot();
+    }
+
+    @Benchmark
+    public ChunkedGrid snapshotAndMove() {
+        ChunkedGrid before = chunked.snapshot();
+        step += 1;
+        chunked.set(step % size, size / 2, (step & 1) == 0 ? Tileset.DIRT : Tileset.AVATAR);
+        return before;
+    }
+}
@@ -1,15 +1,29 @@
 package core;
 
 import tileengine.TETile;
-import tileengine.Tileset;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class AutograderBuddy {
 
+    // Where arraifyWorld sends world dumps when no sink is given
+    private static volatile WorldDump worldDump = WorldDump.stdout();
+
+    /**
+     * Changes where world dumps go by default, e.g. WorldDump.none() to turn them off.
+     *
+     * @param dump The sink to use from now on
+     */
+    public static void setWorldDump(WorldDump dump) {
+        worldDump = dump;
+    }
+
     /**
      * Simulates a game, but doesn't render anything or call any StdDraw
      * methods. Instead, returns the world that would result if the input string
@@ -26,19 +40,74 @@ public class AutograderBuddy {
 
     //calls arraifyWorld to symbolize our world as an array
     public static TETile[][] getWorldFromInput(String input) {
+        return getWorldFromInput(input, Game.saveStore());
+    }
+
+    /**
+     * Same as getWorldFromInput(String), but loads from and saves to the given store
+     * instead of the game's save file. Scripts that use different stores do not see
+     * each other's saves, so they can safely run at the same time.
+     *
+     * @param input the input string to feed to your program
+     * @param store the save store this script loads from and saves to
+     * @return the 2D TETile[][] representing the state of the world
+     */
+    public static TETile[][] getWorldFromInput(String input, SaveStore store) {
+        return getWorldFromInput(input, store, worldDump);
+    }
+
+    /**
+     * Same as getWorldFromInput(String, SaveStore), but sends the world dump to the
+     * given sink instead of the default one.
+     *
+     * @param input the input string to feed to your program
+     * @param store the save store this script loads from and saves to
+     * @param dump where to write the text dump of the resulting world
+     * @return the 2D TETile[][] representing the state of the world
+     */
+    public static TETile[][] getWorldFromInput(String input, SaveStore store, WorldDump dump) {
+        AvatarMoves movement = play(input, store);
+        return arraifyWorld(movement.main, movement, dump);
+    }
+
+    /**
+     * Same as getWorldFromInput(String), but returns the resulting world's
+     * fingerprint (see AvatarMoves.fingerprint) instead of the world itself.
+     * Comparing two fingerprints takes constant time, where comparing two
+     * TETile[][] walks every tile; nothing is dumped.
+     *
+     * @param input the input string to feed to your program
+     * @return 64-bit fingerprint of the resulting world, avatars included
+     */
+    public static long getFingerprintFromInput(String input) {
+        return getFingerprintFromInput(input, Game.saveStore());
+    }
+
+    /**
+     * Same as getFingerprintFromInput(String), but loads from and saves to the given store.
+     *
+     * @param input the input string to feed to your program
+     * @param store the save store this script loads from and saves to
+     * @return 64-bit fingerprint of the resulting world, avatars included
+     */
+    public static long getFingerprintFromInput(String input, SaveStore store) {
+        return play(input, store).fingerprint();
+    }
+
+    // Plays the input script against the store and returns the movement state it ends in
+    private static AvatarMoves play(String input, SaveStore store) {
         String seed = "";
         ArrayList<Character> moves = new ArrayList<>();
         //have i saved before?
-        File f = new File("./save.txt");
-        boolean saved = f.exists();
+        boolean saved = store.exists();
         AvatarMoves movement;
         World w;
 
         if (input.charAt(0) == 'L' || input.charAt(0) == 'l' && saved) {
-            seed = Game.getSeed("");
+            seed = Game.getSeed("", store);
             w = new World(seed);
-            movement = new AvatarMoves(w, new CarrotWorld(seed));
-            movement.loadAvatar();
+            movement = new AvatarMoves(w);
+            movement.loadAvatar(store);
             input = input.substring(1);
             for (Character c : input.toCharArray()) { //create list of moves
                 moves.add(c);
@@ -54,32 +123,87 @@ public class AutograderBuddy {
             }
             seed += moves.remove(0);
             w = new World(seed);
-            movement = new AvatarMoves(w, new CarrotWorld(seed));
+            movement = new AvatarMoves(w);
             movement.spawnAvatar();
         }
 
-        doTheMoves(movement, moves, seed);
+        doTheMoves(movement, moves, seed, store);
 
-        return arraifyWorld(w, movement);
+        return movement;
     }
 
-    // turn world 2D array into string
-    public static TETile[][] arraifyWorld(World w, AvatarMoves movement) {
-        TETile[][] warr = movement.world;
-        StringBuilder world = new StringBuilder();
-        for (TETile[] teTiles : warr) {
-            for (TETile tile : teTiles) {
-                world.append(tile.character);
+    /**
+     * Evaluates many independent input scripts at once, one per worker thread.
+     *
+     * Each script gets its own in-memory save store, so a script ending in ":q" never
+     * overwrites another script's save (or ./save.txt). Results come back in the same
+     * order as the inputs, each with the time it took to run. World dumps are off.
+     *
+     * @param inputs the input strings to evaluate
+     * @return one WorldResult per input, in input order
+     */
+    public static List<WorldResult> getWorldsFromInputs(List<String> inputs) {
+        return getWorldsFromInputs(inputs, WorldDump.none());
+    }
+
+    /**
+     * Same as getWorldsFromInputs(List), but writes every resulting world to dump.
+     *
+     * @param inputs the input strings to evaluate
+     * @param dump where to write the text dump of each resulting world
+     * @return one WorldResult per input, in input order
+     */
+    public static List<WorldResult> getWorldsFromInputs(List<String> inputs, WorldDump dump) {
+        List<WorldResult> results = new ArrayList<>();
+        if (inputs.isEmpty()) {
+            return results;
+        }
+
+        int threads = Math.min(inputs.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<WorldResult>> tasks = new ArrayList<>();
+            for (String input : inputs) {
+                tasks.add(() -> {
+                    long start = System.nanoTime();
+                    AvatarMoves movement = play(input, new MemorySaveStore());
+                    TETile[][] world = arraifyWorld(movement.main, movement, dump);
+                    return new WorldResult(input, world, movement.fingerprint(), System.nanoTime() - start);
+                });
             }
-            world.append("\n");
+            for (Future<WorldResult> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
         }
+        return results;
+    }
 
-        System.out.println(world);
+    // turn world 2D array into string, writing it to the default dump sink
+    public static TETile[][] arraifyWorld(World w, AvatarMoves movement) {
+        return arraifyWorld(w, movement, worldDump);
+    }
+
+    // turn world 2D array into string, writing it to the given dump sink
+    public static TETile[][] arraifyWorld(World w, AvatarMoves movement, WorldDump dump) {
+        TETile[][] warr = movement.snapshot();
+        dump.dump(warr);
         return warr;
     }
 
     //execute all the moves inputted from keyboard
     public static void doTheMoves(AvatarMoves movement, ArrayList<Character> moves, String seed) {
+        doTheMoves(movement, moves, seed, Game.saveStore());
+    }
+
+    //execute all the moves inputted from keyboard, saving to the given store on ":"
+    public static void doTheMoves(AvatarMoves movement, ArrayList<Character> moves, String seed, SaveStore store) {
         while (!moves.isEmpty()) {
             switch (moves.get(0)) {
                 case 'W':
@@ -108,7 +232,7 @@ public class AutograderBuddy {
                     break;
                 case ':':
                     moves.remove(0);
-                    fakeSave(seed, movement.avatarCoord, movement.duckCoord);
+                    fakeSave(seed, movement.avatarCoord, movement.duckCoord, store);
                     break;
                 default:
                     break;
@@ -117,36 +241,29 @@ public class AutograderBuddy {
         }
     }
 
-    //saves where the duck avatar and the gardener avatar are on the map in a .txt file
+    //saves where the duck avatar and the gardener avatar are on the map in the game's save store
     public static void fakeSave(String seed, Coord avatarCoord, Coord duckCoord) {
-        try {
-            PrintWriter saveTxt = new PrintWriter("save.txt");
-
-            if (seed.charAt(0) != ('n')) {
-                seed = seed.substring(0, seed.length());
-            } else {
-                seed = seed.substring(1, seed.length());
-            }
+        fakeSave(seed, avatarCoord, duckCoord, Game.saveStore());
+    }
 
-            saveTxt.write(seed + "," + avatarCoord.x + "," + avatarCoord.y + "," + duckCoord.x + "," + duckCoord.y);
-            saveTxt.close();
-        } catch (IOException e) {
-            System.out.println("An error occurred.");
-            e.printStackTrace();
+    //saves where the duck avatar and the gardener avatar are on the map in the given save store
+    public static void fakeSave(String seed, Coord avatarCoord, Coord duckCoord, SaveStore store) {
+        if (seed.charAt(0) != ('n')) {
+            seed = seed.substring(0, seed.length());
+        } else {
+            seed = seed.substring(1, seed.length());
         }
+
+        store.write(seed + "," + avatarCoord.x + "," + avatarCoord.y + "," + duckCoord.x + "," + duckCoord.y);
     }
 
-    //Used to tell the autograder which tiles are the floor/ground (including any lights/items resting on the ground). Change this method if you add additional tiles
+    //Used to tell the autograder which tiles are the floor/ground (including any lights/items resting on the ground). Change TileFlags if you add additional tiles
     public static boolean isGroundTile(TETile t) {
-        return t.character() == Tileset.GRASS.character()
-                || t.character() == Tileset.HALLDIRT.character()
-                || t.character() == Tileset.DIRT.character();
+        return (TileFlags.of(t) & TileFlags.GROUND) != 0;
     }
 
-    //Used to tell the autograder while tiles are the walls/boundaries. Change this method if you add additional tiles.
+    //Used to tell the autograder while tiles are the walls/boundaries. Change TileFlags if you add additional tiles.
     public static boolean isBoundaryTile(TETile t) {
-        return t.character() == Tileset.FLOWER.character()
-                || t.character() == Tileset.LOCKED_DOOR.character()
-                || t.character() == Tileset.UNLOCKED_DOOR.character();
+        return (TileFlags.of(t) & TileFlags.BOUNDARY) != 0;
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package core;
 
-import edu.princeton.cs.algs4.In;
+import tileengine.EntityLayer;
 import tileengine.TETile;
 import tileengine.Tileset;
 
@@ -20,18 +20,25 @@ import java.util.Random;
  * (dirt floors, hallways, and carrots) while preventing movement
  * through walls and outside the world boundaries.
  * 
+ * The avatars are kept in an EntityLayer on top of the world instead of
+ * being written into it, so world stays pure terrain. Avatars block each
+ * other: neither can step onto the other's tile. frame() and snapshot()
+ * composite the avatars over the terrain for rendering and export.
+ * 
  * @author Azalea Bailey
  * @version 1.0
  */
 public class AvatarMoves {
     
     // World and rendering references
-    TETile[][] world;          // Main world tile array
-    TETile[][] carrotWorld;    // Carrot world tile array
+    World main;                // Main world, whose set keeps its fingerprint current
+    TETile[][] world;          // Main world terrain (never holds the avatars)
+    EntityLayer entities;      // Gardener and duck, drawn over the terrain
+    TETile[][] frame;          // Reused buffer for the composited main world
     
     // Avatar state tracking
-    TETile prev;               // Previous tile the gardener avatar was on
-    TETile prevDuck;           // Previous tile the duck avatar was on
+    int avatarId;              // Entity id of the gardener avatar, -1 until placed
+    int duckId;                // Entity id of the duck avatar, -1 until placed
     Coord avatarCoord;         // Current coordinates of the gardener avatar
     Coord duckCoord;           // Current coordinates of the duck avatar
     
@@ -53,21 +60,34 @@ public class AvatarMoves {
     /**
      * Constructor that initializes the avatar movement system.
      * 
-     * Sets up references to both worlds, initializes coordinate tracking,
+     * Sets up references to the main world, initializes coordinate tracking,
      * and prepares the random number generator for avatar spawning.
      * 
      * @param w The main world instance
-     * @param c The carrot world instance
      */
-    public AvatarMoves(World w, CarrotWorld c) {
+    public AvatarMoves(World w) {
         avatarCoord = new Coord(0, 0, 0);
         duckCoord = new Coord(0, 0, 0);
         this.width = w.width;
         this.height = w.height;
         this.rand = new Random(seed);
+        this.main = w;
         this.world = w.world;
-        this.carrotWorld = c.carrotWorld;
         this.seed = w.seed;
+        this.entities = new EntityLayer(width, height);
+        this.avatarId = -1;
+        this.duckId = -1;
+    }
+
+    /**
+     * Same as AvatarMoves(World). The carrot world is not needed: the gardener's
+     * moves there are made by CarrotMoves.
+     * 
+     * @param w The main world instance
+     * @param c The carrot world instance (unused)
+     */
+    public AvatarMoves(World w, CarrotWorld c) {
+        this(w);
     }
 
     /**
@@ -88,66 +108,112 @@ public class AvatarMoves {
             y = rand.nextInt(height);
         }
         
-        // Place gardener avatar and store previous tile
+        // Place gardener avatar
         avatarCoord = new Coord(x * x + y * y, x, y);
-        prev = world[x][y];
-        world[x][y] = avatar;
+        avatarId = place(avatarId, avatar, x, y);
 
         // Spawn duck avatar in a different valid location
         int x1 = rand.nextInt(width);
         int y1 = rand.nextInt(height);
         
         // Ensure duck doesn't spawn on gardener or impassable tiles
-        while (world[x1][y1] == wall || world[x1][y1] == outside || world[x1][y1] == avatar) {
+        while (world[x1][y1] == wall || world[x1][y1] == outside || entities.occupied(x1, y1)) {
             x1 = rand.nextInt(width);
             y1 = rand.nextInt(height);
         }
         
-        // Place duck avatar and store previous tile
+        // Place duck avatar
         duckCoord = new Coord(x1 * x1 + y1 * y1, x1, y1);
-        prevDuck = world[x1][y1];
-        world[x1][y1] = duck;
+        duckId = place(duckId, duck, x1, y1);
+    }
+
+    // Adds the entity if it is not in the layer yet (id == -1), otherwise moves it
+    private int place(int id, TETile tile, int x, int y) {
+        if (id == -1) {
+            return entities.add(tile, x, y);
+        }
+        entities.move(id, x, y);
+        return id;
     }
 
     /**
      * Removes a carrot from the world when collected by the gardener.
      * 
      * Replaces the carrot tile with a dirt floor tile, effectively
-     * removing the collectible item from the world.
+     * removing the collectible item from the world. This is an edit to the
+     * terrain; an avatar standing on the carrot stays where it is.
      * 
      * @param x X coordinate of the carrot to remove
      * @param y Y coordinate of the carrot to remove
      */
     public void removeCarrot(int x, int y) {
-        world[x][y] = room;
+        main.set(x, y, room);
     }
 
     /**
      * Loads avatar positions from a saved game file.
      * 
-     * Reads the save.txt file and places both avatars at their
+     * Reads the game's save store and places both avatars at their
      * previously saved coordinates. This method is called when
      * loading a saved game to restore the exact game state.
      */
     public void loadAvatar() {
-        In file = new In("./save.txt");
+        loadAvatar(Game.saveStore());
+    }
 
-        String currentLine = file.readLine();
+    /**
+     * Loads avatar positions from the given save store.
+     *
+     * @param store The save store to read
+     */
+    public void loadAvatar(SaveStore store) {
+        String currentLine = store.readLine();
         String[] splitLine = currentLine.split(",");
 
         // Load gardener avatar position (indices 1 and 2)
         int avatarX = Integer.parseInt(splitLine[1]);
         int avatarY = Integer.parseInt(splitLine[2]);
         avatarCoord = new Coord(avatarX * avatarX + avatarY * avatarY, avatarX, avatarY);
-        prev = world[avatarX][avatarY];
-        world[avatarX][avatarY] = avatar;
+        avatarId = place(avatarId, avatar, avatarX, avatarY);
 
         // Load duck avatar position (indices 3 and 4)
         int duckX = Integer.parseInt(splitLine[3]);
         int duckY = Integer.parseInt(splitLine[4]);
         duckCoord = new Coord(duckX * duckX + duckY * duckY, duckX, duckY);
-        prevDuck = world[duckX][duckY];
-        world[duckX][duckY] = duck;
+        duckId = place(duckId, duck, duckX, duckY);
+    }
+
+    /**
+     * Composites the avatars over the terrain into a buffer that is reused
+     * from call to call, for rendering.
+     * 
+     * @return the main world as it should be drawn; overwritten by the next call
+     */
+    public TETile[][] frame() {
+        if (frame == null) {
+            frame = new TETile[width][height];
+        }
+        return entities.composite(world, frame);
+    }
+
+    /**
+     * Returns the fingerprint of what frame() would show: the main world's
+     * fingerprint with the avatars swapped in. Costs one step per avatar, not
+     * per tile; equals TileHash.of(snapshot()).
+     * 
+     * @return 64-bit fingerprint of the main world as drawn
+     */
+    public long fingerprint() {
+        return entities.fingerprint(world, main.fingerprint());
+    }
+
+    /**
+     * Composites the avatars over the terrain into a new array, for export.
+     * 
+     * @return a fresh copy of the main world as it should be drawn
+     */
+    public TETile[][] snapshot() {
+        return entities.composite(world, new TETile[width][height]);
     }
 
     /**
@@ -158,30 +224,46 @@ public class AvatarMoves {
      * - Room floors (room)
      * - Carrots (carrot)
      * 
+     * The answer comes from the precomputed TileFlags table.
+     * 
      * @param t The tile to check for movement validity
      * @return true if the tile is walkable, false otherwise
      */
     public boolean validMove(TETile t) {
-        return t.equals(hall) || t.equals(room) || t.equals(carrot);
+        return (TileFlags.of(t) & TileFlags.WALKABLE) != 0;
+    }
+
+    // Whether an avatar may step onto (x, y): walkable terrain with no avatar on it
+    private boolean canEnter(int x, int y) {
+        return canStep(world, entities, x, y);
+    }
+
+    /**
+     * The movement rule shared by the gardener, the duck and DuckFlock's ducks:
+     * a tile can be stepped on if it is inside the world, its terrain is
+     * walkable, and no other entity is standing on it.
+     * 
+     * @param terrain The world's terrain
+     * @param entities The entities standing on it
+     * @param x X coordinate of the tile to step on
+     * @param y Y coordinate of the tile to step on
+     * @return true if the step is allowed
+     */
+    static boolean canStep(TETile[][] terrain, EntityLayer entities, int x, int y) {
+        return x >= 0 && x < terrain.length && y >= 0 && y < terrain[x].length
+                && (TileFlags.of(terrain[x][y]) & TileFlags.WALKABLE) != 0 && !entities.occupied(x, y);
     }
 
     /**
      * Moves the gardener avatar upward (north).
      * 
-     * Checks if the move is valid, then:
-     * 1. Places the avatar on the new tile
-     * 2. Restores the previous tile
-     * 3. Updates the avatar's coordinates
-     * 4. Stores the new previous tile
+     * Checks that the tile above is walkable and free, then updates the
+     * avatar's coordinates and moves it there in the entity layer.
      */
     public void avatarUp() {
-        TETile temp = world[avatarCoord.x][avatarCoord.y + 1];
-
-        if (validMove(temp)) {
-            world[avatarCoord.x][avatarCoord.y + 1] = avatar;
-            world[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
+        if (canEnter(avatarCoord.x, avatarCoord.y + 1)) {
             avatarCoord.y += 1;
+            entities.move(avatarId, avatarCoord.x, avatarCoord.y);
         }
     }
 
@@ -189,16 +271,12 @@ public class AvatarMoves {
      * Moves the gardener avatar downward (south).
      * 
      * Similar to avatarUp but moves in the negative Y direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void avatarDown() {
-        TETile temp = world[avatarCoord.x][avatarCoord.y - 1];
-
-        if (validMove(temp)) {
-            world[avatarCoord.x][avatarCoord.y - 1] = avatar;
-            world[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
+        if (canEnter(avatarCoord.x, avatarCoord.y - 1)) {
             avatarCoord.y -= 1;
+            entities.move(avatarId, avatarCoord.x, avatarCoord.y);
         }
     }
 
@@ -206,16 +284,12 @@ public class AvatarMoves {
      * Moves the gardener avatar leftward (west).
      * 
      * Moves the avatar in the negative X direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void avatarLeft() {
-        TETile temp = world[avatarCoord.x - 1][avatarCoord.y];
-
-        if (validMove(temp)) {
-            world[avatarCoord.x - 1][avatarCoord.y] = avatar;
-            world[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
+        if (canEnter(avatarCoord.x - 1, avatarCoord.y)) {
             avatarCoord.x -= 1;
+            entities.move(avatarId, avatarCoord.x, avatarCoord.y);
         }
     }
 
@@ -223,16 +297,12 @@ public class AvatarMoves {
      * Moves the gardener avatar rightward (east).
      * 
      * Moves the avatar in the positive X direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void avatarRight() {
-        TETile temp = world[avatarCoord.x + 1][avatarCoord.y];
-
-        if (validMove(temp)) {
-            world[avatarCoord.x + 1][avatarCoord.y] = avatar;
-            world[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
+        if (canEnter(avatarCoord.x + 1, avatarCoord.y)) {
             avatarCoord.x += 1;
+            entities.move(avatarId, avatarCoord.x, avatarCoord.y);
         }
     }
 
@@ -244,13 +314,9 @@ public class AvatarMoves {
      * walkable tiles as the gardener.
      */
     public void duckUp() {
-        TETile temp = world[duckCoord.x][duckCoord.y + 1];
-
-        if (validMove(temp)) {
-            world[duckCoord.x][duckCoord.y + 1] = duck;
-            world[duckCoord.x][duckCoord.y] = prevDuck;
-            prevDuck = temp;
+        if (canEnter(duckCoord.x, duckCoord.y + 1)) {
             duckCoord.y += 1;
+            entities.move(duckId, duckCoord.x, duckCoord.y);
         }
     }
 
@@ -258,16 +324,12 @@ public class AvatarMoves {
      * Moves the duck avatar leftward (west).
      * 
      * Moves the duck avatar in the negative X direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void duckLeft() {
-        TETile temp = world[duckCoord.x - 1][duckCoord.y];
-
-        if (validMove(temp)) {
-            world[duckCoord.x - 1][duckCoord.y] = duck;
-            world[duckCoord.x][duckCoord.y] = prevDuck;
-            prevDuck = temp;
+        if (canEnter(duckCoord.x - 1, duckCoord.y)) {
             duckCoord.x -= 1;
+            entities.move(duckId, duckCoord.x, duckCoord.y);
         }
     }
 
@@ -275,16 +337,12 @@ public class AvatarMoves {
      * Moves the duck avatar downward (south).
      * 
      * Moves the duck avatar in the negative Y direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void duckDown() {
-        TETile temp = world[duckCoord.x][duckCoord.y - 1];
-
-        if (validMove(temp)) {
-            world[duckCoord.x][duckCoord.y - 1] = duck;
-            world[duckCoord.x][duckCoord.y] = prevDuck;
-            prevDuck = temp;
+        if (canEnter(duckCoord.x, duckCoord.y - 1)) {
             duckCoord.y -= 1;
+            entities.move(duckId, duckCoord.x, duckCoord.y);
         }
     }
 
@@ -292,16 +350,12 @@ public class AvatarMoves {
      * Moves the duck avatar rightward (east).
      * 
      * Moves the duck avatar in the positive X direction.
-     * Implements the same movement validation and tile restoration logic.
+     * Implements the same movement validation logic.
      */
     public void duckRight() {
-        TETile temp = world[duckCoord.x + 1][duckCoord.y];
-
-        if (validMove(temp)) {
-            world[duckCoord.x + 1][duckCoord.y] = duck;
-            world[duckCoord.x][duckCoord.y] = prevDuck;
-            prevDuck = temp;
+        if (canEnter(duckCoord.x + 1, duckCoord.y)) {
             duckCoord.x += 1;
+            entities.move(duckId, duckCoord.x, duckCoord.y);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package core;
 
+import tileengine.EntityLayer;
 import tileengine.TETile;
 import tileengine.Tileset;
 import java.util.ArrayList;
@@ -19,6 +20,10 @@ import java.util.Random;
  * - Synchronized movement with main world avatar
  * - Special tile interactions in picnic table environment
  * 
+ * As in the main world, the gardener lives in an EntityLayer over the
+ * picnic scene rather than in carrotWorld itself. Eating a carrot is an
+ * explicit edit of carrotWorld (ORANGE becomes GRAY).
+ * 
  * @author Azalea Bailey
  * @version 1.0
  */
@@ -26,10 +31,15 @@ public class CarrotMoves {
     
     // World and rendering references
     TETile[][] world;          // Main world tile array (for synchronization)
+    CarrotWorld picnic;        // Carrot world, whose set keeps its fingerprint current
     TETile[][] carrotWorld;    // Carrot world tile array (picnic table environment)
     
+    EntityLayer entities;      // Gardener avatar, drawn over the picnic scene
+    TETile[][] frame;          // Reused buffer for the composited carrot world, made up front so the
+                               // first trip to carrot world in the game loop allocates nothing
+    
     // Avatar state tracking
-    TETile prev;               // Previous tile the gardener avatar was on in carrot world
+    int avatarId;              // Entity id of the gardener avatar, -1 until spawned
     Coord avatarCoord;         // Current coordinates of the gardener avatar in carrot world
     
     // Tile type constants
@@ -37,8 +47,8 @@ public class CarrotMoves {
     
     // World properties
     long seed;                 // Random seed for deterministic positioning
-    int width;                 // World width in tiles
-    int height;                // World height in tiles
+    int width;                 // Carrot world width in tiles
+    int height;                // Carrot world height in tiles
     Random rand;               // Random number generator for positioning
     
     // Carrot collection tracking
@@ -57,13 +67,17 @@ public class CarrotMoves {
      */
     public CarrotMoves(World w, CarrotWorld c) {
         avatarCoord = new Coord(0, 0, 0);
-        this.width = w.width;
-        this.height = w.height;
+        this.width = c.width;
+        this.height = c.height;
         this.rand = w.rand;
         this.world = w.world;
+        this.picnic = c;
         this.carrotWorld = c.carrotWorld;
         this.seed = w.seed;
         this.carrotCoords = new ArrayList<>();
+        this.entities = new EntityLayer(c.width, c.height);
+        this.frame = new TETile[c.width][c.height];
+        this.avatarId = -1;
         eatenCarrotCounter = 0;
         finalCarrotCount = 0;
     }
@@ -80,8 +94,28 @@ public class CarrotMoves {
         int y = 14;            // Position avatar at specific height for plate access
         
         avatarCoord = new Coord(x * x + y * y, x, y);
-        prev = carrotWorld[x][y];
-        carrotWorld[x][y] = avatar;
+        if (avatarId == -1) {
+            avatarId = entities.add(avatar, x, y);
+        } else {
+            entities.move(avatarId, x, y);
+        }
+    }
+
+    /**
+     * @return 64-bit fingerprint of what frame() would show, equal to TileHash.of(frame())
+     */
+    public long fingerprint() {
+        return entities.fingerprint(carrotWorld, picnic.fingerprint());
+    }
+
+    /**
+     * Composites the gardener over the picnic scene into a buffer that is
+     * reused from call to call, for rendering.
+     * 
+     * @return carrot world as it should be drawn; overwritten by the next call
+     */
+    public TETile[][] frame() {
+        return entities.composite(carrotWorld, frame);
     }
 
     /**
@@ -94,13 +128,31 @@ public class CarrotMoves {
      * 
      * This restriction creates the picnic table environment where the
      * avatar must navigate carefully to collect carrots.
+     * The answer comes from the precomputed TileFlags table.
      * 
      * @param t The tile to check for movement validity
      * @return true if the tile is walkable in carrot world, false otherwise
      */
     public boolean validMove(TETile t) {
-        return (t.equals(Tileset.ORANGE) || t.equals(Tileset.GREEN) || 
-                t.equals(Tileset.GRAY) || t.equals(Tileset.LIGHTGRAY));
+        return (TileFlags.of(t) & TileFlags.PICNIC_WALKABLE) != 0;
+    }
+
+    // Moves the gardener by (dx, dy) if the target tile is walkable, then eats any carrot under it
+    private void step(int dx, int dy) {
+        if (validMove(carrotWorld[avatarCoord.x + dx][avatarCoord.y + dy])) {
+            avatarCoord.x += dx;
+            avatarCoord.y += dy;
+            entities.move(avatarId, avatarCoord.x, avatarCoord.y);
+        }
+        eatCarrot();
+    }
+
+    // If the gardener is standing on a carrot tile, replaces it with plate and counts it
+    private void eatCarrot() {
+        if (carrotWorld[avatarCoord.x][avatarCoord.y] == Tileset.ORANGE) {
+            picnic.set(avatarCoord.x, avatarCoord.y, Tileset.GRAY);
+            eatenCarrotCounter += 1;
+        }
     }
 
     /**
@@ -108,24 +160,10 @@ public class CarrotMoves {
      * 
      * Implements the same movement logic as the main world but with
      * carrot world-specific validation and carrot collection mechanics.
-     * When moving off an orange carrot tile, it's collected and counted.
+     * When the avatar lands on an orange carrot tile, it's collected and counted.
      */
     public void avatarCarrotUp() {
-        TETile temp = carrotWorld[avatarCoord.x][avatarCoord.y + 1];
-
-        if (validMove(temp)) {
-            // Move avatar to new position
-            carrotWorld[avatarCoord.x][avatarCoord.y + 1] = avatar;
-            carrotWorld[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
-            avatarCoord.y += 1;
-        }
-        
-        // Check if previous tile was a carrot and collect it
-        if (prev == Tileset.ORANGE) {
-            prev = Tileset.GRAY;        // Replace carrot with plate
-            eatenCarrotCounter += 1;    // Increment collection counter
-        }
+        step(0, 1);
     }
 
     /**
@@ -135,21 +173,7 @@ public class CarrotMoves {
      * Implements the same movement validation and carrot collection logic.
      */
     public void avatarCarrotDown() {
-        TETile temp = carrotWorld[avatarCoord.x][avatarCoord.y - 1];
-
-        if (validMove(temp)) {
-            // Move avatar to new position
-            carrotWorld[avatarCoord.x][avatarCoord.y - 1] = avatar;
-            carrotWorld[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
-            avatarCoord.y -= 1;
-        }
-
-        // Check if previous tile was a carrot and collect it
-        if (prev == Tileset.ORANGE) {
-            prev = Tileset.GRAY;        // Replace carrot with plate
-            eatenCarrotCounter += 1;    // Increment collection counter
-        }
+        step(0, -1);
     }
 
     /**
@@ -159,21 +183,7 @@ public class CarrotMoves {
      * Implements the same movement validation and carrot collection logic.
      */
     public void avatarCarrotLeft() {
-        TETile temp = carrotWorld[avatarCoord.x - 1][avatarCoord.y];
-
-        if (validMove(temp)) {
-            // Move avatar to new position
-            carrotWorld[avatarCoord.x - 1][avatarCoord.y] = avatar;
-            carrotWorld[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
-            avatarCoord.x -= 1;
-        }
-
-        // Check if previous tile was a carrot and collect it
-        if (prev == Tileset.ORANGE) {
-            prev = Tileset.GRAY;        // Replace carrot with plate
-            eatenCarrotCounter += 1;    // Increment collection counter
-        }
+        step(-1, 0);
     }
 
     /**
@@ -183,20 +193,6 @@ public class CarrotMoves {
      * Implements the same movement validation and carrot collection logic.
      */
     public void avatarCarrotRight() {
-        TETile temp = carrotWorld[avatarCoord.x + 1][avatarCoord.y];
-
-        if (validMove(temp)) {
-            // Move avatar to new position
-            carrotWorld[avatarCoord.x + 1][avatarCoord.y] = avatar;
-            carrotWorld[avatarCoord.x][avatarCoord.y] = prev;
-            prev = temp;
-            avatarCoord.x += 1;
-        }
-
-        // Check if previous tile was a carrot and collect it
-        if (prev == Tileset.ORANGE) {
-            prev = Tileset.GRAY;        // Replace carrot with plate
-            eatenCarrotCounter += 1;    // Increment collection counter
-        }
+        step(1, 0);
     }
 }
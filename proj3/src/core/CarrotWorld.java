@@ -1,6 +1,8 @@
 package core;
 
+import tileengine.Raster;
 import tileengine.TETile;
+import tileengine.TileHash;
 import tileengine.Tileset;
 import java.util.Random;
 
@@ -13,7 +15,7 @@ import java.util.Random;
  * - A checkerboard tablecloth pattern
  * - A circular plate with fork and napkin
  * - Triangular carrots that can be collected
- * - Mathematical precision in shape generation
+ * - Shapes filled by scanline (see tileengine.Raster)
  * 
  * The environment is procedurally generated based on the same seed as
  * the main world, ensuring consistency between play sessions.
@@ -22,17 +24,28 @@ import java.util.Random;
  * @version 1.0
  */
 public class CarrotWorld {
+
+    // Triangle vertex offsets for one unit of scale: cos and sin of 60 degrees, rounded
+    static final int UNIT_X = (int) Math.round(Math.cos(Math.toRadians(60.0)));
+    static final int UNIT_Y = (int) Math.round(Math.sin(Math.toRadians(60.0)));
     
+    // Dimensions shared by every carrot world
+    static final int WIDTH = 100;
+    static final int HEIGHT = 60;
+
+    // Tablecloth, plate, napkin and fork: the same for every seed, so they are
+    // drawn once and shared. Never written to; each carrot world copies it.
+    private static final TETile[][] BASE = baseLayer();
+    private static final long BASE_FINGERPRINT = TileHash.of(BASE);
+
     // World dimensions
-    int width = 100;           // Width of carrot world in tiles
-    int height = 60;           // Height of carrot world in tiles
+    int width = WIDTH;         // Width of carrot world in tiles
+    int height = HEIGHT;       // Height of carrot world in tiles
     
     // World representation
-    TETile[][] carrotWorld;    // 2D array representing the carrot world
-    
-    // Table setting elements
-    TETile red = Tileset.RED;          // Red checker tile for tablecloth
-    TETile white = Tileset.WHITE;      // White checker tile for tablecloth
+    TETile[][] carrotWorld;    // 2D array representing the carrot world (write through set)
+    long fingerprint;          // TileHash of carrotWorld, kept current by set
+    MoveHistory history;       // Told about every write once the session records moves, else null
     
     // Generation and state
     Random rand;                // Random number generator for procedural generation
@@ -45,22 +58,35 @@ public class CarrotWorld {
      * Constructor that initializes and generates the carrot world.
      * 
      * Creates a complete picnic table environment with:
-     * 1. Checkerboard tablecloth background
-     * 2. Table setting (plate, fork, napkin)
-     * 3. Triangular carrot for collection
+     * 1. Checkerboard tablecloth background and table setting (plate, fork,
+     *    napkin), copied from the shared base layer
+     * 2. Triangular carrot for collection, drawn on top
      * 
      * @param seed The seed string for deterministic generation
      */
     public CarrotWorld(String seed) {
+        this.seed = parseInput(seed);
+        GenerationEvent event = GenerationEvent.start("carrot", "base", this.seed);
         carrotWorld = new TETile[width][height];
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(BASE[x], 0, carrotWorld[x], 0, height);
+        }
+        fingerprint = BASE_FINGERPRINT;
         carrotSquares = 0;
+        GenerationEvent.finish(event, 0, 0, width * height);
 
-        this.seed = parseInput(seed);
         rand = new Random(this.seed);
         scale = rand.nextInt(5 - 2 + 1) + 2;  // Random scale between 2-5
 
-        fillBackground();
-        tableSetter();
+        carrotMaker();
+    }
+
+    // Draws the parts of the picnic scene that do not depend on the seed
+    private static TETile[][] baseLayer() {
+        TETile[][] base = new TETile[WIDTH][HEIGHT];
+        fillBackground(base);
+        tableSetter(base);
+        return base;
     }
 
     /**
@@ -88,18 +114,20 @@ public class CarrotWorld {
      * Generates an alternating red and white checkerboard pattern
      * that covers the entire picnic table. The pattern alternates
      * both horizontally and vertically for a classic checkerboard look.
+     * 
+     * @param grid The tile array to draw into
      */
-    public void fillBackground() {
-        TETile first = red;
-        TETile second = white;
+    public static void fillBackground(TETile[][] grid) {
+        TETile first = Tileset.RED;
+        TETile second = Tileset.WHITE;
         
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid[x].length; y++) {
                 // Alternate tiles based on row position
                 if (Math.floorMod(y, 2) == 0) {
-                    carrotWorld[x][y] = first;
+                    grid[x][y] = first;
                 } else {
-                    carrotWorld[x][y] = second;
+                    grid[x][y] = second;
                 }
             }
             // Swap colors for next column to create checkerboard
@@ -116,122 +144,75 @@ public class CarrotWorld {
      * - A circular plate in the center
      * - A fork positioned to the right
      * - A napkin positioned to the right
-     * - Triangular carrots on the plate
      * 
-     * All elements are positioned using mathematical calculations
-     * to ensure proper placement and proportions.
+     * Each element is filled with Raster, one row span at a time, in the
+     * order above, so later elements are drawn on top of earlier ones.
+     * The carrot is not part of the table setting; see carrotMaker.
+     * 
+     * @param grid The tile array to draw into
      */
-    public void tableSetter() {
-        int centerX = width / 3;    // Center X coordinate for plate
-        int centerY = height / 2;   // Center Y coordinate for plate
+    public static void tableSetter(TETile[][] grid) {
+        int centerX = WIDTH / 3;    // Center X coordinate for plate
+        int centerY = HEIGHT / 2;   // Center Y coordinate for plate
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        // Outer plate rim (light gray), then inner plate (dark gray)
+        Raster.fillCircle(grid, centerX, centerY, 20, Tileset.LIGHTGRAY);
+        Raster.fillCircle(grid, centerX, centerY, 14, Tileset.GRAY);
 
-                // Create circular plate using distance calculation
-                double distance = Math.sqrt((x - centerX) * (x - centerX) + (y - centerY) * (y - centerY));
-                
-                // Outer plate rim (light gray)
-                if (distance <= 20) {
-                    carrotWorld[x][y] = Tileset.LIGHTGRAY;
-                }
-                
-                // Inner plate (dark gray)
-                if (distance <= 14) {
-                    carrotWorld[x][y] = Tileset.GRAY;
-                }
+        // Create napkin (rectangular white area)
+        Raster.fillRect(grid, 62, 11, 83, 49, Tileset.NAPKIN);
 
-                // Create napkin (rectangular white area)
-                if (x > 61 && x < 84 && y < 50 && y > 10) {
-                    carrotWorld[x][y] = Tileset.NAPKIN;
-                }
+        // Create fork handle (vertical dark gray bar)
+        Raster.fillRect(grid, 72, 16, 74, 37, Tileset.DARKGRAY);
 
-                // Create fork handle (vertical dark gray bar)
-                if (y < 38 && y > 15 && x > 71 && x < 75) {
-                    carrotWorld[x][y] = Tileset.DARKGRAY;
-                }
-                
-                // Create fork tines (horizontal dark gray bars)
-                if (y < 45 && y > 37 && (x == 69 || x == 77 || x == 73)) {
-                    carrotWorld[x][y] = Tileset.DARKGRAY;
-                }
-                
-                // Create fork tine base (thicker horizontal section)
-                if (y < 40 && y > 37 && x > 69 && x < 77) {
-                    carrotWorld[x][y] = Tileset.DARKGRAY;
-                }
+        // Create fork tines (vertical dark gray bars)
+        Raster.fillRect(grid, 69, 38, 69, 44, Tileset.DARKGRAY);
+        Raster.fillRect(grid, 73, 38, 73, 44, Tileset.DARKGRAY);
+        Raster.fillRect(grid, 77, 38, 77, 44, Tileset.DARKGRAY);
 
-                // Generate triangular carrots on the plate
-                carrotMaker(x, y);
-            }
-        }
+        // Create fork tine base (thicker horizontal section)
+        Raster.fillRect(grid, 70, 38, 76, 39, Tileset.DARKGRAY);
     }
 
     /**
-     * Creates triangular carrots on the plate for collection.
-     * 
-     * Generates mathematically precise triangular carrots using:
-     * - Trigonometric calculations for triangle vertices
-     * - Scale factor for carrot size variation
-     * - Point-in-triangle testing for accurate shape
+     * Draws the triangular carrot and its green stem on the plate.
      * 
-     * @param x X coordinate to check for carrot placement
-     * @param y Y coordinate to check for carrot placement
+     * The carrot is a triangle pointing down from the plate's center, with
+     * corners UNIT_X * scale to either side and UNIT_Y * scale above and
+     * below. carrotSquares is set to the number of orange tiles drawn.
+     * Only tiles inside the carrot's bounding box are touched.
      */
-    public void carrotMaker(int x, int y) {
+    public void carrotMaker() {
+        GenerationEvent event = GenerationEvent.start("carrot", "carrot", seed);
         int centerX = width / 3;
         int centerY = height / 2;
-        
-        // Calculate triangle vertices using trigonometry
-        int xDistance = scale * (int) Math.round(Math.cos(Math.toRadians(60.0)));
-        int yDistance = scale * (int) Math.round(Math.sin(Math.toRadians(60.0)));
 
-        // Define triangle vertices (equilateral triangle)
-        int[] pointOne = new int[]{centerX - xDistance, centerY + yDistance};
-        int[] pointTwo = new int[]{centerX + xDistance, centerY + yDistance};
-        int[] pointThree = new int[]{centerX, centerY - yDistance};
+        int xDistance = scale * UNIT_X;
+        int yDistance = scale * UNIT_Y;
 
-        // Check if current position is inside the triangle
-        if (isInsideTriangle(x, y, pointOne, pointTwo, pointThree)) {
-            carrotWorld[x][y] = Tileset.ORANGE;
-            carrotSquares += 1;
+        // Raster writes the grid directly, so swap the carrot's bounding box out of the fingerprint and back in
+        fingerprint ^= TileHash.of(carrotWorld, centerX - xDistance, centerY - yDistance,
+                centerX + xDistance, centerY + yDistance);
+        carrotSquares = Raster.fillTriangle(carrotWorld,
+                centerX - xDistance, centerY + yDistance,
+                centerX + xDistance, centerY + yDistance,
+                centerX, centerY - yDistance,
+                Tileset.ORANGE);
+        fingerprint ^= TileHash.of(carrotWorld, centerX - xDistance, centerY - yDistance,
+                centerX + xDistance, centerY + yDistance);
+        if (history != null) {
+            history.changed(MoveHistory.CARROT, carrotWorld, centerX - xDistance, centerY - yDistance,
+                    centerX + xDistance, centerY + yDistance);
         }
 
         // Add green stem above the carrot
-        carrotWorld[centerX][centerY + yDistance + 1] = Tileset.GREEN;
-        carrotStem = new Coord(centerX * centerX, centerX, centerY + yDistance + 1);
-    }
-
-    /**
-     * Determines if a point is inside a triangle using barycentric coordinates.
-     * 
-     * Uses the sign method to test if a point lies inside a triangle:
-     * 1. Calculate the sign of the area for each triangle edge
-     * 2. If all signs are the same (all positive or all negative), point is inside
-     * 3. If signs differ, point is outside
-     * 
-     * @param x X coordinate of the point to test
-     * @param y Y coordinate of the point to test
-     * @param point1 First triangle vertex [x, y]
-     * @param point2 Second triangle vertex [x, y]
-     * @param point3 Third triangle vertex [x, y]
-     * @return true if the point is inside the triangle, false otherwise
-     */
-    private boolean isInsideTriangle(int x, int y, int[] point1, int[] point2, int[] point3) {
-        double d1, d2, d3;
-        boolean hasNeg, hasPos;
-
-        // Calculate the sign of the area for each edge
-        d1 = sign(x, y, point1[0], point1[1], point2[0], point2[1]);
-        d2 = sign(x, y, point2[0], point2[1], point3[0], point3[1]);
-        d3 = sign(x, y, point3[0], point3[1], point1[0], point1[1]);
-
-        // Check if all signs are the same
-        hasNeg = (d1 < 0) || (d2 < 0) || (d3 < 0);
-        hasPos = (d1 > 0) || (d2 > 0) || (d3 > 0);
-
-        // Point is inside if all signs are the same
-        return !(hasNeg && hasPos);
+        set(centerX, centerY + yDistance + 1, Tileset.GREEN);
+        if (carrotStem == null) {
+            carrotStem = new Coord(centerX, centerX, centerY + yDistance + 1);
+        } else {
+            carrotStem.y = centerY + yDistance + 1;
+        }
+        GenerationEvent.finish(event, 0, 0, carrotSquares + 1);
     }
 
     /**
@@ -239,65 +220,40 @@ public class CarrotWorld {
      * 
      * Creates a new triangular carrot with:
      * - Random scale factor (2-5) for size variation
-     * - Same mathematical precision as original
+     * - Same shape as the original
      * - Green stem positioned above the carrot
      * 
      * This ensures that each visit to carrot world offers a fresh
      * carrot collection experience.
      */
     public void respawnCarrot() {
-        carrotSquares = 0;
-        carrotWorld[carrotStem.x][carrotStem.y] = Tileset.GRAY;
+        set(carrotStem.x, carrotStem.y, Tileset.GRAY);
 
-        int centerX = width / 3;
-        int centerY = height / 2;
-        
         // Generate new random scale for carrot size
         scale = rand.nextInt(5 - 2 + 1) + 2;
-        
-        // Calculate new triangle vertices
-        int xDistance = scale * (int) Math.round(Math.cos(Math.toRadians(60.0)));
-        int yDistance = scale * (int) Math.round(Math.sin(Math.toRadians(60.0)));
 
-        int[] pointOne = new int[]{centerX - xDistance, centerY + yDistance};
-        int[] pointTwo = new int[]{centerX + xDistance, centerY + yDistance};
-        int[] pointThree = new int[]{centerX, centerY - yDistance};
+        carrotMaker();
+    }
 
-        // Generate new triangular carrot
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (isInsideTriangle(x, y, pointOne, pointTwo, pointThree)) {
-                    carrotWorld[x][y] = Tileset.ORANGE;
-                    carrotSquares += 1;
-                }
-            }
+    /**
+     * Puts a tile into the carrot world, keeping its fingerprint up to date.
+     * 
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     * @param tile The new tile
+     */
+    public void set(int x, int y, TETile tile) {
+        fingerprint ^= TileHash.of(x, y, carrotWorld[x][y]) ^ TileHash.of(x, y, tile);
+        carrotWorld[x][y] = tile;
+        if (history != null) {
+            history.changed(MoveHistory.CARROT, carrotWorld, x, y, x, y);
         }
-
-        // Add new green stem
-        carrotWorld[centerX][centerY + yDistance + 1] = Tileset.GREEN;
-        carrotStem = new Coord(centerX, centerX, centerY + yDistance + 1);
     }
 
     /**
-     * Calculates the sign of the area of a triangle formed by three points.
-     * 
-     * Uses the cross product formula to determine the orientation:
-     * - Positive result: counterclockwise orientation
-     * - Negative result: clockwise orientation
-     * - Zero result: collinear points
-     * 
-     * This method is essential for the point-in-triangle test used
-     * in carrot generation and respawning.
-     * 
-     * @param x1 X coordinate of first point
-     * @param y1 Y coordinate of first point
-     * @param x2 X coordinate of second point
-     * @param y2 Y coordinate of second point
-     * @param x3 X coordinate of third point
-     * @param y3 Y coordinate of third point
-     * @return The sign of the triangle area (positive, negative, or zero)
+     * @return 64-bit fingerprint of the carrot world's tiles, equal to TileHash.of(carrotWorld)
      */
-    private double sign(int x1, int y1, int x2, int y2, int x3, int y3) {
-        return (x1 - x3) * (y2 - y3) - (x2 - x3) * (y1 - y3);
+    public long fingerprint() {
+        return fingerprint;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,395 @@
+package core;
+
+import tileengine.TETile;
+import tileengine.TileRegistry;
+import utils.Counter;
+import utils.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Owns any number of named worlds ("dimensions"), such as the main world,
+ * carrot world or one picnic scene per carrot, and keeps at most a fixed
+ * number of them in memory as grids and a fixed number of bytes of them in
+ * packed form.
+ *
+ * A dimension is added with a generator and built the first time it is
+ * visited. Visiting makes it the most recently visited; when more than
+ * maxResident dimensions are in memory, the least recently visited one is
+ * evicted: its grid is packed into a compact byte form and dropped. Visiting
+ * it again unpacks (rehydrates) it, with every change made before it was
+ * evicted, without running its generator again (the generator is dropped
+ * once it has run).
+ *
+ * Packed forms are kept in memory up to maxPackedBytes in total. Past that,
+ * the least recently visited packed forms are spilled: written to a file of
+ * their own in a temporary directory and dropped from memory. Visiting a
+ * spilled dimension reads it back. So memory holds at most maxResident grids,
+ * maxPackedBytes of packed forms, and one small entry (name, and generator
+ * until it runs) per dimension; the entries and the spill files last until
+ * the dimension is removed, so callers that keep adding dimensions should
+ * remove the ones they are done with.
+ *
+ * The packed form is a run-length encoding of tile ids (see TileRegistry),
+ * column by column: the width and height, then (run length, id + 1) pairs,
+ * all as variable-length integers, with id + 1 = 0 for empty cells. The
+ * scenes in this game are mostly large areas of one tile, so a 100x60 world
+ * packs into a few kilobytes instead of 24,000 references.
+ *
+ * Pinned dimensions (the main world and carrot world, whose grids are owned
+ * by World and CarrotWorld) are never evicted and do not count towards the
+ * limit. A grid returned by visit stays valid until the dimension is evicted,
+ * i.e. until maxResident other dimensions have been visited since.
+ *
+ * @version 1.0
+ */
+public class DimensionManager {
+
+    // Number of unpinned dimensions kept in memory when no limit is given
+    public static final int DEFAULT_RESIDENT = 4;
+
+    // Bytes of packed forms kept in memory when no limit is given
+    public static final long DEFAULT_PACKED_BYTES = 1 << 20;
+
+    static final Counter EVICTIONS = Metrics.registry().counter("byow_dimension_evictions_total",
+            "Dimensions packed and dropped from memory");
+    static final Counter REHYDRATIONS = Metrics.registry().counter("byow_dimension_rehydrations_total",
+            "Evicted dimensions unpacked on a later visit");
+    static final Counter SPILLS = Metrics.registry().counter("byow_dimension_spills_total",
+            "Packed dimensions written to disk and dropped from memory");
+
+    // One named world
+    private static class Dimension {
+        Supplier<TETile[][]> generator;        // Builds the grid on the first visit, then null
+        TETile[][] grid;                       // The grid, or null if not in memory
+        byte[] packed;                         // Packed grid while evicted and not spilled, else null
+        Path spillFile;                        // File the packed grid is spilled to, once it has been
+        boolean spilled;                       // Whether spillFile holds the evicted grid
+        boolean pinned;                        // Never evicted
+
+        Dimension(Supplier<TETile[][]> generator) {
+            this.generator = generator;
+        }
+    }
+
+    private final int maxResident;
+    private final long maxPackedBytes;
+    private final LinkedHashMap<String, Dimension> dimensions;  // Least recently visited first
+                                                               // (moved to the end on each visit)
+    private int resident;                                      // Unpinned dimensions in memory
+    private long packedBytes;                                  // Size of the packed forms in memory
+    private Path spillDir;                                     // Directory of spill files, made on first spill
+
+    /**
+     * Same as DimensionManager(DEFAULT_RESIDENT).
+     */
+    public DimensionManager() {
+        this(DEFAULT_RESIDENT);
+    }
+
+    /**
+     * Same as DimensionManager(maxResident, DEFAULT_PACKED_BYTES).
+     *
+     * @param maxResident Most unpinned dimensions to keep in memory at once, at least 1
+     */
+    public DimensionManager(int maxResident) {
+        this(maxResident, DEFAULT_PACKED_BYTES);
+    }
+
+    /**
+     * @param maxResident Most unpinned dimensions to keep in memory at once, at least 1
+     * @param maxPackedBytes Most bytes of packed forms to keep in memory before spilling to disk
+     */
+    public DimensionManager(int maxResident, long maxPackedBytes) {
+        if (maxResident < 1) {
+            throw new IllegalArgumentException("Must keep at least 1 dimension in memory, got " + maxResident);
+        }
+        if (maxPackedBytes < 0) {
+            throw new IllegalArgumentException("Packed byte limit must not be negative, got " + maxPackedBytes);
+        }
+        this.maxResident = maxResident;
+        this.maxPackedBytes = maxPackedBytes;
+        this.dimensions = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds a dimension, to be built by generator when it is first visited.
+     *
+     * @param name Name of the dimension, e.g. "picnic 3"
+     * @param generator Builds the dimension's grid; called at most once
+     * @throws IllegalArgumentException if a dimension of that name exists
+     */
+    public void add(String name, Supplier<TETile[][]> generator) {
+        if (dimensions.containsKey(name)) {
+            throw new IllegalArgumentException("Dimension " + name + " already exists");
+        }
+        dimensions.put(name, new Dimension(generator));
+    }
+
+    /**
+     * Keeps a dimension in memory for good: it is never evicted and no longer
+     * counts towards the limit.
+     *
+     * @param name Name of the dimension
+     */
+    public void pin(String name) {
+        Dimension d = get(name);
+        if (!d.pinned && d.grid != null) {
+            resident -= 1;
+        }
+        d.pinned = true;
+    }
+
+    /**
+     * Returns a dimension's grid, building or unpacking it if it is not in
+     * memory, and makes it the most recently visited. May evict the least
+     * recently visited unpinned dimension.
+     *
+     * @param name Name of the dimension
+     * @return its grid, indexed [x][y]
+     */
+    public TETile[][] visit(String name) {
+        Dimension d = get(name);
+        dimensions.remove(name);
+        dimensions.put(name, d);
+        if (d.grid == null) {
+            if (d.spilled) {
+                d.grid = unpack(readSpill(d));
+                d.spilled = false;
+                REHYDRATIONS.increment();
+            } else if (d.packed != null) {
+                d.grid = unpack(d.packed);
+                packedBytes -= d.packed.length;
+                d.packed = null;
+                REHYDRATIONS.increment();
+            } else {
+                d.grid = d.generator.get();
+                d.generator = null;
+            }
+            if (!d.pinned) {
+                resident += 1;
+                evict();
+            }
+        }
+        return d.grid;
+    }
+
+    // Packs least recently visited dimensions until at most maxResident are in
+    // memory, then spills least recently visited packed forms until at most
+    // maxPackedBytes of them are
+    private void evict() {
+        Iterator<Dimension> it = dimensions.values().iterator();
+        while (resident > maxResident && it.hasNext()) {
+            Dimension d = it.next();
+            if (d.grid != null && !d.pinned) {
+                d.packed = pack(d.grid);
+                d.grid = null;
+                packedBytes += d.packed.length;
+                resident -= 1;
+                EVICTIONS.increment();
+            }
+        }
+        it = dimensions.values().iterator();
+        while (packedBytes > maxPackedBytes && it.hasNext()) {
+            Dimension d = it.next();
+            if (d.packed != null) {
+                spill(d);
+            }
+        }
+    }
+
+    // Writes d's packed form to its spill file and drops it from memory
+    private void spill(Dimension d) {
+        try {
+            if (d.spillFile == null) {
+                if (spillDir == null) {
+                    spillDir = Files.createTempDirectory("byow-dimensions");
+                    spillDir.toFile().deleteOnExit();
+                }
+                d.spillFile = Files.createTempFile(spillDir, "dimension", ".bin");
+                d.spillFile.toFile().deleteOnExit();
+            }
+            Files.write(d.spillFile, d.packed);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        packedBytes -= d.packed.length;
+        d.packed = null;
+        d.spilled = true;
+        SPILLS.increment();
+    }
+
+    // Reads back the packed form d was spilled with
+    private static byte[] readSpill(Dimension d) {
+        try {
+            return Files.readAllBytes(d.spillFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Forgets a dimension, in memory, packed or spilled, and deletes its
+     * spill file.
+     *
+     * @param name Name of the dimension
+     */
+    public void remove(String name) {
+        Dimension d = dimensions.remove(name);
+        if (d == null) {
+            return;
+        }
+        if (d.grid != null && !d.pinned) {
+            resident -= 1;
+        }
+        if (d.packed != null) {
+            packedBytes -= d.packed.length;
+        }
+        if (d.spillFile != null) {
+            try {
+                Files.deleteIfExists(d.spillFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * @param name Name of a dimension
+     * @return whether a dimension of that name has been added
+     */
+    public boolean contains(String name) {
+        return dimensions.containsKey(name);
+    }
+
+    /**
+     * @param name Name of a dimension
+     * @return whether its grid is in memory (built and not evicted)
+     */
+    public boolean isResident(String name) {
+        return get(name).grid != null;
+    }
+
+    /**
+     * @param name Name of a dimension
+     * @return whether it was evicted and its packed form spilled to disk
+     */
+    public boolean isSpilled(String name) {
+        return get(name).spilled;
+    }
+
+    /**
+     * @return number of unpinned dimensions in memory, never more than the limit
+     */
+    public int residentCount() {
+        return resident;
+    }
+
+    /**
+     * @return total size of the packed forms held in memory, in bytes, never more than the limit
+     */
+    public long packedBytes() {
+        return packedBytes;
+    }
+
+    /**
+     * @return names of every dimension, least recently visited first
+     */
+    public List<String> names() {
+        return new ArrayList<>(dimensions.keySet());
+    }
+
+    // The dimension of that name (without counting as a visit)
+    private Dimension get(String name) {
+        Dimension d = dimensions.get(name);
+        if (d == null) {
+            throw new IllegalArgumentException("No dimension named " + name);
+        }
+        return d;
+    }
+
+    /**
+     * Packs a grid into its compact form (see the class comment).
+     *
+     * @param grid The grid, indexed [x][y]
+     * @return the packed bytes
+     */
+    public static byte[] pack(TETile[][] grid) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int width = grid.length;
+        int height = width == 0 ? 0 : grid[0].length;
+        writeVarInt(out, width);
+        writeVarInt(out, height);
+        int run = 0;
+        int runId = -1;
+        for (TETile[] column : grid) {
+            for (TETile tile : column) {
+                int id = tile == null ? 0 : tile.id() + 1;
+                if (run > 0 && id != runId) {
+                    writeVarInt(out, run);
+                    writeVarInt(out, runId);
+                    run = 0;
+                }
+                runId = id;
+                run += 1;
+            }
+        }
+        if (run > 0) {
+            writeVarInt(out, run);
+            writeVarInt(out, runId);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Unpacks a grid packed by pack. Each cell gets the canonical tile of its id.
+     *
+     * @param packed The packed bytes
+     * @return a new grid equal to the one that was packed
+     */
+    public static TETile[][] unpack(byte[] packed) {
+        int[] pos = {0};
+        int width = readVarInt(packed, pos);
+        int height = readVarInt(packed, pos);
+        TETile[][] grid = new TETile[width][height];
+        int cell = 0;
+        while (cell < width * height) {
+            int run = readVarInt(packed, pos);
+            int id = readVarInt(packed, pos);
+            TETile tile = id == 0 ? null : TileRegistry.byId(id - 1);
+            for (int end = cell + run; cell < end; cell++) {
+                grid[cell / height][cell % height] = tile;
+            }
+        }
+        return grid;
+    }
+
+    // Writes a non-negative int 7 bits at a time, low bits first
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // Reads an int written by writeVarInt at pos[0], moving pos[0] past it
+    private static int readVarInt(byte[] in, int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
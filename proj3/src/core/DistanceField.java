@@ -0,0 +1,84 @@
+package core;
+
+/**
+ * Walking distance from every tile of a world to the nearest of a set of targets.
+ *
+ * A field is built by DistanceFields with a breadth-first search that starts
+ * from all targets at once, so each tile ends up holding the number of steps
+ * to the closest target. Following the field downhill from any tile walks a
+ * shortest path to a target; direction(x, y) gives that step as a WASD key, so
+ * the field doubles as a flow field for anything that wants to walk there.
+ *
+ * Fields are owned and kept up to date by DistanceFields. Do not hold on to
+ * one across tile changes; ask DistanceFields for it again instead, which is
+ * cheap when nothing relevant changed.
+ *
+ * @version 1.0
+ */
+public class DistanceField {
+
+    // Distance of a tile no target can be reached from
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    final int width;                   // World width in tiles
+    final int height;                  // World height in tiles
+    final int[] dist;                  // Steps to the nearest target, indexed x * height + y
+    int[] sources;                     // Targets the field was built from, as x * height + y
+    int sourceCount;                   // Number of entries of sources in use
+    boolean dirty;                     // Whether a tile change may have made dist wrong
+
+    DistanceField(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.dist = new int[width * height];
+        this.sources = new int[4];
+        this.dirty = true;
+    }
+
+    /**
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return number of steps from (x, y) to the nearest target, or UNREACHABLE
+     */
+    public int distance(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return UNREACHABLE;
+        }
+        return dist[x * height + y];
+    }
+
+    /**
+     * Which way to step from (x, y) to get one tile closer to the nearest target.
+     * Ties are broken in the order up, left, down, right.
+     *
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return 'w', 'a', 's' or 'd', or Session.NO_KEY if (x, y) is a target or unreachable
+     */
+    public char direction(int x, int y) {
+        int here = distance(x, y);
+        if (here == 0 || here == UNREACHABLE) {
+            return Session.NO_KEY;
+        }
+        if (distance(x, y + 1) == here - 1) {
+            return 'w';
+        }
+        if (distance(x - 1, y) == here - 1) {
+            return 'a';
+        }
+        if (distance(x, y - 1) == here - 1) {
+            return 's';
+        }
+        if (distance(x + 1, y) == here - 1) {
+            return 'd';
+        }
+        return Session.NO_KEY;
+    }
+
+    /**
+     * @return true if the field was built from at least one target
+     */
+    public boolean hasTargets() {
+        return sourceCount > 0;
+    }
+}
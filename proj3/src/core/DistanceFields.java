@@ -0,0 +1,360 @@
+package core;
+
+import tileengine.TETile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of distance fields over one world, shared by everything that needs
+ * to find its way to the same targets.
+ *
+ * Each field has a name ("carrots", "avatar", ...) and is built from a set of
+ * target tiles by a multi-source breadth-first search over walkable tiles.
+ * Asking for a field again with the same targets returns the cached one
+ * without any work, so any number of ducks chasing the avatar in the same tick
+ * cost one search between them. A field is only rebuilt when its targets
+ * changed (e.g. the avatar moved or a carrot was eaten).
+ *
+ * When tileChanged reports a tile whose walkability changed, the fields are
+ * patched in place instead of rebuilt, touching only the tiles whose distance
+ * actually changes:
+ * - a tile that became walkable takes its distance from its best neighbour
+ *   and the new, shorter distances spread out from it
+ * - a tile that became a wall first finds the tiles whose every shortest path
+ *   went through it (walking outward from it one distance at a time), forgets
+ *   their distances, then refills them from the tiles around them that kept
+ *   theirs
+ * Opening or closing one tile usually touches a handful of tiles rather than
+ * the whole world, so a tile change costs a fraction of a search.
+ *
+ * Rebuilding and patching reuse the field's int[] buffer and buffers shared
+ * by all fields, so neither allocates. Walkability is cached per tile when the
+ * cache is created and updated by tileChanged; entities (the avatars) are not
+ * obstacles.
+ *
+ * @version 1.0
+ */
+public class DistanceFields {
+
+    private final TETile[][] terrain;            // World the fields are over
+    private final int walkFlag;                  // TileFlags bit that makes a tile walkable
+    private final int width;                     // World width in tiles
+    private final int height;                    // World height in tiles
+    private final boolean[] walkable;            // Walkability of each tile, indexed x * height + y
+    private final Map<String, DistanceField> fields;
+    private final int[] queue;                   // Breadth-first search queue, shared by all fields
+    private final int[] pending;                 // Ring of tiles whose distance dropped while patching
+    private final int[] mark;                    // Tiles marked during the current patch hold epoch
+    private int epoch;                           // Value of mark for the current patch
+    private int pendingHead;                     // Index in pending of the next tile to look at
+    private int pendingCount;                    // Number of tiles waiting in pending
+    private int[] targets;                       // Scratch buffer for packing targets
+    private int computations;                    // Number of searches run so far
+
+    /**
+     * Creates an empty cache over the given world.
+     *
+     * @param terrain The world's tiles (without avatars)
+     * @param walkFlag The TileFlags bit a tile needs to be walked on, e.g. TileFlags.WALKABLE
+     */
+    public DistanceFields(TETile[][] terrain, int walkFlag) {
+        this.terrain = terrain;
+        this.walkFlag = walkFlag;
+        this.width = terrain.length;
+        this.height = terrain[0].length;
+        this.walkable = new boolean[width * height];
+        this.fields = new HashMap<>();
+        this.queue = new int[width * height];
+        this.pending = new int[width * height];
+        this.mark = new int[width * height];
+        this.targets = new int[16];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                walkable[x * height + y] = (TileFlags.of(terrain[x][y]) & walkFlag) != 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the named field for the given targets, rebuilding it only if the
+     * targets or the tiles around it changed since it was last built.
+     *
+     * @param name Name of the field, e.g. "carrots"
+     * @param targetCoords The tiles to measure distance to
+     * @return the up to date field
+     */
+    public DistanceField field(String name, List<Coord> targetCoords) {
+        if (targets.length < targetCoords.size()) {
+            targets = new int[targetCoords.size() * 2];
+        }
+        int n = 0;
+        for (Coord c : targetCoords) {
+            targets[n++] = c.x * height + c.y;
+        }
+        return field(name, targets, n);
+    }
+
+    /**
+     * Same as field(String, List), for a single target tile.
+     *
+     * @param name Name of the field, e.g. "avatar"
+     * @param x X coordinate of the target
+     * @param y Y coordinate of the target
+     * @return the up to date field
+     */
+    public DistanceField field(String name, int x, int y) {
+        targets[0] = x * height + y;
+        return field(name, targets, 1);
+    }
+
+    /**
+     * Tells the cache that the tile at (x, y) was changed. If that changed
+     * whether it can be walked on, every field is patched to match.
+     *
+     * @param x X coordinate of the changed tile
+     * @param y Y coordinate of the changed tile
+     */
+    public void tileChanged(int x, int y) {
+        int i = x * height + y;
+        boolean now = (TileFlags.of(terrain[x][y]) & walkFlag) != 0;
+        if (walkable[i] == now) {
+            return;
+        }
+        walkable[i] = now;
+        for (DistanceField f : fields.values()) {
+            if (f.dirty || isSource(f, i)) {
+                continue;  // Targets are at distance 0 whether or not they can be walked on
+            }
+            if (now) {
+                opened(f.dist, i);
+            } else {
+                closed(f.dist, i);
+            }
+        }
+    }
+
+    /**
+     * Only full searches are counted; patching a field after tileChanged is not.
+     *
+     * @return number of breadth-first searches run so far, across all fields
+     */
+    public int computations() {
+        return computations;
+    }
+
+    // Looks up the named field and rebuilds it if it is stale
+    private DistanceField field(String name, int[] packed, int n) {
+        DistanceField f = fields.get(name);
+        if (f == null) {
+            f = new DistanceField(width, height);
+            fields.put(name, f);
+        }
+        if (f.dirty || !sameTargets(f, packed, n)) {
+            if (f.sources.length < n) {
+                f.sources = new int[Math.max(n, f.sources.length * 2)];
+            }
+            System.arraycopy(packed, 0, f.sources, 0, n);
+            f.sourceCount = n;
+            compute(f);
+        }
+        return f;
+    }
+
+    private static boolean sameTargets(DistanceField f, int[] packed, int n) {
+        if (f.sourceCount != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (f.sources[i] != packed[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Multi-source breadth-first search from f's targets over walkable tiles
+    private void compute(DistanceField f) {
+        int[] dist = f.dist;
+        Arrays.fill(dist, DistanceField.UNREACHABLE);
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < f.sourceCount; i++) {
+            int s = f.sources[i];
+            if (dist[s] != 0) {
+                dist[s] = 0;
+                queue[tail++] = s;
+            }
+        }
+        while (head < tail) {
+            int i = queue[head++];
+            int x = i / height;
+            int y = i - x * height;
+            int next = dist[i] + 1;
+            if (y + 1 < height) {
+                tail = visit(dist, i + 1, next, tail);
+            }
+            if (y > 0) {
+                tail = visit(dist, i - 1, next, tail);
+            }
+            if (x + 1 < width) {
+                tail = visit(dist, i + height, next, tail);
+            }
+            if (x > 0) {
+                tail = visit(dist, i - height, next, tail);
+            }
+        }
+        f.dirty = false;
+        computations += 1;
+    }
+
+    private int visit(int[] dist, int i, int d, int tail) {
+        if (walkable[i] && dist[i] == DistanceField.UNREACHABLE) {
+            dist[i] = d;
+            queue[tail++] = i;
+        }
+        return tail;
+    }
+
+    // Patches dist after tile i became walkable
+    private void opened(int[] dist, int i) {
+        int best = closestNeighbour(dist, i);
+        if (best == DistanceField.UNREACHABLE) {
+            return;
+        }
+        startPatch();
+        dist[i] = best + 1;
+        push(i);
+        spread(dist);
+    }
+
+    // Patches dist after tile i became a wall
+    private void closed(int[] dist, int i) {
+        if (dist[i] == DistanceField.UNREACHABLE) {
+            return;
+        }
+        // Find the tiles that lost their last shortest path. Tiles come out of
+        // the queue in order of distance, so by the time a tile is checked
+        // every tile one step closer to the targets has already been checked.
+        startPatch();
+        mark[i] = epoch;
+        queue[0] = i;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int u = queue[head++];
+            int next = dist[u] + 1;
+            for (int k = 0; k < 4; k++) {
+                int v = neighbour(u, k);
+                if (v >= 0 && mark[v] != epoch && dist[v] == next && !supported(dist, v)) {
+                    mark[v] = epoch;
+                    queue[tail++] = v;
+                }
+            }
+        }
+
+        // Forget their distances, then refill them from the tiles around them
+        for (int k = 0; k < tail; k++) {
+            dist[queue[k]] = DistanceField.UNREACHABLE;
+        }
+        startPatch();
+        for (int k = 1; k < tail; k++) {
+            int v = queue[k];
+            int best = closestNeighbour(dist, v);
+            if (best != DistanceField.UNREACHABLE) {
+                dist[v] = best + 1;
+                push(v);
+            }
+        }
+        spread(dist);
+    }
+
+    // Lowers the distances around every pending tile until nothing changes
+    private void spread(int[] dist) {
+        while (pendingCount > 0) {
+            int u = pending[pendingHead];
+            pendingHead = pendingHead + 1 == pending.length ? 0 : pendingHead + 1;
+            pendingCount -= 1;
+            mark[u] = 0;
+            int next = dist[u] + 1;
+            for (int k = 0; k < 4; k++) {
+                int v = neighbour(u, k);
+                if (v >= 0 && walkable[v] && dist[v] > next) {
+                    dist[v] = next;
+                    push(v);
+                }
+            }
+        }
+    }
+
+    // Adds tile i to pending unless it is already waiting there
+    private void push(int i) {
+        if (mark[i] != epoch) {
+            mark[i] = epoch;
+            int at = pendingHead + pendingCount;
+            pending[at < pending.length ? at : at - pending.length] = i;
+            pendingCount += 1;
+        }
+    }
+
+    // Starts a new patch, so marks left by the last one no longer count
+    private void startPatch() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            epoch = 0;
+        }
+        epoch += 1;
+        pendingHead = 0;
+        pendingCount = 0;
+    }
+
+    // Whether tile v still has an unmarked neighbour one step closer to the targets
+    private boolean supported(int[] dist, int v) {
+        for (int k = 0; k < 4; k++) {
+            int w = neighbour(v, k);
+            if (w >= 0 && mark[w] != epoch && dist[w] == dist[v] - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Smallest distance among the neighbours of tile i
+    private int closestNeighbour(int[] dist, int i) {
+        int best = DistanceField.UNREACHABLE;
+        for (int k = 0; k < 4; k++) {
+            int v = neighbour(i, k);
+            if (v >= 0 && dist[v] < best) {
+                best = dist[v];
+            }
+        }
+        return best;
+    }
+
+    // Index of neighbour k (0 to 3: up, down, right, left) of tile i, or -1 past the edge
+    private int neighbour(int i, int k) {
+        int x = i / height;
+        int y = i - x * height;
+        switch (k) {
+            case 0:
+                return y + 1 < height ? i + 1 : -1;
+            case 1:
+                return y > 0 ? i - 1 : -1;
+            case 2:
+                return x + 1 < width ? i + height : -1;
+            default:
+                return x > 0 ? i - height : -1;
+        }
+    }
+
+    private static boolean isSource(DistanceField f, int i) {
+        for (int k = 0; k < f.sourceCount; k++) {
+            if (f.sources[k] == i) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
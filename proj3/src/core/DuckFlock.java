@@ -0,0 +1,220 @@
+package core;
+
+import tileengine.EntityLayer;
+import tileengine.TETile;
+import tileengine.Tileset;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Any number of ducks that walk around the main world by themselves.
+ *
+ * Each duck has one of three behaviours:
+ * - WANDER: steps in a random direction
+ * - FOLLOW: walks towards the gardener and waits next to it
+ * - CHASE: walks towards the nearest carrot and waits on it
+ *
+ * Ducks move by the same rule as the duck the player steers with IJKL (see
+ * AvatarMoves.canStep): one tile at a time, only onto walkable tiles with no
+ * one else on them. A duck that cannot take its preferred step, or has no
+ * target to walk to, tries a random one instead.
+ *
+ * The ducks are stored as parallel arrays (position, behaviour, random state,
+ * entity id) rather than one object per duck, and the whole flock is moved in
+ * one pass per tick. FOLLOW and CHASE ducks read their directions from shared
+ * DistanceFields, so a thousand ducks following the gardener cost one search,
+ * not a thousand; those fields are handed in by setTargets, which Session
+ * calls every FIELD_TICKS ticks rather than every tick.
+ *
+ * @version 1.0
+ */
+public class DuckFlock {
+
+    // Behaviours
+    public static final int WANDER = 0;
+    public static final int FOLLOW = 1;
+    public static final int CHASE = 2;
+
+    // Number of ticks between refreshes of the fields FOLLOW and CHASE ducks walk by
+    public static final int FIELD_TICKS = 5;
+
+    // Step for each direction: up, left, down, right
+    private static final int[] DX = {0, -1, 0, 1};
+    private static final int[] DY = {1, 0, -1, 0};
+
+    private final TETile[][] terrain;    // World the ducks walk on
+    private final EntityLayer entities;  // Entity layer the ducks (and avatars) live in
+    private final Random spawnRandom;    // Picks spawn tiles
+
+    // Per duck, indexed 0 .. count - 1
+    private int[] xs;                    // X coordinate
+    private int[] ys;                    // Y coordinate
+    private int[] modes;                 // WANDER, FOLLOW or CHASE
+    private int[] states;                // xorshift random state for wandering
+    private int[] ids;                   // Entity id in the entity layer
+    private int count;                   // Number of ducks
+
+    private DistanceField follow;        // Field FOLLOW ducks walk down, or null
+    private DistanceField chase;         // Field CHASE ducks walk down, or null
+
+    /**
+     * Creates an empty flock.
+     *
+     * @param terrain The world's terrain
+     * @param entities The entity layer to put the ducks in, shared with the avatars
+     * @param seed Seed for spawn positions and wandering
+     */
+    public DuckFlock(TETile[][] terrain, EntityLayer entities, long seed) {
+        this.terrain = terrain;
+        this.entities = entities;
+        this.spawnRandom = new Random(seed);
+        this.xs = new int[16];
+        this.ys = new int[16];
+        this.modes = new int[16];
+        this.states = new int[16];
+        this.ids = new int[16];
+    }
+
+    /**
+     * Adds ducks on random free walkable tiles.
+     *
+     * @param n Number of ducks to add
+     * @param mode Behaviour of the new ducks: WANDER, FOLLOW or CHASE
+     */
+    public void spawn(int n, int mode) {
+        int width = terrain.length;
+        int height = terrain[0].length;
+        for (int i = 0; i < n; i++) {
+            int x = spawnRandom.nextInt(width);
+            int y = spawnRandom.nextInt(height);
+            while (!AvatarMoves.canStep(terrain, entities, x, y)) {
+                x = spawnRandom.nextInt(width);
+                y = spawnRandom.nextInt(height);
+            }
+            add(x, y, mode);
+        }
+    }
+
+    /**
+     * Adds one duck at (x, y).
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param mode Behaviour of the duck: WANDER, FOLLOW or CHASE
+     * @return index of the new duck
+     */
+    public int add(int x, int y, int mode) {
+        if (count == xs.length) {
+            int n = count * 2;
+            xs = Arrays.copyOf(xs, n);
+            ys = Arrays.copyOf(ys, n);
+            modes = Arrays.copyOf(modes, n);
+            states = Arrays.copyOf(states, n);
+            ids = Arrays.copyOf(ids, n);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        modes[count] = mode;
+        states[count] = spawnRandom.nextInt() | 1;
+        ids[count] = entities.add(Tileset.DUCK, x, y);
+        count += 1;
+        return count - 1;
+    }
+
+    /**
+     * Sets the fields FOLLOW and CHASE ducks walk down. Either may be null, in
+     * which case those ducks wander.
+     *
+     * @param followField Distance to the gardener
+     * @param chaseField Distance to the nearest carrot
+     */
+    public void setTargets(DistanceField followField, DistanceField chaseField) {
+        this.follow = followField;
+        this.chase = chaseField;
+    }
+
+    /**
+     * Moves every duck one step.
+     */
+    public void step() {
+        for (int i = 0; i < count; i++) {
+            int x = xs[i];
+            int y = ys[i];
+            int dir = -1;
+            DistanceField field = modes[i] == FOLLOW ? follow : modes[i] == CHASE ? chase : null;
+            if (field != null) {
+                int d = field.distance(x, y);
+                // Wait once there: next to the gardener, or on the carrot
+                if (d <= (modes[i] == FOLLOW ? 1 : 0)) {
+                    continue;
+                }
+                dir = downhill(field, x, y, d);
+            }
+            if (dir < 0 || !AvatarMoves.canStep(terrain, entities, x + DX[dir], y + DY[dir])) {
+                dir = nextRandom(i) & 3;
+            }
+            int nx = x + DX[dir];
+            int ny = y + DY[dir];
+            if (AvatarMoves.canStep(terrain, entities, nx, ny)) {
+                xs[i] = nx;
+                ys[i] = ny;
+                entities.move(ids[i], nx, ny);
+            }
+        }
+    }
+
+    // Direction of a neighbour one step closer to the field's targets, or -1
+    private static int downhill(DistanceField field, int x, int y, int d) {
+        if (d == DistanceField.UNREACHABLE) {
+            return -1;
+        }
+        for (int dir = 0; dir < 4; dir++) {
+            if (field.distance(x + DX[dir], y + DY[dir]) == d - 1) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+
+    // xorshift32 step for duck i
+    private int nextRandom(int i) {
+        int s = states[i];
+        s ^= s << 13;
+        s ^= s >>> 17;
+        s ^= s << 5;
+        states[i] = s;
+        return s >>> 8;
+    }
+
+    /**
+     * @return number of ducks in the flock
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i Index of a duck
+     * @return the duck's x coordinate
+     */
+    public int x(int i) {
+        return xs[i];
+    }
+
+    /**
+     * @param i Index of a duck
+     * @return the duck's y coordinate
+     */
+    public int y(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @param i Index of a duck
+     * @return the duck's behaviour: WANDER, FOLLOW or CHASE
+     */
+    public int mode(int i) {
+        return modes[i];
+    }
+}
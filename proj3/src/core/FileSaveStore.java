@@ -0,0 +1,50 @@
+package core;
+
+import utils.FileUtils;
+
+/**
+ * A SaveStore backed by a single file on disk.
+ *
+ * This is what the interactive game uses by default, with the file at
+ * ./save.txt in the working directory.
+ *
+ * @version 1.0
+ */
+public class FileSaveStore implements SaveStore {
+
+    private final String path;     // Path of the save file
+
+    /**
+     * Creates a store that reads and writes the file at path.
+     *
+     * @param path Path of the save file
+     */
+    public FileSaveStore(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public boolean exists() {
+        return FileUtils.fileExists(path);
+    }
+
+    @Override
+    public String read() {
+        if (!exists()) {
+            throw new IllegalStateException("No save file at " + path);
+        }
+        return FileUtils.readFile(path);
+    }
+
+    @Override
+    public void write(String contents) {
+        FileUtils.writeFile(path, contents);
+    }
+
+    /**
+     * @return path of the save file
+     */
+    public String path() {
+        return path;
+    }
+}
@@ -0,0 +1,72 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for drawing one frame of the game loop: the
+ * world the gardener is in plus the HUD, up to StdDraw.show.
+ *
+ * When no recording asks for these events, start returns null and nothing
+ * is allocated.
+ *
+ * @version 1.0
+ */
+@Name("byow.Frame")
+@Label("Frame")
+@Category({"BYOW", "Game Loop"})
+@Description("Drawing one frame of the game")
+@StackTrace(false)
+public class FrameEvent extends Event {
+
+    // Instance used only to ask whether the event is being recorded
+    private static final FrameEvent PROBE = new FrameEvent();
+
+    @Label("Tick")
+    long tick;
+
+    @Label("Carrot World")
+    @Description("Whether the carrot world was drawn instead of the main world")
+    boolean carrotWorld;
+
+    @Label("Tiles")
+    @Description("Number of tiles drawn")
+    int tiles;
+
+    /**
+     * @return a started event, or null if it is not being recorded
+     */
+    static FrameEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a frame started by start and commits it.
+     *
+     * @param event The event returned by start (may be null)
+     * @param tick Number of the tick the frame shows
+     * @param carrotWorld Whether the carrot world was drawn
+     * @param tiles Number of tiles drawn
+     */
+    static void finish(FrameEvent event, long tick, boolean carrotWorld, int tiles) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.carrotWorld = carrotWorld;
+            event.tiles = tiles;
+            event.commit();
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package core;
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdDraw;
 import tileengine.TERenderer;
 import tileengine.TETile;
+import tileengine.TileRegistry;
 import tileengine.Tileset;
+import utils.Counter;
+import utils.Histogram;
+import utils.Metrics;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main game controller class for the Build Your Own Garden (BYOG) game.
@@ -28,94 +32,165 @@ import java.util.ArrayList;
  */
 public class Game {
 
+    // Save file shared by the interactive game and single-script autograder runs
+    static final String SAVE_FILE = "./save.txt";
+
+    // Where saveGame, loadGame and AutograderBuddy read and write saves by default
+    private static SaveStore saveStore = new FileSaveStore(SAVE_FILE);
+
+    // Metrics reported by the game loop, saving and loading (see utils.Metrics)
+    static final Histogram TICK_TIME = Metrics.registry().histogram("byow_tick_seconds",
+            "Time to simulate one tick (Session.advance)");
+    static final Histogram INPUT_LATENCY = Metrics.registry().histogram("byow_input_latency_seconds",
+            "Time from reading a key to showing the frame it changed");
+    static final Histogram SAVE_TIME = Metrics.registry().histogram("byow_save_seconds",
+            "Time to write a save");
+    static final Histogram LOAD_TIME = Metrics.registry().histogram("byow_load_seconds",
+            "Time to read a save and regenerate its worlds");
+    static final Histogram STARTUP_TIME = Metrics.registry().histogram("byow_startup_seconds",
+            "Time from the seed being entered, or a load starting, to the first frame on screen");
+    static final Counter TICKS = Metrics.registry().counter("byow_ticks_total", "Ticks played");
+    static final Counter KEYS = Metrics.registry().counter("byow_keys_total", "Keys typed while playing");
+
+    /**
+     * Returns the save store used when no other store is given.
+     *
+     * @return the current default save store
+     */
+    public static SaveStore saveStore() {
+        return saveStore;
+    }
+
+    /**
+     * Replaces the default save store, e.g. with a MemorySaveStore for headless runs.
+     *
+     * @param store The save store to use from now on
+     */
+    public static void setSaveStore(SaveStore store) {
+        saveStore = store;
+    }
+
     /**
      * Main game loop that runs the interactive BYOG game.
      * 
      * This method:
      * 1. Prompts the user for a seed input
-     * 2. Generates the world based on the seed
+     * 2. Generates the world based on the seed, in the background while the
+     *    tiles are preloaded and the window opens. Carrot world is not built
+     *    yet: the session builds it lazily, starting in the background once
+     *    the gardener comes within Session.PREFETCH_TILES of a carrot
      * 3. Spawns avatars and carrots
      * 4. Enters the main game loop for user interaction
      * 5. Handles carrot world transitions and respawning
      * 
+     * The time from the seed being entered to the first frame is reported
+     * to Metrics.registry() as byow_startup_seconds.
+     * 
      * @param ter The tile renderer for displaying the game world
      * @throws IOException If there's an error during file operations
      */
     public static void runGame(TERenderer ter) throws IOException {
         // Get seed input from user for world generation
         String seed = takeInput();
+        long start = System.nanoTime();
         
-        // Generate the main world and carrot world based on seed
-        World ourWorld = new World(seed);
-        ourWorld.pickCarrot();
-        CarrotWorld c = new CarrotWorld(seed);
-        
-        // Initialize movement controllers for both avatars
-        AvatarMoves movement = new AvatarMoves(ourWorld, c);
-        CarrotMoves carrotMovement = new CarrotMoves(ourWorld, c);
-        
-        // Set up the rendering window (100x60 tiles)
+        // Generate the world and spawn the avatars, while the tiles are
+        // preloaded and the window is set up (100x60 tiles); carrot world
+        // is built later, when the gardener nears a carrot
+        CompletableFuture<Session> session = Session.newGameAsync(seed);
+        CompletableFuture<Void> tiles = CompletableFuture.runAsync(() -> TERenderer.preload(TileRegistry.tiles()));
         ter.initialize(100, 60);
+        tiles.join();
         
-        // Spawn both avatars in the world
-        movement.spawnAvatar();
-        carrotMovement.spawnCarrotAvatar();
-        
-        // Render the initial world state
-        ter.renderFrame(movement.world);
-        
-        // Track carrot collection state
-        int carrotX = movement.avatarCoord.x;
-        int carrotY = movement.avatarCoord.y;
+        play(session.join(), new Replay(seed, null), ter, start);
+    }
+
+    /**
+     * Runs the game loop for a session until the player opens the ':' menu.
+     * 
+     * Each tick reads at most one key, advances the session, redraws the
+     * tiles of the world the gardener is in that changed (and the HUD, if
+     * it changed or was drawn over), waits 100ms (10 FPS) and then lets the
+     * carrot world timer expire. Every key is recorded into the replay,
+     * which is written to ./replay.txt when the menu opens. Moves are kept
+     * in the session's MoveHistory, so 'u' takes back the latest move and
+     * 'r' makes it again. Tick time, input latency, whether the gardener is
+     * in carrot world and the history's memory use are reported to
+     * Metrics.registry().
+     * 
+     * @param session The session to play
+     * @param replay The recording to append keys to
+     * @param ter The tile renderer
+     * @throws IOException If there's an error during file operations
+     */
+    public static void play(Session session, Replay replay, TERenderer ter) throws IOException {
+        play(session, replay, ter, -1);
+    }
+
+    /**
+     * Same as play(Session, Replay, TERenderer), but also reports the time from
+     * startedAt to the first frame as startup latency.
+     * 
+     * @param session The session to play
+     * @param replay The recording to append keys to
+     * @param ter The tile renderer
+     * @param startedAt System.nanoTime() when the player asked for the game, or -1
+     * @throws IOException If there's an error during file operations
+     */
+    public static void play(Session session, Replay replay, TERenderer ter, long startedAt) throws IOException {
+        Metrics.registry().gauge("byow_carrot_world", "1 while the gardener is in carrot world, else 0",
+                () -> session.renderCarrot ? 1 : 0);
+        Metrics.registry().gauge("byow_carrots_remaining", "Carrots left in the main world",
+                () -> session.world.carrotCoord.size());
+        MoveHistory history = session.history();
+        Metrics.registry().gauge("byow_history_bytes_per_1000_moves",
+                "Estimated memory the move history uses per 1,000 moves kept", history::bytesPer1000Moves);
 
-        // Game loop variables
-        long counter = 0;           // Timer for carrot world duration
-        boolean renderCarrot = false; // Whether to show carrot world
+        // Render the initial world state
+        Hud hud = new Hud();
+        ter.renderFrame(session.frame());
+        if (startedAt != -1) {
+            STARTUP_TIME.recordSince(startedAt);
+        }
         
         // Main game loop - runs continuously until game exit
         while (true) {
-            // Check if gardener avatar is on a carrot tile
-            for (Coord i : ourWorld.carrotCoord) {
-                if (i.x == movement.avatarCoord.x && i.y == movement.avatarCoord.y) {
-                    renderCarrot = true;
-                    carrotX = i.x;
-                    carrotY = i.y;
-                    break;
-                }
+            char key = StdDraw.hasNextKeyTyped() ? StdDraw.nextKeyTyped() : Session.NO_KEY;
+            long start = System.nanoTime();
+            
+            // Special command menu access
+            if (key == ':') {
+                replay.finish(session.ticks(), session.stateHash());
+                replay.save(Replay.REPLAY_FILE);
+                keyboard(session.seed, session.movement.avatarCoord, session.movement.duckCoord,
+                        session.world.carrotCoord, ter);
             }
             
             // Process user input and move avatars
-            moveAvatar(renderCarrot, seed, movement, carrotMovement, ter, ourWorld);
+            if (key != Session.NO_KEY) {
+                replay.record(session.ticks(), key);
+                KEYS.increment();
+            }
+            long tickStart = System.nanoTime();
+            session.advance(key);
+            TICK_TIME.recordSince(tickStart);
+            TICKS.increment();
             
             // Render appropriate world (main world or carrot world)
-            if (renderCarrot) {
-                counter += 1;
-                ter.renderFrame(movement.carrotWorld);
-                hUDisplay(movement.carrotWorld, renderCarrot, carrotMovement.finalCarrotCount);
-            } else {
-                ter.renderFrame(movement.world);
-                hUDisplay(movement.world, renderCarrot, carrotMovement.finalCarrotCount);
+            FrameEvent frame = FrameEvent.start();
+            TETile[][] tiles = session.frame();
+            ter.renderChanges(tiles);
+            hud.draw(tiles, session.renderCarrot, ter.redrew(Hud.MIN_X, Hud.MIN_Y, Hud.MAX_X, Hud.MAX_Y));
+            FrameEvent.finish(frame, session.ticks(), session.renderCarrot, tiles.length * tiles[0].length);
+            if (key != Session.NO_KEY) {
+                INPUT_LATENCY.recordSince(start);
             }
 
             // Control game speed (10 FPS)
             StdDraw.pause(100);
 
             // Return to main world after 120 frames (12 seconds) in carrot world
-            if (counter == (120)) {
-                renderCarrot = false;
-                counter = 0;
-                c.respawnCarrot();
-                movement.removeCarrot(carrotX, carrotY);
-                
-                // Remove the collected carrot from the world
-                ArrayList<Coord> copy = new ArrayList<>(ourWorld.carrotCoord);
-                for (Coord p : copy) {
-                    if (p.x == carrotX && p.y == carrotY) {
-                        ourWorld.carrotCoord.remove(p);
-                    }
-                }
-                System.out.println(ourWorld.carrotCoord + ourWorld.carrotCoord.toString());
-            }
+            session.settle();
         }
     }
 
@@ -138,53 +213,11 @@ public class Game {
      */
     public static void moveAvatar(boolean c, String s, AvatarMoves M, CarrotMoves m, TERenderer t, World w) throws IOException {
         if (StdDraw.hasNextKeyTyped()) {
-            switch (StdDraw.nextKeyTyped()) {
-                // Gardener avatar movement (WASD)
-                case 'w':
-                    M.avatarUp();
-                    if (c) {
-                        m.avatarCarrotUp();
-                    }
-                    break;
-                case 'a':
-                    M.avatarLeft();
-                    if (c) {
-                        m.avatarCarrotLeft();
-                    }
-                    break;
-                case 's':
-                    M.avatarDown();
-                    if (c) {
-                        m.avatarCarrotDown();
-                    }
-                    break;
-                case 'd':
-                    M.avatarRight();
-                    if (c) {
-                        m.avatarCarrotRight();
-                    }
-                    break;
-                
-                // Duck avatar movement (IJKL)
-                case 'i':
-                    M.duckUp();
-                    break;
-                case 'j':
-                    M.duckLeft();
-                    break;
-                case 'k':
-                    M.duckDown();
-                    break;
-                case 'l':
-                    M.duckRight();
-                    break;
-                
-                // Special command menu access
-                case ':':
-                    keyboard(s, M.avatarCoord, M.duckCoord, w.carrotCoord, t);
-                    break;
-                default:
-                    break;
+            char key = StdDraw.nextKeyTyped();
+            if (key == ':') {
+                keyboard(s, M.avatarCoord, M.duckCoord, w.carrotCoord, t);
+            } else {
+                Session.applyKey(c, key, M, m);
             }
         }
     }
@@ -194,47 +227,25 @@ public class Game {
      * 
      * This method provides real-time feedback about what the player
      * is looking at, including tile type descriptions and carrot count.
+     * It always draws; the game loop uses a Hud instead, which only draws
+     * when the label or colors change.
      * 
      * @param world The current world being displayed
      * @param carrot Whether the gardener is in carrot world
      * @param count The number of carrots collected
      */
     public static void hUDisplay(TETile[][] world, boolean carrot, int count) {
-        TETile curr;
         double mx = Math.floor(StdDraw.mouseX());
         double my = Math.floor(StdDraw.mouseY());
 
         // Ensure mouse coordinates are within world bounds
+        TETile curr;
         if (mx >= 100 || my >= 60 || mx < 0 || my < 0) {
             curr = world[99][59];
         } else {
             curr = world[(int) mx][(int) my];
         }
-
-        // Determine tile type and display appropriate description
-        if (curr.equals(Tileset.FLOWER)) {
-            hUDisplayer("garden wall", carrot, count);
-        } else if (curr.equals(Tileset.HALLDIRT) || curr.equals(Tileset.DIRT)) {
-            hUDisplayer("dirt", carrot, count);
-        } else if (curr.equals(Tileset.AVATAR)) {
-            hUDisplayer("gardener", carrot, count);
-        } else if (curr.equals(Tileset.DUCK)) {
-            hUDisplayer("duck", carrot, count);
-        } else if (curr.equals(Tileset.CARROT)) {
-            hUDisplayer("carrot", carrot, count);
-        } else if (curr.equals(Tileset.RED) || curr.equals(Tileset.WHITE)) {
-            hUDisplayer("tablecloth", carrot, count);
-        } else if (curr.equals(Tileset.GRAY) || curr.equals(Tileset.LIGHTGRAY)) {
-            hUDisplayer("plate", carrot, count);
-        } else if (curr.equals(Tileset.NAPKIN)) {
-            hUDisplayer("napkin", carrot, count);
-        } else if (curr.equals(Tileset.DARKGRAY)) {
-            hUDisplayer("fork", carrot, count);
-        } else if (curr.equals(Tileset.GREEN) || curr.equals(Tileset.ORANGE)) {
-            hUDisplayer("carrot", carrot, count);
-        } else {
-            hUDisplayer("grass", carrot, count);
-        }
+        Hud.draw(Hud.label(curr), carrot);
     }
 
     /**
@@ -248,60 +259,19 @@ public class Game {
      * @param count Number of carrots collected
      */
     public static void hUDisplayer(String tileType, boolean carrot, int count) {
-        // Set background color based on current world (carrot world = red, main world = green)
-        if (carrot) {
-            StdDraw.setPenColor(191, 65, 65);
-            StdDraw.filledRectangle(7.4, 59, 6.8, .75);
-            StdDraw.setPenColor(Color.white);
-        } else {
-            StdDraw.setPenColor(140, 199, 94);
-            StdDraw.filledRectangle(7.4, 59, 6.8, .75);
-            StdDraw.setPenColor(243, 78, 182);
-        }
-        
-        // Display tile information and carrot count
-        StdDraw.textLeft(1, 59,"Current Tile: " + tileType);
-        StdDraw.show();
+        Hud.draw("Current Tile: " + tileType, carrot);
     }
 
     /**
      * Renders the main title page with game options.
      * 
-     * Creates a beautiful rose pattern background with:
-     * - Game title "BYOG" (Build Your Own Garden)
-     * - Subtitle and game options
-     * - Decorative flower pattern using mathematical rose curves
+     * Shows the rose pattern background, the title "BYOG" (Build Your Own
+     * Garden), the subtitle and the game options. The artwork is drawn once
+     * and cached (see TitleScreen), so showing it again after a save is a
+     * single picture.
      */
     public static void titlePage() {
-        StdDraw.setCanvasSize();
-
-        // Draw the decorative rose pattern background
-        drawRose();
-
-        // Draw the central yellow circle
-        drawCircle();
-
-        // Set up title text
-        StdDraw.setPenColor(new Color(117, 68, 43));
-
-        // Main title
-        Font titleFont = new Font("Arial", Font.BOLD, 60);
-        StdDraw.setFont(titleFont);
-        StdDraw.text(0.5, 0.58, "BYOG");
-
-        // Subtitle
-        Font subtitleFont = new Font("Arial", Font.ITALIC, 18);
-        StdDraw.setFont(subtitleFont);
-        StdDraw.text(0.5, 0.52, "Build Your Own Garden");
-
-        // Game options
-        Font optionsFont = new Font("Arial", 1, 22);
-        StdDraw.setFont(optionsFont);
-        StdDraw.text(0.5, 0.42, "New Game (N)");
-        StdDraw.text(0.5, 0.37, "Load Game (L)");
-        StdDraw.text(0.5, 0.32, "Quit Game (Q)");
-
-        StdDraw.show();
+        TitleScreen.show();
     }
 
     /**
@@ -407,7 +377,7 @@ public class Game {
     /**
      * Saves the current game state to a file.
      * 
-     * Creates a save.txt file containing:
+     * Writes the current save store (save.txt by default) containing:
      * - Game seed
      * - Avatar coordinates
      * - Duck coordinates
@@ -421,9 +391,8 @@ public class Game {
      * @throws IOException If there's an error during file operations
      */
     public static void saveGame(String s, Coord aC, Coord dC, ArrayList<Coord> cC, TERenderer ter) throws IOException {
+        long start = System.nanoTime();
         try {
-            PrintWriter saveTxt = new PrintWriter("save.txt");
-
             // Clean up seed string format
             if (s.charAt(0) != ('n')) {
                 s = s.substring(0, s.length());
@@ -432,15 +401,17 @@ public class Game {
             }
 
             // Write game state in CSV format: seed,avatarX,avatarY,duckX,duckY,carrot1X,carrot1Y,...
-            saveTxt.write(s + "," + aC.x + "," + aC.y + "," + dC.x + "," + dC.y);
+            StringBuilder save = new StringBuilder();
+            save.append(s + "," + aC.x + "," + aC.y + "," + dC.x + "," + dC.y);
             for (Coord c : cC) {
-                saveTxt.write("," + c.x + "," + c.y);
+                save.append("," + c.x + "," + c.y);
             }
-            saveTxt.close();
-        } catch (IOException e) {
+            saveStore.write(save.toString());
+        } catch (RuntimeException e) {
             System.out.println("An error occurred.");
             e.printStackTrace();
         }
+        SAVE_TIME.recordSince(start);
         
         // Return to title screen after saving
         titlePage();
@@ -450,101 +421,58 @@ public class Game {
     /**
      * Loads a saved game from the save file.
      * 
-     * Reads the save.txt file and restores:
+     * Reads the current save store (save.txt by default) and restores:
      * - World generation with saved seed
      * - Avatar and duck positions
      * - Remaining carrot locations
      * - Game state for continued play
      * 
+     * As in runGame, the world is regenerated in the background while the
+     * window opens, carrot world is left to be built lazily when the
+     * gardener nears a carrot, and the time to the first frame is reported.
+     * 
      * @param ter The tile renderer
      * @throws IOException If there's an error during file operations
      */
     public static void loadGame(TERenderer ter) throws IOException {
-        // Load seed from save file
-        String seed = getSeed("");
-        System.out.println(seed);
-        
-        // Regenerate world and carrot world with saved seed
-        World ourWorld = new World(seed);
-        CarrotWorld c = new CarrotWorld(seed);
-        
-        // Initialize movement controllers
-        AvatarMoves movement = new AvatarMoves(ourWorld, c);
-        CarrotMoves carrotMovement = new CarrotMoves(ourWorld, c);
-        
-        // Set up rendering and load saved positions
+        // Regenerate the world from the saved seed and restore the saved
+        // positions, while the tiles are preloaded and the window is set up
+        long start = System.nanoTime();
+        String saveLine = saveStore.readLine();
+        CompletableFuture<Session> loading = Session.loadAsync(saveStore)
+                .whenComplete((loaded, e) -> LOAD_TIME.recordSince(start));
+        CompletableFuture<Void> tiles = CompletableFuture.runAsync(() -> TERenderer.preload(TileRegistry.tiles()));
         ter.initialize(100, 60);
-        movement.loadAvatar();
-        carrotMovement.spawnCarrotAvatar();
-        loadCarrots(ourWorld, carrotMovement);
-        
-        // Render initial state
-        ter.renderFrame(movement.world);
+        tiles.join();
+        Session session = loading.join();
+        System.out.println(session.seed);
         
-        // Initialize game loop variables
-        int carrotX = movement.avatarCoord.x;
-        int carrotY = movement.avatarCoord.y;
-        long counter = 0;
-        boolean renderCarrot = false;
-
-        // Main game loop for loaded game
-        while (true) {
-            // Check for carrot collection
-            for (Coord i : ourWorld.carrotCoord) {
-                if (i.x == movement.avatarCoord.x && i.y == movement.avatarCoord.y) {
-                    renderCarrot = true;
-                    carrotX = i.x;
-                    carrotY = i.y;
-                    break;
-                }
-            }
-            
-            // Process input and render appropriate world
-            moveAvatar(renderCarrot, seed, movement, carrotMovement, ter, ourWorld);
-            if (renderCarrot) {
-                counter += 1;
-                ter.renderFrame(movement.carrotWorld);
-                hUDisplay(movement.carrotWorld, renderCarrot, carrotMovement.finalCarrotCount);
-            } else {
-                ter.renderFrame(movement.world);
-                hUDisplay(movement.world, renderCarrot, carrotMovement.finalCarrotCount);
-            }
-            
-            StdDraw.pause(100);
-
-            // Return to main world after carrot world timer expires
-            if (counter == (120)) {
-                renderCarrot = false;
-                counter = 0;
-                c.respawnCarrot();
-                movement.removeCarrot(carrotX, carrotY);
-                
-                // Remove collected carrot
-                ArrayList<Coord> copy = new ArrayList<>(ourWorld.carrotCoord);
-                for (Coord p : copy) {
-                    if (p.x == carrotX && p.y == carrotY) {
-                        ourWorld.carrotCoord.remove(p);
-                    }
-                }
-                System.out.println(ourWorld.carrotCoord.toString());
-            }
-        }
+        play(session, new Replay(session.seed, saveLine), ter, start);
     }
 
     /**
      * Extracts the seed from the save file.
      * 
-     * Reads the first line of save.txt and parses the seed value
+     * Reads the first line of the save store and parses the seed value
      * from the comma-separated format.
      * 
      * @param seed Default seed value (unused parameter)
      * @return The seed string from the save file
      */
     public static String getSeed(String seed) {
-        In save = new In("./save.txt");
+        return getSeed(seed, saveStore);
+    }
 
-        while (save.hasNextLine()) {
-            String[] splitLine = save.readLine().split(",");
+    /**
+     * Extracts the seed from the given save store.
+     *
+     * @param seed Default seed value (unused parameter)
+     * @param store The save store to read
+     * @return The seed string from the save
+     */
+    public static String getSeed(String seed, SaveStore store) {
+        for (String line : store.read().split("\n")) {
+            String[] splitLine = line.split(",");
             seed = splitLine[0];
         }
         return seed;
@@ -560,9 +488,28 @@ public class Game {
      * @param move The carrot movement controller
      */
     public static void loadCarrots(World w, CarrotMoves move) {
-        In file = new In("./save.txt");
+        loadCarrots(w, move, saveStore);
+    }
+
+    /**
+     * Loads carrot positions from the given save store.
+     *
+     * @param w The world to place carrots in
+     * @param move The carrot movement controller
+     * @param store The save store to read
+     */
+    public static void loadCarrots(World w, CarrotMoves move, SaveStore store) {
+        loadCarrots(w, store);
+    }
 
-        String currentLine = file.readLine();
+    /**
+     * Loads carrot positions from the given save store into the main world.
+     *
+     * @param w The world to place carrots in
+     * @param store The save store to read
+     */
+    public static void loadCarrots(World w, SaveStore store) {
+        String currentLine = store.readLine();
         String[] splitLine = currentLine.split(",");
         ArrayList<Coord> carrotCoordsCopy = new ArrayList<Coord>();
 
@@ -570,135 +517,12 @@ public class Game {
         for (int i = 5; i < splitLine.length; i += 2) {
             int carrotX = Integer.parseInt(splitLine[i]);
             int carrotY = Integer.parseInt(splitLine[i + 1]);
-            move.world[carrotX][carrotY] = Tileset.CARROT;
+            w.set(carrotX, carrotY, Tileset.CARROT);
             carrotCoordsCopy.add(new Coord(carrotX * carrotX, carrotX, carrotY));
         }
 
         w.carrotCoord = carrotCoordsCopy;
     }
 
-    /**
-     * Renders a beautiful rose pattern using mathematical rose curves.
-     * 
-     * Creates a decorative flower pattern using the mathematical formula:
-     * r = sin(nθ) where n determines the number of petals.
-     * 
-     * @source https://introcs.cs.princeton.edu/java/15inout/Rose.java.html
-     */
-    public static void drawRose() {
-        StdDraw.clear(new Color(108, 162, 87));
-        int n = 5;  // Number of rose petals
-        StdDraw.enableDoubleBuffering();
-        StdDraw.setXscale(-1, +1);
-        StdDraw.setYscale(-1, +1);
-        
-        // Draw multiple layers of rose curves with different colors and thicknesses
-        
-        // Layer 1: Thick pink lines
-        StdDraw.setPenRadius(0.15);
-        StdDraw.setPenColor(new Color(231, 103, 182));
-        double x0 = 0, y0 = 0;
-        for (double t = 0.0; t <= 360.0; t += 0.1) {
-            double theta = Math.toRadians(t);
-            double x1 = Math.sin(n * theta) * Math.cos(theta);
-            double y1 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x0, y0, x1, y1);
-            x0 = x1;
-            y0 = y1;
-        }
-
-        // Layer 2: Medium pink lines
-        StdDraw.setPenRadius(0.08);
-        StdDraw.setPenColor(new Color(255, 149, 217));
-        double x2 = 0, y2 = 0;
-        for (double t = 360.0; t >= 0; t -= 0.1) {
-            double theta = Math.toRadians(t);
-            double x3 = Math.sin(n * theta) * Math.cos(theta);
-            double y3 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x2, y2, x3, y3);
-            x0 = x3;
-            y0 = y3;
-        }
 
-        // Layer 3: Thin light pink lines
-        StdDraw.setPenRadius(0.06);
-        StdDraw.setPenColor(new Color(255, 192, 232));
-        double x5 = 0, y5 = 0;
-        for (double t = 0.0; t <= 360.0; t += 0.1) {
-            double theta = Math.toRadians(t);
-            double x6 = Math.sin(n * theta) * Math.cos(theta);
-            double y6 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x5, y5, x6, y6);
-            x5 = x6;
-            y5 = y6;
-        }
-
-        // Layer 4: Very thin pink lines
-        StdDraw.setPenRadius(0.04);
-        StdDraw.setPenColor(new Color(231, 103, 182));
-        double x7 = 0, y7 = 0;
-        for (double t = 360.0; t >= 0; t -= 0.1) {
-            double theta = Math.toRadians(t);
-            double x8 = Math.sin(n * theta) * Math.cos(theta);
-            double y8 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x7, y7, x8, y8);
-            x5 = x8;
-            y5 = y8;
-        }
-
-        // Layer 5: Finest pink lines
-        StdDraw.setPenRadius(0.02);
-        StdDraw.setPenColor(new Color(255, 149, 217));
-        double x9 = 0, y9 = 0;
-        for (double t = 0.0; t <= 360.0; t += 0.1) {
-            double theta = Math.toRadians(t);
-            double x10 = Math.sin(n * theta) * Math.cos(theta);
-            double y10 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x9, y9, x10, y10);
-            x9 = x10;
-            y9 = y10;
-        }
-
-        StdDraw.show();
-        StdDraw.disableDoubleBuffering();
-        
-        // Final layer: Half rose pattern
-        StdDraw.setPenRadius(0.00004);
-        StdDraw.setPenColor(new Color(255, 192, 232));
-        double x11 = 0, y11 = 0;
-        for (double t = 0.0; t <= 180.0; t += 0.1) {
-            double theta = Math.toRadians(t);
-            double x12 = Math.sin(n * theta) * Math.cos(theta);
-            double y12 = Math.sin(n * theta) * Math.sin(theta);
-            StdDraw.line(x11, y11, x12, y12);
-            x5 = x11;
-            y5 = y11;
-        }
-    }
-
-    /**
-     * Draws the central yellow circle in the rose pattern.
-     * 
-     * Creates a layered circular design with multiple shades of yellow
-     * to simulate the center of a flower.
-     */
-    public static void drawCircle() {
-        StdDraw.setXscale();
-        StdDraw.setYscale();
-        
-        // Large yellow circle
-        StdDraw.setPenRadius(0.3);
-        StdDraw.setPenColor(new Color(255, 217, 3));
-        StdDraw.point(0.5, 0.5);
-        
-        // Medium orange circle
-        StdDraw.setPenRadius(0.2);
-        StdDraw.setPenColor(new Color(246, 167, 21));
-        StdDraw.point(0.5, 0.5);
-        
-        // Small yellow circle
-        StdDraw.setPenRadius(0.1);
-        StdDraw.setPenColor(new Color(255, 217, 3));
-        StdDraw.point(0.5, 0.5);
-    }
 }
@@ -0,0 +1,96 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for one phase of generating a world, so a
+ * recording shows which phase a slow seed spends its time in.
+ *
+ * Main world phases (World): "background", "rooms" (the roomMaker rejection
+ * loop), "pickDirt" (one per room, nested in "rooms"), "hallways" and
+ * "pickCarrot". Carrot world phases (CarrotWorld): "base" and "carrot" (also
+ * emitted when the carrot respawns).
+ *
+ * Record with e.g. java -XX:StartFlightRecording=filename=byow.jfr ...
+ * When no recording asks for these events, start returns null and nothing
+ * is allocated.
+ *
+ * @version 1.0
+ */
+@Name("byow.GenerationPhase")
+@Label("Generation Phase")
+@Category({"BYOW", "Generation"})
+@Description("One phase of generating the main world or the carrot world")
+@StackTrace(false)
+public class GenerationEvent extends Event {
+
+    // Instance used only to ask whether the event is being recorded
+    private static final GenerationEvent PROBE = new GenerationEvent();
+
+    @Label("World")
+    @Description("\"main\" or \"carrot\"")
+    String world;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Seed")
+    long seed;
+
+    @Label("Attempts")
+    @Description("Rooms tried (rooms), centers tried (pickDirt) or tiles probed (pickCarrot)")
+    int attempts;
+
+    @Label("Rooms")
+    @Description("Rooms placed (rooms) or joined by hallways (hallways)")
+    int rooms;
+
+    @Label("Tiles Written")
+    int tilesWritten;
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param world "main" or "carrot"
+     * @param phase Name of the phase
+     * @param seed Seed of the world being generated
+     * @return the started event, or null if it is not being recorded
+     */
+    static GenerationEvent start(String world, String phase, long seed) {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        GenerationEvent event = new GenerationEvent();
+        event.world = world;
+        event.phase = phase;
+        event.seed = seed;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a phase started by start and commits it.
+     *
+     * @param event The event returned by start (may be null)
+     * @param attempts Attempts made during the phase
+     * @param rooms Rooms placed or joined during the phase
+     * @param tilesWritten Tiles written during the phase
+     */
+    static void finish(GenerationEvent event, int attempts, int rooms, int tilesWritten) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.attempts = attempts;
+            event.rooms = rooms;
+            event.tilesWritten = tilesWritten;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,871 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds walking paths in a world by planning over its RoomGraph first and
+ * only then looking at tiles (HPA*-style).
+ *
+ * The pathfinder first turns the room graph into a graph of portals: the
+ * points where corridors enter or leave a room, cross each other, or end at a
+ * room center. Two portals are joined by an edge when a stretch of corridor
+ * runs between them, or when they are on the same room, whose floor is open
+ * so walking across it costs exactly its Manhattan distance. That makes
+ * shortcuts through rooms and across crossing hallways part of the graph,
+ * not just the chain of hallways the generator dug.
+ *
+ * A query then runs in two levels:
+ * 1. Coarse: A* over the portals, from the ones next to the start to the ones
+ *    next to the goal, with the Manhattan distance to the goal as heuristic.
+ *    This gives a route of waypoints: the start, portals and corridor corners,
+ *    then the goal.
+ * 2. Fine: each pair of consecutive waypoints is joined by an A* search over
+ *    the tiles of a small box around the two, so only the tiles along the
+ *    route are ever looked at.
+ *
+ * The work per query depends on the number of portals near the route and the
+ * length of the path, not on the size of the world, so a query across a
+ * 10000x10000 world does not flood its hundred million tiles the way a
+ * breadth-first search (see DistanceFields) would. route() alone is even
+ * cheaper, for callers that only need to know which way to head.
+ *
+ * That does not make every query cheap. On the 200x200 room lattice of
+ * RoomGraphBenchmark (10000x10000 tiles, 165,000 portals), route() takes
+ * about 10-20 microseconds between rooms a few apart, but about 1-1.5 ms
+ * between rooms anywhere in the world, because the coarse A* still settles
+ * a good share of the portals between them. path() adds the tile searches
+ * along the whole path: about 0.1-0.25 ms nearby, 3-4 ms across the world.
+ * Building the pathfinder for that lattice takes about a second. Only
+ * nearby route() queries are in the microseconds; long ones are fine once
+ * in a while (e.g. when a duck picks a new goal) but not for many agents
+ * every tick.
+ *
+ * Start and goal must be in a room or a corridor; other tiles have no route.
+ * Hallways that run side by side without crossing are not joined, so a path
+ * can now and then be a little longer than the shortest one.
+ *
+ * The search buffers are reused between queries, so a pathfinder must only
+ * be used by one thread at a time.
+ *
+ * @version 1.0
+ */
+public class HierarchicalPathfinder {
+
+    /**
+     * Which tiles can be walked on, e.g. a world's tiles or RoomGraph::walkable.
+     */
+    public interface Walkable {
+        /**
+         * @param x X coordinate of a tile
+         * @param y Y coordinate of a tile
+         * @return true if the tile can be walked on
+         */
+        boolean walkable(int x, int y);
+    }
+
+    private static final int MARGIN = 2;         // Tiles of slack around each leg's search box
+    private static final int MAX_MARGIN = 64;    // Give up widening a leg's box beyond this
+    private static final int LANDMARKS = 8;      // Portals whose distances sharpen the A* estimate
+    private static final int FAR = Integer.MAX_VALUE;
+
+    private final RoomGraph graph;
+    private final Walkable grid;
+
+    // Portals, indexed by node id
+    private int nodes;
+    private int[] nodeX = new int[64];
+    private int[] nodeY = new int[64];
+    private int[] nodeRoom = new int[64];        // Room whose floor or wall the portal is on, or -1
+    private final Map<Long, Integer> nodeAt = new HashMap<>();
+    private final int[][] portals;               // Portals of each room
+    private final int[] portalCount;
+
+    // Corridor edges of each node, node n's in linkStart[n] .. linkStart[n + 1] - 1
+    private int[] linkStart;
+    private int[] linkTo;
+    private int[] linkCost;
+    private int[] linkCorner;                    // Corridor whose corner the edge turns at, or -1
+
+    // Portals along each corridor, by distance from its first end
+    private final int[][] pointT;
+    private final int[][] pointNode;
+
+    // Coarse search, indexed by node id; stamp says which query wrote an entry
+    private final int[] cost;
+    private final int[] parent;                  // Node the search came from, -1 for a start node
+    private final int[] parentCorner;            // Corridor whose corner lies on the way in, or -1
+    private final int[] stamp;
+    private final int[] goalCost;                // Steps from a node to the goal, if goalStamp says so
+    private final int[] goalCorner;
+    private final int[] goalStamp;
+    private final int[] estimate;                // Lower bound on the steps from a node to the goal
+    private int[] goalNodes = new int[8];        // Nodes with a goalCost this query
+    private int goalCount;
+    private int query;
+    private final MinHeap nodeHeap = new MinHeap();
+
+    // Distances from a few far apart portals to every portal, indexed node * landmarks + k
+    private final int landmarks;
+    private final int[] landmarkDist;
+    private final int[] goalLandmark;            // Distances from each landmark to this query's goal
+
+    // Fine search over the tiles of one box, indexed (x - left) * boxH + (y - bottom)
+    private int[] tileCost = new int[64];
+    private int[] tileParent = new int[64];
+    private int[] tileStamp = new int[64];
+    private int leg;
+    private final MinHeap tileHeap = new MinHeap();
+
+    private int[] out = new int[64];             // Waypoints or path being built, as x, y pairs
+    private int outSize;
+
+    /**
+     * Builds the portal graph of a room graph. This looks at every corridor
+     * once, so create one pathfinder per world and reuse it.
+     *
+     * @param graph The rooms and corridors of the world
+     * @param grid Which tiles of the world can be walked on
+     */
+    public HierarchicalPathfinder(RoomGraph graph, Walkable grid) {
+        this.graph = graph;
+        this.grid = grid;
+        int rooms = graph.rooms();
+        int corridors = graph.corridors();
+        portals = new int[rooms][];
+        portalCount = new int[rooms];
+        pointT = new int[corridors][];
+        pointNode = new int[corridors][];
+        for (int r = 0; r < rooms; r++) {
+            portals[r] = new int[4];
+            node(graph.centerX(r), graph.centerY(r));
+        }
+        int[] edges = new int[64];               // Edges as (from, to, cost, corner) quadruples
+        int edgeCount = 0;
+        for (int c = 0; c < corridors; c++) {
+            findPoints(c);
+            int[] ts = pointT[c];
+            int[] ns = pointNode[c];
+            int bend = bend(c);
+            for (int i = 0; i + 1 < ts.length; i++) {
+                int a = ns[i];
+                int b = ns[i + 1];
+                if (a == b || (nodeRoom[a] >= 0 && nodeRoom[a] == nodeRoom[b])) {
+                    continue;                    // Inside a room: covered by the room's own edges
+                }
+                int corner = ts[i] < bend && bend < ts[i + 1] ? c : -1;
+                if (edgeCount + 8 > edges.length) {
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+                }
+                int length = ts[i + 1] - ts[i];
+                edges[edgeCount++] = a;
+                edges[edgeCount++] = b;
+                edges[edgeCount++] = length;
+                edges[edgeCount++] = corner;
+                edges[edgeCount++] = b;
+                edges[edgeCount++] = a;
+                edges[edgeCount++] = length;
+                edges[edgeCount++] = corner;
+            }
+        }
+        linkStart = new int[nodes + 1];
+        for (int e = 0; e < edgeCount; e += 4) {
+            linkStart[edges[e] + 1] += 1;
+        }
+        for (int n = 0; n < nodes; n++) {
+            linkStart[n + 1] += linkStart[n];
+        }
+        int links = edgeCount / 4;
+        linkTo = new int[links];
+        linkCost = new int[links];
+        linkCorner = new int[links];
+        int[] fill = Arrays.copyOf(linkStart, nodes);
+        for (int e = 0; e < edgeCount; e += 4) {
+            int at = fill[edges[e]]++;
+            linkTo[at] = edges[e + 1];
+            linkCost[at] = edges[e + 2];
+            linkCorner[at] = edges[e + 3];
+        }
+        cost = new int[nodes];
+        parent = new int[nodes];
+        parentCorner = new int[nodes];
+        stamp = new int[nodes];
+        goalCost = new int[nodes];
+        goalCorner = new int[nodes];
+        goalStamp = new int[nodes];
+        estimate = new int[nodes];
+        landmarks = Math.min(LANDMARKS, nodes);
+        landmarkDist = new int[nodes * landmarks];
+        goalLandmark = new int[landmarks];
+        if (landmarks > 0) {
+            pickLandmarks();
+        }
+    }
+
+    /*
+     * Picks landmarks spread as far apart as possible, each the portal furthest
+     * from those picked before it, and stores every portal's distance to each.
+     * By the triangle inequality, a node n is at least
+     * |dist(L, goal) - dist(L, n)| steps from the goal for every landmark L,
+     * which is a much better estimate than the straight-line distance when
+     * the way there winds around.
+     */
+    private void pickLandmarks() {
+        int[] dist = new int[nodes];
+        int[] nearest = new int[nodes];          // Distance to the closest landmark picked so far
+        Arrays.fill(nearest, FAR);
+        dijkstra(0, dist);
+        int next = furthest(dist, null);
+        for (int k = 0; k < landmarks; k++) {
+            dijkstra(next, dist);
+            for (int n = 0; n < nodes; n++) {
+                landmarkDist[n * landmarks + k] = dist[n];
+                if (dist[n] < nearest[n]) {
+                    nearest[n] = dist[n];
+                }
+            }
+            next = furthest(nearest, dist);
+        }
+    }
+
+    // Node with the largest finite value of dist, preferring ones reachable per reach if given
+    private int furthest(int[] dist, int[] reach) {
+        int best = 0;
+        for (int n = 0; n < nodes; n++) {
+            boolean ok = dist[n] != FAR && (reach == null || reach[n] != FAR);
+            if (ok && dist[n] > dist[best]) {
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    // Fills dist with the steps from node source to every node, FAR if unreachable
+    private void dijkstra(int source, int[] dist) {
+        Arrays.fill(dist, FAR);
+        nodeHeap.clear();
+        dist[source] = 0;
+        nodeHeap.push(source, 0);
+        while (!nodeHeap.isEmpty()) {
+            long key = nodeHeap.minKey();
+            int n = nodeHeap.pop();
+            int d = dist[n];
+            if (key != d) {
+                continue;
+            }
+            for (int e = linkStart[n]; e < linkStart[n + 1]; e++) {
+                int m = linkTo[e];
+                if (d + linkCost[e] < dist[m]) {
+                    dist[m] = d + linkCost[e];
+                    nodeHeap.push(m, dist[m]);
+                }
+            }
+            int r = nodeRoom[n];
+            if (r >= 0) {
+                for (int i = 0; i < portalCount[r]; i++) {
+                    int m = portals[r][i];
+                    int step = d + across(r, nodeX[n], nodeY[n], nodeX[m], nodeY[m]);
+                    if (step < dist[m]) {
+                        dist[m] = step;
+                        nodeHeap.push(m, step);
+                    }
+                }
+            }
+        }
+    }
+
+    // Collects the portals along corridor c: its ends, where it enters and leaves rooms, where it crosses others
+    private void findPoints(int c) {
+        int x1 = graph.centerX(graph.from(c));
+        int y1 = graph.centerY(graph.from(c));
+        int x2 = graph.centerX(graph.to(c));
+        int y2 = graph.centerY(graph.to(c));
+        int[] ts = new int[8];
+        int n = 0;
+        ts[n++] = 0;
+        ts[n++] = graph.length(c);
+        int[] near = graph.near(Math.min(x1, x2) - 1, Math.min(y1, y2) - 1,
+                Math.max(x1, x2) + 1, Math.max(y1, y2) + 1);
+        for (int entry : near) {
+            if (ts.length < n + 8) {
+                ts = Arrays.copyOf(ts, ts.length * 2);
+            }
+            if (entry >= 0) {
+                n = roomSpan(c, entry, ts, n);
+            } else if (~entry != c) {
+                n = crossings(c, ~entry, ts, n);
+            }
+        }
+        Arrays.sort(ts, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || ts[i] != ts[unique - 1]) {
+                ts[unique++] = ts[i];
+            }
+        }
+        pointT[c] = Arrays.copyOf(ts, unique);
+        pointNode[c] = new int[unique];
+        for (int i = 0; i < unique; i++) {
+            pointNode[c][i] = node(pointX(c, ts[i]), pointY(c, ts[i]));
+        }
+    }
+
+    // Adds where corridor c enters and leaves room r, if it passes through it
+    private int roomSpan(int c, int r, int[] ts, int n) {
+        int in = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        // The room's floor and wall without its corners, as a tall and a wide rectangle
+        for (int k = 0; k < 2; k++) {
+            int rx0 = graph.minX(r) - k;
+            int ry0 = graph.minY(r) - 1 + k;
+            int rx1 = graph.maxX(r) + k;
+            int ry1 = graph.maxY(r) + 1 - k;
+            for (int i = 0; i < 2; i++) {
+                int x0 = Math.max(segment(c, i, 0), rx0);
+                int y0 = Math.max(segment(c, i, 1), ry0);
+                int x1 = Math.min(segment(c, i, 2), rx1);
+                int y1 = Math.min(segment(c, i, 3), ry1);
+                if (x0 <= x1 && y0 <= y1) {
+                    int t0 = distance(c, x0, y0);
+                    int t1 = distance(c, x1, y1);
+                    in = Math.min(in, Math.min(t0, t1));
+                    last = Math.max(last, Math.max(t0, t1));
+                }
+            }
+        }
+        // The part of an L-shaped corridor in a room is one stretch (give or take a
+        // wall corner, which a path can step around), so its ends will do
+        if (in <= last) {
+            ts[n++] = in;
+            ts[n++] = last;
+        }
+        return n;
+    }
+
+    // Adds where corridor c crosses or starts sharing tiles with corridor d (at most 8 entries)
+    private int crossings(int c, int d, int[] ts, int n) {
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                int x0 = Math.max(segment(c, i, 0), segment(d, j, 0));
+                int y0 = Math.max(segment(c, i, 1), segment(d, j, 1));
+                int x1 = Math.min(segment(c, i, 2), segment(d, j, 2));
+                int y1 = Math.min(segment(c, i, 3), segment(d, j, 3));
+                if (x0 <= x1 && y0 <= y1) {
+                    ts[n++] = distance(c, x0, y0);
+                    ts[n++] = distance(c, x1, y1);
+                }
+            }
+        }
+        return n;
+    }
+
+    // Bounds {minX, minY, maxX, maxY}[k] of corridor c's row (part 0) or column (part 1)
+    private int segment(int c, int part, int k) {
+        int cx = graph.cornerX(c);
+        int cy = graph.cornerY(c);
+        int ex = part == 0 ? graph.centerX(graph.from(c)) : cx;
+        int ey = part == 0 ? cy : graph.centerY(graph.to(c));
+        switch (k) {
+            case 0:
+                return Math.min(cx, ex);
+            case 1:
+                return Math.min(cy, ey);
+            case 2:
+                return Math.max(cx, ex);
+            default:
+                return Math.max(cy, ey);
+        }
+    }
+
+    // Steps along corridor c from its first end to its corner
+    private int bend(int c) {
+        return Math.abs(graph.cornerX(c) - graph.centerX(graph.from(c)));
+    }
+
+    // Steps along corridor c from its first end to (x, y), which must be on it
+    private int distance(int c, int x, int y) {
+        if (graph.onRow(c, x, y)) {
+            return Math.abs(x - graph.centerX(graph.from(c)));
+        }
+        return bend(c) + Math.abs(y - graph.cornerY(c));
+    }
+
+    private int pointX(int c, int t) {
+        int x1 = graph.centerX(graph.from(c));
+        int bend = bend(c);
+        if (t >= bend) {
+            return graph.cornerX(c);
+        }
+        return graph.cornerX(c) > x1 ? x1 + t : x1 - t;
+    }
+
+    private int pointY(int c, int t) {
+        int y1 = graph.cornerY(c);
+        int bend = bend(c);
+        if (t <= bend) {
+            return y1;
+        }
+        return graph.centerY(graph.to(c)) > y1 ? y1 + t - bend : y1 - (t - bend);
+    }
+
+    // Id of the portal at (x, y), adding it if it is new
+    private int node(int x, int y) {
+        long key = RoomGraph.pack(x, y);
+        Integer id = nodeAt.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (nodes == nodeX.length) {
+            nodeX = Arrays.copyOf(nodeX, nodes * 2);
+            nodeY = Arrays.copyOf(nodeY, nodes * 2);
+            nodeRoom = Arrays.copyOf(nodeRoom, nodes * 2);
+        }
+        int r = graph.zoneAt(x, y);
+        nodeX[nodes] = x;
+        nodeY[nodes] = y;
+        nodeRoom[nodes] = r;
+        if (r >= 0) {
+            if (portalCount[r] == portals[r].length) {
+                portals[r] = Arrays.copyOf(portals[r], portalCount[r] * 2);
+            }
+            portals[r][portalCount[r]++] = nodes;
+        }
+        nodeAt.put(key, nodes);
+        nodes += 1;
+        return nodes - 1;
+    }
+
+    /**
+     * @return number of portals in the graph the pathfinder plans over
+     */
+    public int portals() {
+        return nodes;
+    }
+
+    /**
+     * Plans the coarse route from (sx, sy) to (gx, gy).
+     *
+     * @param sx X coordinate of the start
+     * @param sy Y coordinate of the start
+     * @param gx X coordinate of the goal
+     * @param gy Y coordinate of the goal
+     * @return the waypoints as {x0, y0, x1, y1, ...}, starting at the start and
+     *         ending at the goal, or null if there is no route
+     */
+    public int[] route(int sx, int sy, int gx, int gy) {
+        if (!plan(sx, sy, gx, gy)) {
+            return null;
+        }
+        return Arrays.copyOf(out, outSize);
+    }
+
+    /**
+     * Finds a walking path from (sx, sy) to (gx, gy): the coarse route, with
+     * every leg between two waypoints refined into single steps.
+     *
+     * @param sx X coordinate of the start
+     * @param sy Y coordinate of the start
+     * @param gx X coordinate of the goal
+     * @param gy Y coordinate of the goal
+     * @return every tile of the path as {x0, y0, x1, y1, ...}, starting at the
+     *         start and ending at the goal, or null if there is no path
+     */
+    public int[] path(int sx, int sy, int gx, int gy) {
+        if (!plan(sx, sy, gx, gy)) {
+            return null;
+        }
+        int[] waypoints = Arrays.copyOf(out, outSize);
+        outSize = 2;
+        for (int i = 2; i < waypoints.length; i += 2) {
+            if (!refine(waypoints[i - 2], waypoints[i - 1], waypoints[i], waypoints[i + 1])) {
+                return null;
+            }
+        }
+        return Arrays.copyOf(out, outSize);
+    }
+
+    // Fills out with the coarse route; false if there is none
+    private boolean plan(int sx, int sy, int gx, int gy) {
+        outSize = 0;
+        if (!grid.walkable(sx, sy) || !grid.walkable(gx, gy)) {
+            return false;
+        }
+        query += 1;
+        nodeHeap.clear();
+        goalCount = 0;
+        int startRoom = graph.zoneAt(sx, sy);
+        int startCorridor = startRoom < 0 ? graph.corridorAt(sx, sy) : -1;
+        int goalRoom = graph.zoneAt(gx, gy);
+        int goalCorridor = goalRoom < 0 ? graph.corridorAt(gx, gy) : -1;
+        if ((startRoom < 0 && startCorridor < 0) || (goalRoom < 0 && goalCorridor < 0)) {
+            return false;
+        }
+
+        // Start and goal in the same room, or on the same stretch of corridor: one leg does it
+        if (startRoom >= 0 && startRoom == goalRoom) {
+            append(sx, sy);
+            append(gx, gy);
+            return true;
+        }
+        if (startCorridor >= 0 && startCorridor == goalCorridor) {
+            int s = distance(startCorridor, sx, sy);
+            int g = distance(startCorridor, gx, gy);
+            if (stretch(startCorridor, s) == stretch(startCorridor, g)) {
+                append(sx, sy);
+                if (Math.min(s, g) < bend(startCorridor) && bend(startCorridor) < Math.max(s, g)) {
+                    append(graph.cornerX(startCorridor), graph.cornerY(startCorridor));
+                }
+                append(gx, gy);
+                return true;
+            }
+        }
+
+        // Goal side first, so the search knows where it may stop
+        if (goalRoom >= 0) {
+            for (int i = 0; i < portalCount[goalRoom]; i++) {
+                int p = portals[goalRoom][i];
+                setGoal(p, across(goalRoom, nodeX[p], nodeY[p], gx, gy), -1);
+            }
+        } else {
+            int t = distance(goalCorridor, gx, gy);
+            int i = stretch(goalCorridor, t);
+            setGoal(pointNode[goalCorridor][i], t - pointT[goalCorridor][i],
+                    cornerBetween(goalCorridor, pointT[goalCorridor][i], t));
+            if (i + 1 < pointT[goalCorridor].length) {
+                setGoal(pointNode[goalCorridor][i + 1], pointT[goalCorridor][i + 1] - t,
+                        cornerBetween(goalCorridor, t, pointT[goalCorridor][i + 1]));
+            }
+        }
+        for (int k = 0; k < landmarks; k++) {
+            int best = FAR;
+            for (int i = 0; i < goalCount; i++) {
+                int d = landmarkDist[goalNodes[i] * landmarks + k];
+                if (d != FAR) {
+                    best = Math.min(best, d + goalCost[goalNodes[i]]);
+                }
+            }
+            goalLandmark[k] = best;
+        }
+        if (startRoom >= 0) {
+            for (int i = 0; i < portalCount[startRoom]; i++) {
+                int p = portals[startRoom][i];
+                relax(p, across(startRoom, sx, sy, nodeX[p], nodeY[p]), -1, -1, gx, gy);
+            }
+        } else {
+            int t = distance(startCorridor, sx, sy);
+            int i = stretch(startCorridor, t);
+            relax(pointNode[startCorridor][i], t - pointT[startCorridor][i], -1,
+                    cornerBetween(startCorridor, pointT[startCorridor][i], t), gx, gy);
+            if (i + 1 < pointT[startCorridor].length) {
+                relax(pointNode[startCorridor][i + 1], pointT[startCorridor][i + 1] - t, -1,
+                        cornerBetween(startCorridor, t, pointT[startCorridor][i + 1]), gx, gy);
+            }
+        }
+        int last = search(gx, gy);
+        if (last < 0) {
+            return false;
+        }
+        emit(sx, sy, gx, gy, last);
+        return true;
+    }
+
+    // Index of the last portal of corridor c at or before t steps from its first end
+    private int stretch(int c, int t) {
+        int i = Arrays.binarySearch(pointT[c], t);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // c if corridor c turns its corner strictly between t0 and t1 steps from its first end, else -1
+    private int cornerBetween(int c, int t0, int t1) {
+        return t0 < bend(c) && bend(c) < t1 ? c : -1;
+    }
+
+    private void setGoal(int n, int steps, int corner) {
+        if (goalStamp[n] == query && goalCost[n] <= steps) {
+            return;
+        }
+        if (goalStamp[n] != query) {
+            if (goalCount == goalNodes.length) {
+                goalNodes = Arrays.copyOf(goalNodes, goalCount * 2);
+            }
+            goalNodes[goalCount++] = n;
+        }
+        goalStamp[n] = query;
+        goalCost[n] = steps;
+        goalCorner[n] = corner;
+    }
+
+    // Steps between two tiles of room r's floor or wall, walking across the floor
+    private int across(int r, int x0, int y0, int x1, int y1) {
+        int fx0 = clamp(x0, graph.minX(r), graph.maxX(r));
+        int fy0 = clamp(y0, graph.minY(r), graph.maxY(r));
+        int fx1 = clamp(x1, graph.minX(r), graph.maxX(r));
+        int fy1 = clamp(y1, graph.minY(r), graph.maxY(r));
+        return manhattan(x0, y0, fx0, fy0) + manhattan(fx0, fy0, fx1, fy1) + manhattan(fx1, fy1, x1, y1);
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    // A* over portals from the start nodes already queued; returns the node to finish from, or -1
+    private int search(int gx, int gy) {
+        int best = Integer.MAX_VALUE;
+        int bestNode = -1;
+        while (!nodeHeap.isEmpty() && (nodeHeap.minKey() >> 32) < best) {
+            long key = nodeHeap.minKey();
+            int n = nodeHeap.pop();
+            int g = cost[n];
+            if (key != key(g, estimate[n])) {
+                continue;                        // Stale entry; n was reached more cheaply since
+            }
+            if (goalStamp[n] == query && g + goalCost[n] < best) {
+                best = g + goalCost[n];
+                bestNode = n;
+            }
+            for (int e = linkStart[n]; e < linkStart[n + 1]; e++) {
+                relax(linkTo[e], g + linkCost[e], n, linkCorner[e], gx, gy);
+            }
+            int r = nodeRoom[n];
+            if (r >= 0) {
+                for (int i = 0; i < portalCount[r]; i++) {
+                    int p = portals[r][i];
+                    if (p != n) {
+                        relax(p, g + across(r, nodeX[n], nodeY[n], nodeX[p], nodeY[p]), n, -1, gx, gy);
+                    }
+                }
+            }
+        }
+        return bestNode;
+    }
+
+    private void relax(int n, int g, int from, int corner, int gx, int gy) {
+        if (stamp[n] == query && cost[n] <= g) {
+            return;
+        }
+        if (stamp[n] != query) {
+            estimate[n] = estimate(n, gx, gy);
+            if (estimate[n] == FAR) {
+                return;                          // Cut off from the goal
+            }
+        }
+        stamp[n] = query;
+        cost[n] = g;
+        parent[n] = from;
+        parentCorner[n] = corner;
+        nodeHeap.push(n, key(g, estimate[n]));
+    }
+
+    // Lower bound on the steps from node n to the goal, or FAR if n cannot reach it
+    private int estimate(int n, int gx, int gy) {
+        int h = manhattan(nodeX[n], nodeY[n], gx, gy);
+        for (int k = 0; k < landmarks; k++) {
+            int d = landmarkDist[n * landmarks + k];
+            int dg = goalLandmark[k];
+            if (d == FAR || dg == FAR) {
+                if (d != dg) {
+                    return FAR;
+                }
+            } else {
+                h = Math.max(h, Math.abs(d - dg));
+            }
+        }
+        return h;
+    }
+
+    // Writes the waypoints of the route ending at node last into out
+    private void emit(int sx, int sy, int gx, int gy, int last) {
+        int count = 0;
+        for (int n = last; n >= 0; n = parent[n]) {
+            count += 1;
+        }
+        int[] chain = new int[count];
+        int n = last;
+        for (int i = count - 1; i >= 0; i--) {
+            chain[i] = n;
+            n = parent[n];
+        }
+        append(sx, sy);
+        for (int i = 0; i < count; i++) {
+            int corner = parentCorner[chain[i]];
+            if (corner >= 0) {
+                append(graph.cornerX(corner), graph.cornerY(corner));
+            }
+            append(nodeX[chain[i]], nodeY[chain[i]]);
+        }
+        if (goalCorner[last] >= 0) {
+            append(graph.cornerX(goalCorner[last]), graph.cornerY(goalCorner[last]));
+        }
+        append(gx, gy);
+    }
+
+    // A* over the tiles of a box around the leg, appending every step after (x0, y0)
+    private boolean refine(int x0, int y0, int x1, int y1) {
+        for (int margin = MARGIN; margin <= MAX_MARGIN; margin *= 4) {
+            if (refine(x0, y0, x1, y1, margin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean refine(int x0, int y0, int x1, int y1, int margin) {
+        int left = Math.max(0, Math.min(x0, x1) - margin);
+        int bottom = Math.max(0, Math.min(y0, y1) - margin);
+        int boxW = Math.max(x0, x1) + margin - left + 1;
+        int boxH = Math.max(y0, y1) + margin - bottom + 1;
+        int size = boxW * boxH;
+        if (tileCost.length < size) {
+            tileCost = new int[size];
+            tileParent = new int[size];
+            tileStamp = new int[size];
+            leg = 0;
+        }
+        leg += 1;
+        tileHeap.clear();
+        int start = (x0 - left) * boxH + (y0 - bottom);
+        int goal = (x1 - left) * boxH + (y1 - bottom);
+        tileStamp[start] = leg;
+        tileCost[start] = 0;
+        tileParent[start] = -1;
+        tileHeap.push(start, key(0, manhattan(x0, y0, x1, y1)));
+        while (!tileHeap.isEmpty()) {
+            long key = tileHeap.minKey();
+            int i = tileHeap.pop();
+            int x = i / boxH;
+            int y = i - x * boxH;
+            if (key != key(tileCost[i], manhattan(x + left, y + bottom, x1, y1))) {
+                continue;
+            }
+            if (i == goal) {
+                appendLeg(goal, boxH, left, bottom);
+                return true;
+            }
+            int g = tileCost[i] + 1;
+            if (y + 1 < boxH) {
+                step(i, i + 1, x, y + 1, g, left, bottom, x1, y1);
+            }
+            if (x > 0) {
+                step(i, i - boxH, x - 1, y, g, left, bottom, x1, y1);
+            }
+            if (y > 0) {
+                step(i, i - 1, x, y - 1, g, left, bottom, x1, y1);
+            }
+            if (x + 1 < boxW) {
+                step(i, i + boxH, x + 1, y, g, left, bottom, x1, y1);
+            }
+        }
+        return false;
+    }
+
+    private void step(int from, int to, int x, int y, int g, int left, int bottom, int x1, int y1) {
+        if (tileStamp[to] == leg && tileCost[to] <= g) {
+            return;
+        }
+        if (!grid.walkable(x + left, y + bottom)) {
+            return;
+        }
+        tileStamp[to] = leg;
+        tileCost[to] = g;
+        tileParent[to] = from;
+        tileHeap.push(to, key(g, manhattan(x + left, y + bottom, x1, y1)));
+    }
+
+    // Appends the tiles of the leg ending at goal, in walking order, leaving out its first tile
+    private void appendLeg(int goal, int boxH, int left, int bottom) {
+        int end = outSize + 2 * tileCost[goal];
+        if (end > out.length) {
+            out = Arrays.copyOf(out, Math.max(end, out.length * 2));
+        }
+        outSize = end;
+        for (int i = goal; tileParent[i] >= 0; i = tileParent[i]) {
+            end -= 2;
+            out[end] = i / boxH + left;
+            out[end + 1] = i % boxH + bottom;
+        }
+    }
+
+    // Appends a waypoint, skipping it if it repeats the previous one
+    private void append(int x, int y) {
+        if (outSize >= 2 && out[outSize - 2] == x && out[outSize - 1] == y) {
+            return;
+        }
+        if (outSize + 2 > out.length) {
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        out[outSize++] = x;
+        out[outSize++] = y;
+    }
+
+    // Heap key for A*: lowest estimate first, and among equal estimates the one
+    // furthest along, which keeps the search from widening across ties
+    private static long key(int g, int h) {
+        return ((long) (g + h) << 32) - g;
+    }
+
+    private static int manhattan(int x0, int y0, int x1, int y1) {
+        return Math.abs(x0 - x1) + Math.abs(y0 - y1);
+    }
+
+    // Binary min-heap of int values keyed by long priorities
+    private static final class MinHeap {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long minKey() {
+            return keys[0];
+        }
+
+        void push(int value, long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int up = (i - 1) / 2;
+                if (keys[up] <= key) {
+                    break;
+                }
+                keys[i] = keys[up];
+                values[i] = values[up];
+                i = up;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int top = values[0];
+            size -= 1;
+            long key = keys[size];
+            int value = values[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child += 1;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return top;
+        }
+    }
+}
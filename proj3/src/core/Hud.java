@@ -0,0 +1,168 @@
+package core;
+
+import edu.princeton.cs.algs4.StdDraw;
+import tileengine.TETile;
+import tileengine.Tileset;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * The heads-up display in the top left corner: a colored box saying which
+ * kind of tile is under the mouse.
+ *
+ * The label of each tile is looked up in a table indexed by tile id (see
+ * TileRegistry), built once in the same way as TileFlags, instead of a chain
+ * of equals calls. The tiles the game draws get the names players know
+ * (FLOWER is a "garden wall", RED and WHITE are the "tablecloth", and so on);
+ * any other tile is labelled with its own TETile.description().
+ *
+ * The HUD also remembers what it drew last: the hovered cell, the tile that
+ * was there and whether it was on carrot world colors. update() says whether
+ * any of that changed, or whether the renderer drew over the box, and only
+ * then does Game.play redraw it. A still mouse over a still world costs a
+ * few comparisons per frame and no drawing.
+ *
+ * @version 1.0
+ */
+public class Hud {
+
+    // Box centre and half sizes, in tiles, and the tiles it covers
+    static final double BOX_X = 7.4;
+    static final double BOX_Y = 59;
+    static final double BOX_HALF_WIDTH = 6.8;
+    static final double BOX_HALF_HEIGHT = .75;
+    static final int MIN_X = 0;
+    static final int MIN_Y = 58;
+    static final int MAX_X = 14;
+    static final int MAX_Y = 59;
+
+    // HUD colors, made once so drawing the HUD allocates nothing
+    private static final Color MAIN = new Color(140, 199, 94);
+    private static final Color MAIN_TEXT = new Color(243, 78, 182);
+    private static final Color CARROT = new Color(191, 65, 65);
+
+    // Label of each tile, indexed by TETile.id(); replaced (never modified) when it grows
+    private static volatile String[] labels = new String[0];
+
+    static {
+        name("garden wall", Tileset.FLOWER);
+        name("dirt", Tileset.HALLDIRT, Tileset.DIRT);
+        name("gardener", Tileset.AVATAR);
+        name("duck", Tileset.DUCK);
+        name("carrot", Tileset.CARROT, Tileset.GREEN, Tileset.ORANGE);
+        name("tablecloth", Tileset.RED, Tileset.WHITE);
+        name("plate", Tileset.GRAY, Tileset.LIGHTGRAY);
+        name("napkin", Tileset.NAPKIN);
+        name("fork", Tileset.DARKGRAY);
+        name("grass", Tileset.GRASS);
+    }
+
+    // What was drawn last; lastTile is -1 before the first draw
+    int lastX;                 // Hovered cell
+    int lastY;
+    int lastTile = -1;         // Id of the tile in the hovered cell
+    boolean lastCarrot;        // Whether carrot world colors were used
+    String label;              // Text shown, e.g. "Current Tile: dirt"
+
+    /**
+     * Returns the HUD text for a tile, e.g. "Current Tile: garden wall".
+     *
+     * @param t The tile under the mouse
+     * @return the label, the same String object every time for the same kind of tile
+     */
+    public static String label(TETile t) {
+        String[] table = labels;
+        int id = t.id();
+        if (id < table.length && table[id] != null) {
+            return table[id];
+        }
+        return learn(t.id(), t.description());
+    }
+
+    // Gives every tile in tiles the same name
+    private static void name(String name, TETile... tiles) {
+        for (TETile t : tiles) {
+            learn(t.id(), name);
+        }
+    }
+
+    // Stores the label of one tile id in the table
+    private static synchronized String learn(int id, String name) {
+        String[] grown = labels;
+        if (id < grown.length && grown[id] != null) {
+            return grown[id];
+        }
+        if (id >= grown.length) {
+            grown = Arrays.copyOf(grown, Math.max(id + 1, grown.length * 2));
+        } else {
+            grown = grown.clone();
+        }
+        grown[id] = "Current Tile: " + name;
+        labels = grown;
+        return grown[id];
+    }
+
+    /**
+     * Looks at the cell under the mouse and decides whether the HUD has to be
+     * drawn again. Positions outside the world show the top right tile, as
+     * the HUD always has.
+     *
+     * @param world The world on screen
+     * @param mx Mouse x, in tiles
+     * @param my Mouse y, in tiles
+     * @param carrot Whether the gardener is in carrot world
+     * @param covered Whether the renderer drew over the HUD box since it was last drawn
+     * @return true if the HUD looks different now, or was drawn over
+     */
+    public boolean update(TETile[][] world, double mx, double my, boolean carrot, boolean covered) {
+        int x = (int) Math.floor(mx);
+        int y = (int) Math.floor(my);
+        if (x >= world.length || y >= world[0].length || x < 0 || y < 0) {
+            x = world.length - 1;
+            y = world[0].length - 1;
+        }
+        TETile curr = world[x][y];
+        boolean changed = covered || lastTile == -1 || carrot != lastCarrot;
+        if (changed || x != lastX || y != lastY || curr.id() != lastTile) {
+            String now = label(curr);
+            changed |= !now.equals(label);
+            label = now;
+            lastX = x;
+            lastY = y;
+            lastTile = curr.id();
+        }
+        lastCarrot = carrot;
+        return changed;
+    }
+
+    /**
+     * Updates the HUD from the mouse position and draws it if it changed.
+     *
+     * @param world The world on screen
+     * @param carrot Whether the gardener is in carrot world
+     * @param covered Whether the renderer drew over the HUD box since it was last drawn
+     * @return true if the HUD was drawn
+     */
+    public boolean draw(TETile[][] world, boolean carrot, boolean covered) {
+        if (!update(world, StdDraw.mouseX(), StdDraw.mouseY(), carrot, covered)) {
+            return false;
+        }
+        draw(label, carrot);
+        return true;
+    }
+
+    /**
+     * Draws the HUD box and a label, whatever was drawn before.
+     *
+     * @param text The label to show
+     * @param carrot Whether to use carrot world colors (red) or main world colors (green)
+     */
+    public static void draw(String text, boolean carrot) {
+        StdDraw.setPenColor(carrot ? CARROT : MAIN);
+        StdDraw.filledRectangle(BOX_X, BOX_Y, BOX_HALF_WIDTH, BOX_HALF_HEIGHT);
+        StdDraw.setPenColor(carrot ? Color.white : MAIN_TEXT);
+        StdDraw.textLeft(1, 59, text);
+        StdDraw.show();
+    }
+}
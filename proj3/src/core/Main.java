@@ -1,6 +1,7 @@
 package core;
 
 import tileengine.TERenderer;
+import utils.MetricsExporter;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -19,14 +20,18 @@ public class Main {
      * Main method that launches the BYOG game application.
      * 
      * This method:
-     * 1. Creates a new TERenderer instance for 2D tile rendering
-     * 2. Displays the title screen with game options
-     * 3. Initializes the keyboard input handler for user interaction
+     * 1. Starts exporting metrics (see MetricsExporter.fromProperties)
+     * 2. Creates a new TERenderer instance for 2D tile rendering
+     * 3. Displays the title screen with game options
+     * 4. Initializes the keyboard input handler for user interaction
      * 
      * @param args Command line arguments (not used in this application)
      * @throws IOException If there's an error during file I/O operations
      */
     public static void main(String[] args) throws IOException {
+        // Dump metrics to byow.metrics.file and serve them over HTTP on byow.metrics.port, if set
+        MetricsExporter.fromProperties();
+
         // Initialize the tile renderer for 2D graphics
         TERenderer ter = new TERenderer();
 
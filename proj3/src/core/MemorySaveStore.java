@@ -0,0 +1,50 @@
+package core;
+
+/**
+ * A SaveStore that keeps the save in memory.
+ *
+ * Nothing touches disk, so headless runs and tests can save and load at
+ * memory speed, and any number of them can run side by side as long as each
+ * uses its own store. A single store is also safe to share between threads.
+ *
+ * @version 1.0
+ */
+public class MemorySaveStore implements SaveStore {
+
+    private volatile String contents;     // Saved game, or null if never saved
+
+    /**
+     * Creates an empty store.
+     */
+    public MemorySaveStore() {
+        this.contents = null;
+    }
+
+    /**
+     * Creates a store that already holds the given save.
+     *
+     * @param contents The save contents
+     */
+    public MemorySaveStore(String contents) {
+        this.contents = contents;
+    }
+
+    @Override
+    public boolean exists() {
+        return contents != null;
+    }
+
+    @Override
+    public String read() {
+        String saved = contents;
+        if (saved == null) {
+            throw new IllegalStateException("Nothing has been saved");
+        }
+        return saved;
+    }
+
+    @Override
+    public void write(String contents) {
+        this.contents = contents;
+    }
+}
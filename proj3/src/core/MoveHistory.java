@@ -0,0 +1,628 @@
+package core;
+
+import tileengine.ChunkedGrid;
+import tileengine.EntityLayer;
+import tileengine.TETile;
+import tileengine.TileRegistry;
+
+import java.util.ArrayList;
+
+/**
+ * A bounded history of a session's moves that can be rewound and played
+ * forward again: undo and redo in the game, and scrubbing a session back and
+ * forth for testing.
+ *
+ * A move is one movement key (WASD or IJKL). For every move the history
+ * keeps the small state the move can change (avatar positions, the carrot
+ * world timer, carrots eaten, ...) as it was just before the move, and the
+ * tiles written while the move was the latest one, as reversible deltas
+ * (old tile id, new tile id). Most moves write no tiles at all; eating a
+ * carrot writes one, and leaving carrot world a few dozen. Carrots taken off
+ * the main world's list are deltas too.
+ *
+ * Every interval moves (DEFAULT_KEYFRAME_INTERVAL unless given) it also
+ * keeps a keyframe: copy-on-write snapshots (see ChunkedGrid) of both
+ * worlds' terrain and the list of carrots. Stepping k moves away undoes or
+ * redoes k moves' deltas. Jumping further than interval moves restores the
+ * nearest keyframe before the target instead, touching only the chunks
+ * written since, and redoes at most interval moves from there. Nothing is
+ * ever regenerated.
+ *
+ * The history is on in every game, so recording a move allocates nothing
+ * once the history is warm. Keyframes live in a ring of slots that are
+ * reused, grids and carrot lists included (snapshots are taken into the
+ * old grids with ChunkedGrid.snapshotInto), and the chunks the terrain
+ * mirrors copy on write come from the spare chunks those reused keyframes
+ * let go of. The first time round the ring, and the next while it settles,
+ * keyframes and chunks are still being made; after that the game loop
+ * stays allocation-free with the history on (see allocationFreeTickTest).
+ *
+ * Only the last capacity moves are kept; older ones are forgotten, oldest
+ * first. Writes to the worlds reach the history through World.set,
+ * CarrotWorld.set and CarrotWorld.carrotMaker, which compare them with
+ * mirrors of both terrains kept here.
+ *
+ * Moving, or letting the carrot world timer run, after an undo drops the
+ * moves that were undone, as in any editor. Ducks in a DuckFlock are not
+ * part of the history, and carrot world's random numbers are not rewound:
+ * a carrot respawned after an undo may have a different size than before.
+ *
+ * @version 1.0
+ */
+public class MoveHistory {
+
+    // Moves kept when no capacity is given (about 17 minutes of one key per tick)
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    // Moves between keyframes when no interval is given
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    // Kinds of delta: a tile of the main world or carrot world, or a carrot
+    // taken off the main world's list (x is its index there, then its coordinates)
+    static final int MAIN = 0;
+    static final int CARROT = 1;
+    static final int CARROT_LIST = 2;
+
+    // A delta is DELTA ints: kind, x, y, old tile id, new tile id (-1 for none)
+    private static final int DELTA = 5;
+
+    // Layout of the state saved before each move, STATE ints per move
+    private static final int AVATAR_X = 0;
+    private static final int AVATAR_Y = 1;
+    private static final int DUCK_X = 2;
+    private static final int DUCK_Y = 3;
+    private static final int CARROT_AVATAR_X = 4;   // -1 if carrot world was not built yet
+    private static final int CARROT_AVATAR_Y = 5;
+    private static final int EATEN = 6;
+    private static final int FINAL_COUNT = 7;
+    private static final int IN_CARROT = 8;
+    private static final int COUNTER = 9;
+    private static final int CARROT_X = 10;
+    private static final int CARROT_Y = 11;
+    private static final int SCALE = 12;
+    private static final int STEM_Y = 13;
+    private static final int STATE = 14;
+
+    // Estimated sizes in bytes, for bytes(), assuming compressed references
+    private static final int ARRAY_HEADER = 16;
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final long CHUNK_BYTES = ARRAY_HEADER + OBJECT_HEADER + 8
+            + (long) ChunkedGrid.CHUNK * ChunkedGrid.CHUNK * REFERENCE;
+
+    // Terrain and carrots at one move, before it was made. Slots are reused
+    // for later keyframes, so every field is overwritten in place.
+    private static class Keyframe {
+        long move;
+        ChunkedGrid main;           // Main world terrain
+        ChunkedGrid carrot;         // Carrot world terrain, null until a keyframe has seen it built
+        boolean carrotBuilt;        // Whether carrot world was built at this move
+        int[] carrots = new int[0]; // Main world carrots, x and y of each, in the first carrotCount
+        int carrotCount;
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final int interval;
+
+    // Moves first to end - 1 are kept; the session is just before move position
+    // (or after the last move, if position == end)
+    private long first;
+    private long end;
+    private long position;
+
+    // State before each move, and the state after the last move once it has been
+    // undone, in slot m % slots
+    private int[] states;
+    private long[] deltaStart;     // Index of each move's first delta; deltaStart[end] = deltaEnd
+    private int slots;
+
+    // Deltas deltaStart[first] to deltaEnd - 1, delta d at (d % deltaSlots) * DELTA
+    private int[] deltas;
+    private int deltaSlots;
+    private long deltaEnd;
+
+    private final Keyframe[] keyframes;  // Keyframe of move m at (m / interval) % length
+    private ChunkedGrid main;            // Mirror of the main world's terrain
+    private ChunkedGrid carrot;          // Mirror of carrot world's terrain, null until built
+    private ChunkedGrid carrotBase;      // Carrot world as built, for keyframes taken before that
+    private int baseScale;               // Carrot world's carrot size and stem height as built
+    private int baseStemY;
+    private boolean restoring;           // Writes come from the history itself
+    private long keyframeBytes;          // Memory of the keyframe slots made so far, chunks excluded
+    private volatile long bytesPer1000Moves;  // Published by publish() for other threads
+
+    // Write what restore finds into the worlds (made once, so restoring does not allocate)
+    private final ChunkedGrid.CellVisitor restoreMain = (x, y, tile) -> write(MAIN, x, y, tile);
+    private final ChunkedGrid.CellVisitor restoreCarrot = (x, y, tile) -> write(CARROT, x, y, tile);
+
+    /**
+     * Starts recording a session's moves from its present state.
+     *
+     * @param session The session
+     * @param capacity Most moves to keep, at least 1
+     * @param interval Moves between keyframes, at least 1
+     */
+    MoveHistory(Session session, int capacity, int interval) {
+        if (capacity < 1 || interval < 1) {
+            throw new IllegalArgumentException("Capacity and keyframe interval must be at least 1, got "
+                    + capacity + " and " + interval);
+        }
+        this.session = session;
+        this.capacity = capacity;
+        this.interval = interval;
+        this.slots = Math.min(capacity + 1, 64);
+        this.states = new int[slots * STATE];
+        this.deltaStart = new long[slots];
+        this.deltaSlots = 16;
+        this.deltas = new int[deltaSlots * DELTA];
+        this.keyframes = new Keyframe[capacity / interval + 2];
+        this.main = ChunkedGrid.of(session.world.world);
+        session.world.history = this;
+        if (session.carrotWorld != null) {
+            carrotBuilt(session.carrotWorld);
+        }
+    }
+
+    /**
+     * Starts mirroring carrot world, once the session has built it.
+     *
+     * @param world The session's carrot world, as built
+     */
+    void carrotBuilt(CarrotWorld world) {
+        carrot = ChunkedGrid.of(world.carrotWorld);
+        carrotBase = carrot.snapshot();
+        baseScale = world.scale;
+        baseStemY = world.carrotStem.y;
+        world.history = this;
+    }
+
+    /**
+     * Called by Session.advance at the start of a tick, before anything in
+     * the session changes. A movement key starts a new move, so the state
+     * saved for it is the state just before the tick; entering carrot world
+     * by standing on a carrot is part of the move. After an undo, a tick that
+     * changes the session (a move, the carrot world timer, or entering
+     * carrot world) drops the moves that were undone.
+     *
+     * @param key The key about to be applied
+     * @param changes Whether the tick changes the session even without a key
+     */
+    void beforeKey(char key, boolean changes) {
+        boolean move = isMove(key);
+        if (position < end && (move || changes)) {
+            end = position;
+            deltaEnd = deltaStart[slot(end)];
+        }
+        if (!move) {
+            return;
+        }
+        if (end - first == capacity) {
+            first += 1;
+        }
+        if (end + 1 - first >= slots && slots < capacity + 1) {
+            growStates();
+        }
+        if (end % interval == 0) {
+            keyframe(end);
+        }
+        save(end);
+        deltaStart[slot(end)] = deltaEnd;
+        end += 1;
+        deltaStart[slot(end)] = deltaEnd;
+        position = end;
+        publish();
+    }
+
+    /**
+     * @param key A key
+     * @return whether the key is a move: WASD or IJKL
+     */
+    public static boolean isMove(char key) {
+        return key != Session.NO_KEY && "wasdijkl".indexOf(key) >= 0;
+    }
+
+    /**
+     * Records the tiles of one world written inside a box, by comparing them
+     * with the mirror of that world. Called after every write to the worlds.
+     *
+     * @param kind MAIN or CARROT
+     * @param grid The world's tiles
+     * @param minX Left edge of the box written, inclusive
+     * @param minY Bottom edge of the box written, inclusive
+     * @param maxX Right edge of the box written, inclusive
+     * @param maxY Top edge of the box written, inclusive
+     */
+    void changed(int kind, TETile[][] grid, int minX, int minY, int maxX, int maxY) {
+        ChunkedGrid mirror = kind == MAIN ? main : carrot;
+        if (restoring || mirror == null) {
+            return;
+        }
+        for (int x = Math.max(minX, 0); x <= Math.min(maxX, grid.length - 1); x++) {
+            for (int y = Math.max(minY, 0); y <= Math.min(maxY, grid[0].length - 1); y++) {
+                TETile was = mirror.get(x, y);
+                if (grid[x][y] != was) {
+                    mirror.set(x, y, grid[x][y]);
+                    record(kind, x, y, id(was), id(grid[x][y]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a carrot taken off the main world's list.
+     *
+     * @param index Where it was in World.carrotCoord
+     * @param c The carrot
+     */
+    void carrotRemoved(int index, Coord c) {
+        if (!restoring) {
+            record(CARROT_LIST, index, c.x, c.y, -1);
+        }
+    }
+
+    // Adds a delta to the latest move, if the session is at the latest move
+    private void record(int kind, int x, int y, int from, int to) {
+        if (position != end || end == first) {
+            return;
+        }
+        if (deltaEnd - deltaStart[slot(first)] == deltaSlots) {
+            growDeltas();
+        }
+        int i = (int) (deltaEnd % deltaSlots) * DELTA;
+        deltas[i] = kind;
+        deltas[i + 1] = x;
+        deltas[i + 2] = y;
+        deltas[i + 3] = from;
+        deltas[i + 4] = to;
+        deltaEnd += 1;
+        deltaStart[slot(end)] = deltaEnd;
+    }
+
+    /**
+     * Takes back the latest move that has not been taken back.
+     *
+     * @return whether there was a move to take back
+     */
+    public boolean undo() {
+        return rewind(1) == 1;
+    }
+
+    /**
+     * Makes the earliest move that was taken back again.
+     *
+     * @return whether there was a move to make again
+     */
+    public boolean redo() {
+        return forward(1) == 1;
+    }
+
+    /**
+     * Takes back up to steps moves.
+     *
+     * @param steps Number of moves to take back
+     * @return number taken back, fewer than steps at the oldest move kept
+     */
+    public long rewind(long steps) {
+        long from = position;
+        seek(steps >= position - first ? first : position - steps);
+        return from - position;
+    }
+
+    /**
+     * Makes up to steps moves that were taken back again.
+     *
+     * @param steps Number of moves to make again
+     * @return number made, fewer than steps at the latest move
+     */
+    public long forward(long steps) {
+        long from = position;
+        seek(steps >= end - position ? end : position + steps);
+        return position - from;
+    }
+
+    /**
+     * Puts the session in the state it was in just before a move (or after
+     * the latest move, for move == newest()). Costs O(|move - position()|)
+     * or, for jumps longer than the keyframe interval, O(interval) plus the
+     * chunks of terrain written since the keyframe used.
+     *
+     * @param move A move between oldest() and newest()
+     */
+    public void seek(long move) {
+        if (move < first || move > end) {
+            throw new IllegalArgumentException("Move " + move + " is not between " + first + " and " + end);
+        }
+        if (move == position) {
+            return;
+        }
+        if (position == end) {
+            save(end);
+        }
+        restoring = true;
+        long key = move / interval * interval;
+        Keyframe keyframe = keyframes[(int) (key / interval % keyframes.length)];
+        if (Math.abs(move - position) > interval && key >= first && key < end
+                && keyframe != null && keyframe.move == key) {
+            restore(keyframe);
+            position = key;
+        }
+        while (position > move) {
+            position -= 1;
+            long last = deltaStart[slot(position + 1)];
+            for (long d = last - 1; d >= deltaStart[slot(position)]; d--) {
+                apply(d, false);
+            }
+        }
+        while (position < move) {
+            long last = deltaStart[slot(position + 1)];
+            for (long d = deltaStart[slot(position)]; d < last; d++) {
+                apply(d, true);
+            }
+            position += 1;
+        }
+        load(position);
+        restoring = false;
+        publish();
+    }
+
+    // Takes the keyframe of move m, into the slot of the keyframe it replaces
+    private void keyframe(long m) {
+        int k = (int) (m / interval % keyframes.length);
+        Keyframe keyframe = keyframes[k];
+        if (keyframe == null) {
+            keyframe = new Keyframe();
+            keyframe.main = main.snapshot();
+            keyframes[k] = keyframe;
+            keyframeBytes += OBJECT_HEADER + 3 * REFERENCE + 8 + 4 + 4 + ARRAY_HEADER + gridBytes(main);
+        } else {
+            main.snapshotInto(keyframe.main);
+        }
+        keyframe.move = m;
+        keyframe.carrotBuilt = carrot != null;
+        if (carrot != null) {
+            if (keyframe.carrot == null) {
+                keyframe.carrot = carrot.snapshot();
+                keyframeBytes += gridBytes(carrot);
+            } else {
+                carrot.snapshotInto(keyframe.carrot);
+            }
+        }
+
+        ArrayList<Coord> carrots = session.world.carrotCoord;
+        if (keyframe.carrots.length < carrots.size() * 2) {
+            keyframeBytes += 4L * (carrots.size() * 2 - keyframe.carrots.length);
+            keyframe.carrots = new int[carrots.size() * 2];
+        }
+        for (int i = 0; i < carrots.size(); i++) {
+            keyframe.carrots[2 * i] = carrots.get(i).x;
+            keyframe.carrots[2 * i + 1] = carrots.get(i).y;
+        }
+        keyframe.carrotCount = carrots.size();
+    }
+
+    // Puts a keyframe's terrain and carrots back, writing only what differs
+    private void restore(Keyframe keyframe) {
+        main.diff(keyframe.main, restoreMain);
+        keyframe.main.snapshotInto(main);
+        if (carrot != null) {
+            ChunkedGrid then = keyframe.carrotBuilt ? keyframe.carrot : carrotBase;
+            carrot.diff(then, restoreCarrot);
+            then.snapshotInto(carrot);
+        }
+        ArrayList<Coord> carrots = session.world.carrotCoord;
+        carrots.clear();
+        for (int i = 0; i < keyframe.carrotCount; i++) {
+            carrots.add(coord(keyframe.carrots[2 * i], keyframe.carrots[2 * i + 1]));
+        }
+    }
+
+    // Undoes (forward == false) or redoes one delta
+    private void apply(long d, boolean forward) {
+        int i = (int) (d % deltaSlots) * DELTA;
+        if (deltas[i] == CARROT_LIST) {
+            ArrayList<Coord> carrots = session.world.carrotCoord;
+            if (forward) {
+                carrots.remove(deltas[i + 1]);
+            } else {
+                carrots.add(deltas[i + 1], coord(deltas[i + 2], deltas[i + 3]));
+            }
+            return;
+        }
+        int id = deltas[i + (forward ? 4 : 3)];
+        TETile tile = id == -1 ? null : TileRegistry.byId(id);
+        write(deltas[i], deltas[i + 1], deltas[i + 2], tile);
+        if (deltas[i] == MAIN) {
+            main.set(deltas[i + 1], deltas[i + 2], tile);
+        } else {
+            carrot.set(deltas[i + 1], deltas[i + 2], tile);
+        }
+    }
+
+    // Writes a tile into one of the session's worlds
+    private void write(int kind, int x, int y, TETile tile) {
+        if (kind == MAIN) {
+            session.world.set(x, y, tile);
+            if (session.distances != null) {
+                session.distances.tileChanged(x, y);
+            }
+        } else {
+            session.carrotWorld.set(x, y, tile);
+        }
+    }
+
+    // Saves the session's state into move m's slot
+    private void save(long m) {
+        int s = slot(m) * STATE;
+        AvatarMoves movement = session.movement;
+        states[s + AVATAR_X] = movement.avatarCoord.x;
+        states[s + AVATAR_Y] = movement.avatarCoord.y;
+        states[s + DUCK_X] = movement.duckCoord.x;
+        states[s + DUCK_Y] = movement.duckCoord.y;
+        CarrotMoves carrotMovement = session.carrotMovement;
+        if (carrotMovement == null) {
+            states[s + CARROT_AVATAR_X] = -1;
+        } else {
+            states[s + CARROT_AVATAR_X] = carrotMovement.avatarCoord.x;
+            states[s + CARROT_AVATAR_Y] = carrotMovement.avatarCoord.y;
+            states[s + EATEN] = carrotMovement.eatenCarrotCounter;
+            states[s + FINAL_COUNT] = carrotMovement.finalCarrotCount;
+            states[s + SCALE] = session.carrotWorld.scale;
+            states[s + STEM_Y] = session.carrotWorld.carrotStem.y;
+        }
+        states[s + IN_CARROT] = session.renderCarrot ? 1 : 0;
+        states[s + COUNTER] = (int) session.counter;
+        states[s + CARROT_X] = session.carrotX;
+        states[s + CARROT_Y] = session.carrotY;
+    }
+
+    // Puts the state saved in move m's slot back into the session
+    private void load(long m) {
+        int s = slot(m) * STATE;
+        AvatarMoves movement = session.movement;
+        moveTo(movement.entities, movement.avatarId, movement.avatarCoord, states[s + AVATAR_X], states[s + AVATAR_Y]);
+        moveTo(movement.entities, movement.duckId, movement.duckCoord, states[s + DUCK_X], states[s + DUCK_Y]);
+        CarrotMoves carrotMovement = session.carrotMovement;
+        if (carrotMovement != null) {
+            if (states[s + CARROT_AVATAR_X] == -1) {
+                carrotMovement.spawnCarrotAvatar();
+                carrotMovement.eatenCarrotCounter = 0;
+                carrotMovement.finalCarrotCount = 0;
+                session.carrotWorld.scale = baseScale;
+                session.carrotWorld.carrotStem.y = baseStemY;
+            } else {
+                moveTo(carrotMovement.entities, carrotMovement.avatarId, carrotMovement.avatarCoord,
+                        states[s + CARROT_AVATAR_X], states[s + CARROT_AVATAR_Y]);
+                carrotMovement.eatenCarrotCounter = states[s + EATEN];
+                carrotMovement.finalCarrotCount = states[s + FINAL_COUNT];
+                session.carrotWorld.scale = states[s + SCALE];
+                session.carrotWorld.carrotStem.y = states[s + STEM_Y];
+            }
+        }
+        session.renderCarrot = states[s + IN_CARROT] == 1;
+        session.counter = states[s + COUNTER];
+        session.carrotX = states[s + CARROT_X];
+        session.carrotY = states[s + CARROT_Y];
+    }
+
+    // Moves an avatar, if it is not already there (moving puts it on top of its tile)
+    private static void moveTo(EntityLayer entities, int id, Coord c, int x, int y) {
+        if (c.x != x || c.y != y) {
+            c.x = x;
+            c.y = y;
+            entities.move(id, x, y);
+        }
+    }
+
+    // Doubles the state ring (up to capacity + 1 slots), keeping every move in the same order
+    private void growStates() {
+        int grown = (int) Math.min((long) slots * 2, capacity + 1L);
+        int[] newStates = new int[grown * STATE];
+        long[] newStarts = new long[grown];
+        for (long m = first; m <= end; m++) {
+            System.arraycopy(states, slot(m) * STATE, newStates, (int) (m % grown) * STATE, STATE);
+            newStarts[(int) (m % grown)] = deltaStart[slot(m)];
+        }
+        states = newStates;
+        deltaStart = newStarts;
+        slots = grown;
+    }
+
+    // Doubles the delta ring, keeping every delta in the same order
+    private void growDeltas() {
+        int grown = deltaSlots * 2;
+        int[] newDeltas = new int[grown * DELTA];
+        for (long d = deltaStart[slot(first)]; d < deltaEnd; d++) {
+            System.arraycopy(deltas, (int) (d % deltaSlots) * DELTA, newDeltas, (int) (d % grown) * DELTA, DELTA);
+        }
+        deltas = newDeltas;
+        deltaSlots = grown;
+    }
+
+    private int slot(long m) {
+        return (int) (m % slots);
+    }
+
+    private static int id(TETile tile) {
+        return tile == null ? -1 : tile.id();
+    }
+
+    private static Coord coord(int x, int y) {
+        return new Coord(x * x + y * y, x, y);
+    }
+
+    /**
+     * @return number of the oldest move kept; moves are numbered from 0
+     */
+    public long oldest() {
+        return first;
+    }
+
+    /**
+     * @return number of moves made so far (counting moves taken back but not dropped),
+     *         which is also the position after the latest move
+     */
+    public long newest() {
+        return end;
+    }
+
+    /**
+     * @return number of the move the session is just before; newest() if none were taken back
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return number of moves kept
+     */
+    public long size() {
+        return end - first;
+    }
+
+    /**
+     * Estimates the memory the history holds, in bytes: the state and delta
+     * rings, the keyframe slots made so far, the terrain mirrors, and every
+     * terrain chunk made for them (spare chunks kept for reuse included).
+     * Everything is counted as it is made, so this takes constant time. Call
+     * it only from the thread making the moves; other threads can read
+     * bytesPer1000Moves.
+     *
+     * @return the estimate, assuming compressed references
+     */
+    public long bytes() {
+        long chunks = main.chunksCreated() + (carrot == null ? 0 : carrot.chunksCreated());
+        return arrayBytes(states.length, 4) + arrayBytes(deltaStart.length, 8)
+                + arrayBytes(deltas.length, 4) + arrayBytes(keyframes.length, REFERENCE)
+                + keyframeBytes + gridBytes(main) + gridBytes(carrot) + gridBytes(carrotBase)
+                + chunks * CHUNK_BYTES;
+    }
+
+    /**
+     * Returns bytes() per 1,000 moves kept, as of the latest move or seek.
+     * The value is worked out on the thread making the moves and only read
+     * here, so a metrics exporter may call this from any thread.
+     *
+     * @return bytes per 1,000 moves kept, or 0 before the first move
+     */
+    public long bytesPer1000Moves() {
+        return bytesPer1000Moves;
+    }
+
+    // Works out bytesPer1000Moves for other threads to read
+    private void publish() {
+        bytesPer1000Moves = size() == 0 ? 0 : bytes() * 1000 / size();
+    }
+
+    // Bytes of a grid and its chunk table, without the chunks
+    private static long gridBytes(ChunkedGrid grid) {
+        if (grid == null) {
+            return 0;
+        }
+        return OBJECT_HEADER + 32 + arrayBytes(grid.chunkCount(), REFERENCE);
+    }
+
+    private static long arrayBytes(int length, int size) {
+        return ARRAY_HEADER + (long) length * size;
+    }
+}
@@ -0,0 +1,175 @@
+package core;
+
+import utils.FileUtils;
+
+import java.util.Arrays;
+
+/**
+ * A recording of one play session that can be re-run headless.
+ *
+ * A recording holds everything needed to rebuild the session exactly:
+ * - the seed string the worlds were generated from
+ * - the save line the game was loaded from (null for a new game)
+ * - every key typed, with the tick it was typed on
+ * - how many ticks the session lasted and the state hash it ended with
+ *
+ * Game.play records every session into one of these and writes it to
+ * ./replay.txt when the player opens the ':' menu, so a bug report only
+ * needs that file. ReplayEngine plays it back.
+ *
+ * File format (one item per line):
+ *     seed
+ *     save line, or "-" for a new game
+ *     finalTick,finalHash
+ *     tick,keyCode        (one line per key)
+ *
+ * @version 1.0
+ */
+public class Replay {
+
+    // Where the interactive game writes its recording
+    static final String REPLAY_FILE = "./replay.txt";
+
+    private final String seed;         // Seed string of the recorded session
+    private final String saveLine;     // Save the session was loaded from, or null
+    private long[] events;             // Packed (tick << 16 | key) per key typed
+    private int size;                  // Number of events recorded
+    private long finalTick;            // Ticks the session lasted
+    private long finalHash;            // Session.stateHash() at finalTick
+
+    /**
+     * Starts an empty recording.
+     *
+     * @param seed Seed string of the session
+     * @param saveLine Save line the session was loaded from, or null for a new game
+     */
+    public Replay(String seed, String saveLine) {
+        this.seed = seed;
+        this.saveLine = saveLine;
+        this.events = new long[64];
+        this.size = 0;
+    }
+
+    /**
+     * Records a key typed on the given tick. Ticks must not go backwards.
+     *
+     * @param tick Tick the key was typed on
+     * @param key The key
+     */
+    public void record(long tick, char key) {
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+        }
+        events[size] = (tick << 16) | key;
+        size += 1;
+    }
+
+    /**
+     * Marks the end of the recording.
+     *
+     * @param tick Number of ticks the session lasted
+     * @param hash Session.stateHash() at that point
+     */
+    public void finish(long tick, long hash) {
+        this.finalTick = tick;
+        this.finalHash = hash;
+    }
+
+    /**
+     * @return seed string of the recorded session
+     */
+    public String seed() {
+        return seed;
+    }
+
+    /**
+     * @return save line the session was loaded from, or null for a new game
+     */
+    public String saveLine() {
+        return saveLine;
+    }
+
+    /**
+     * @return number of keys recorded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i Index of the event
+     * @return tick the i-th key was typed on
+     */
+    public long tickAt(int i) {
+        return events[i] >>> 16;
+    }
+
+    /**
+     * @param i Index of the event
+     * @return the i-th key typed
+     */
+    public char keyAt(int i) {
+        return (char) (events[i] & 0xFFFF);
+    }
+
+    /**
+     * @return number of ticks the session lasted
+     */
+    public long finalTick() {
+        return finalTick;
+    }
+
+    /**
+     * @return state hash the session ended with
+     */
+    public long finalHash() {
+        return finalHash;
+    }
+
+    /**
+     * Writes the recording to a file in the format described above.
+     *
+     * @param path Path of the file to write
+     */
+    public void save(String path) {
+        StringBuilder out = new StringBuilder();
+        out.append(seed).append('\n');
+        out.append(saveLine == null ? "-" : saveLine).append('\n');
+        out.append(finalTick).append(',').append(finalHash).append('\n');
+        for (int i = 0; i < size; i++) {
+            out.append(tickAt(i)).append(',').append((int) keyAt(i)).append('\n');
+        }
+        FileUtils.writeFile(path, out.toString());
+    }
+
+    /**
+     * Reads a recording written by save.
+     *
+     * @param path Path of the file to read
+     * @return the recording
+     */
+    public static Replay load(String path) {
+        return parse(FileUtils.readFile(path));
+    }
+
+    /**
+     * Parses a recording from the text produced by save.
+     *
+     * @param text The recording text
+     * @return the recording
+     */
+    public static Replay parse(String text) {
+        String[] lines = text.split("\n");
+        Replay replay = new Replay(lines[0], lines[1].equals("-") ? null : lines[1]);
+        String[] end = lines[2].split(",");
+        replay.finish(Long.parseLong(end[0]), Long.parseLong(end[1]));
+        for (int i = 3; i < lines.length; i++) {
+            if (lines[i].isEmpty()) {
+                continue;
+            }
+            String[] event = lines[i].split(",");
+            replay.record(Long.parseLong(event[0]), (char) Integer.parseInt(event[1]));
+        }
+        return replay;
+    }
+}
@@ -0,0 +1,75 @@
+package core;
+
+/**
+ * Re-runs a recorded session headless, at full CPU speed.
+ *
+ * The engine rebuilds the session from the recording's seed (or save), then
+ * feeds it the recorded keys on their recorded ticks through the same Session
+ * rules the game loop uses, including the carrot world timer. Nothing is drawn
+ * and nothing waits, so a session that took minutes to play replays in
+ * milliseconds. At the end the state hash is compared with the recorded one.
+ *
+ * @version 1.0
+ */
+public class ReplayEngine {
+
+    /**
+     * Builds the session a recording starts from. If the recording undoes or
+     * redoes moves, the session records moves from the start, as the game's
+     * sessions do.
+     *
+     * @param replay The recording
+     * @return a fresh session in the recording's starting state
+     */
+    public static Session start(Replay replay) {
+        Session session;
+        if (replay.saveLine() == null) {
+            session = Session.newGame(replay.seed());
+        } else {
+            session = Session.load(new MemorySaveStore(replay.saveLine()));
+        }
+        for (int i = 0; i < replay.size(); i++) {
+            if (replay.keyAt(i) == Session.UNDO_KEY || replay.keyAt(i) == Session.REDO_KEY) {
+                session.history();
+                break;
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Plays a recording back from the start to its final tick.
+     *
+     * @param replay The recording
+     * @return a report of the replayed ticks, speed and hash check
+     */
+    public static ReplayReport run(Replay replay) {
+        long start = System.nanoTime();
+        Session session = start(replay);
+        int next = 0;
+        while (session.ticks() < replay.finalTick()) {
+            char key = Session.NO_KEY;
+            if (next < replay.size() && replay.tickAt(next) == session.ticks()) {
+                key = replay.keyAt(next);
+                next += 1;
+            }
+            session.tick(key);
+        }
+        long nanos = System.nanoTime() - start;
+        return new ReplayReport(session.ticks(), nanos, replay.finalHash(), session.stateHash());
+    }
+
+    /**
+     * Replays the recording at the given path and prints the report.
+     *
+     * @param args args[0] is the recording to replay (./replay.txt if omitted)
+     */
+    public static void main(String[] args) {
+        String path = args.length > 0 ? args[0] : Replay.REPLAY_FILE;
+        ReplayReport report = run(Replay.load(path));
+        System.out.println(report);
+        if (!report.matches()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package core;
+
+/**
+ * The outcome of a headless replay: how many ticks were simulated, how fast,
+ * and whether the session ended in the recorded state.
+ *
+ * @version 1.0
+ */
+public class ReplayReport {
+
+    private final long ticks;          // Ticks simulated
+    private final long nanos;          // Wall-clock time of the replay
+    private final long expectedHash;   // State hash stored in the recording
+    private final long actualHash;     // State hash the replay ended with
+
+    /**
+     * @param ticks Ticks simulated
+     * @param nanos Wall-clock time of the replay, in nanoseconds
+     * @param expectedHash State hash stored in the recording
+     * @param actualHash State hash the replay ended with
+     */
+    public ReplayReport(long ticks, long nanos, long expectedHash, long actualHash) {
+        this.ticks = ticks;
+        this.nanos = nanos;
+        this.expectedHash = expectedHash;
+        this.actualHash = actualHash;
+    }
+
+    /**
+     * @return true if the replay ended in the recorded state
+     */
+    public boolean matches() {
+        return expectedHash == actualHash;
+    }
+
+    /**
+     * @return number of ticks simulated
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return wall-clock time of the replay, in nanoseconds
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return simulated ticks per second of wall-clock time
+     */
+    public double ticksPerSecond() {
+        return nanos == 0 ? Double.POSITIVE_INFINITY : ticks * 1e9 / nanos;
+    }
+
+    /**
+     * @return the state hash the replay ended with
+     */
+    public long actualHash() {
+        return actualHash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ticks in %.2f ms (%.0f ticks/s), hash %s (expected %016x, got %016x)",
+                ticks, nanos / 1e6, ticksPerSecond(), matches() ? "OK" : "MISMATCH", expectedHash, actualHash);
+    }
+}
@@ -0,0 +1,458 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rooms of a world and the corridors between them, as a graph.
+ *
+ * World fills one in while it generates: every room it places becomes a node
+ * (its floor rectangle and center), and every hallway makeHallwaysHelper digs
+ * becomes an edge between the two rooms whose centers it joins. A hallway is
+ * always L-shaped: from the first center (x1, y1) along the row y1 to the
+ * corner (x2, y1), then along the column x2 to the second center (x2, y2).
+ * Its cost is its length in tiles.
+ *
+ * Besides the graph itself, RoomGraph can tell which room or corridor a tile
+ * belongs to, using a coarse bucket index over the rooms and corridors. That
+ * is enough to know whether a tile is walkable in a world made only of rooms
+ * and corridors, so a graph can also stand in for a world too large to keep
+ * as tiles (see HierarchicalPathfinder).
+ *
+ * @version 1.0
+ */
+public class RoomGraph {
+
+    private static final int BUCKET = 64;        // Side of a bucket of the spatial index, in tiles
+
+    // Rooms: floor rectangle (inclusive) and center
+    private int[] xMin = new int[16];
+    private int[] yMin = new int[16];
+    private int[] xMax = new int[16];
+    private int[] yMax = new int[16];
+    private int[] centerX = new int[16];
+    private int[] centerY = new int[16];
+    private int[][] edges = new int[16][];       // Corridors touching each room
+    private int[] degree = new int[16];          // Number of entries of edges[room] in use
+    private int rooms;
+
+    // Corridors: the rooms they join, in the order they were dug
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int corridors;
+
+    private final Map<Long, Integer> roomByCenter = new HashMap<>();
+
+    // Spatial index, rebuilt after rooms or corridors are added
+    private int[][] buckets;                     // Room ids (>= 0) and ~corridor ids (< 0) per bucket
+    private int[] bucketSize;
+    private int bucketsX;
+    private int bucketsY;
+
+    /**
+     * Adds a room.
+     *
+     * @param x0 Left column of the room's floor
+     * @param y0 Bottom row of the room's floor
+     * @param x1 Right column of the room's floor
+     * @param y1 Top row of the room's floor
+     * @param cx X coordinate of the room's center, where its corridors start
+     * @param cy Y coordinate of the room's center
+     * @return the new room's id
+     */
+    public int addRoom(int x0, int y0, int x1, int y1, int cx, int cy) {
+        if (rooms == xMin.length) {
+            int n = rooms * 2;
+            xMin = Arrays.copyOf(xMin, n);
+            yMin = Arrays.copyOf(yMin, n);
+            xMax = Arrays.copyOf(xMax, n);
+            yMax = Arrays.copyOf(yMax, n);
+            centerX = Arrays.copyOf(centerX, n);
+            centerY = Arrays.copyOf(centerY, n);
+            edges = Arrays.copyOf(edges, n);
+            degree = Arrays.copyOf(degree, n);
+        }
+        xMin[rooms] = x0;
+        yMin[rooms] = y0;
+        xMax[rooms] = x1;
+        yMax[rooms] = y1;
+        centerX[rooms] = cx;
+        centerY[rooms] = cy;
+        edges[rooms] = new int[4];
+        roomByCenter.put(pack(cx, cy), rooms);
+        buckets = null;
+        rooms += 1;
+        return rooms - 1;
+    }
+
+    /**
+     * Adds the L-shaped corridor dug from the center (x1, y1) to the center (x2, y2).
+     * Corridors whose ends are not both room centers, or that join a room to
+     * itself, are ignored.
+     *
+     * @param x1 X coordinate of the first room's center
+     * @param y1 Y coordinate of the first room's center
+     * @param x2 X coordinate of the second room's center
+     * @param y2 Y coordinate of the second room's center
+     * @return the new corridor's id, or -1 if it was ignored
+     */
+    public int addCorridor(int x1, int y1, int x2, int y2) {
+        Integer a = roomByCenter.get(pack(x1, y1));
+        Integer b = roomByCenter.get(pack(x2, y2));
+        if (a == null || b == null || a.equals(b)) {
+            return -1;
+        }
+        if (corridors == from.length) {
+            from = Arrays.copyOf(from, corridors * 2);
+            to = Arrays.copyOf(to, corridors * 2);
+        }
+        from[corridors] = a;
+        to[corridors] = b;
+        addEdge(a, corridors);
+        addEdge(b, corridors);
+        buckets = null;
+        corridors += 1;
+        return corridors - 1;
+    }
+
+    private void addEdge(int room, int corridor) {
+        if (degree[room] == edges[room].length) {
+            edges[room] = Arrays.copyOf(edges[room], degree[room] * 2);
+        }
+        edges[room][degree[room]++] = corridor;
+    }
+
+    // Unique key for a tile; the multiplication spreads nearby tiles over Long.hashCode
+    static long pack(int x, int y) {
+        return (((long) x << 32) | (y & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * @return number of rooms
+     */
+    public int rooms() {
+        return rooms;
+    }
+
+    /**
+     * @return number of corridors
+     */
+    public int corridors() {
+        return corridors;
+    }
+
+    /**
+     * @param room A room id
+     * @return X coordinate of the room's center
+     */
+    public int centerX(int room) {
+        return centerX[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return Y coordinate of the room's center
+     */
+    public int centerY(int room) {
+        return centerY[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return left column of the room's floor
+     */
+    public int minX(int room) {
+        return xMin[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return bottom row of the room's floor
+     */
+    public int minY(int room) {
+        return yMin[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return right column of the room's floor
+     */
+    public int maxX(int room) {
+        return xMax[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return top row of the room's floor
+     */
+    public int maxY(int room) {
+        return yMax[room];
+    }
+
+    /**
+     * @param room A room id
+     * @return number of corridors touching the room
+     */
+    public int degree(int room) {
+        return degree[room];
+    }
+
+    /**
+     * @param room A room id
+     * @param i Index of one of the room's corridors, below degree(room)
+     * @return the corridor's id
+     */
+    public int corridor(int room, int i) {
+        return edges[room][i];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @param room One end of the corridor
+     * @return the room at the other end
+     */
+    public int other(int corridor, int room) {
+        return from[corridor] == room ? to[corridor] : from[corridor];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @return the room the corridor was dug from (its row end)
+     */
+    public int from(int corridor) {
+        return from[corridor];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @return the room the corridor was dug to (its column end)
+     */
+    public int to(int corridor) {
+        return to[corridor];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @return X coordinate of the corridor's corner
+     */
+    public int cornerX(int corridor) {
+        return centerX[to[corridor]];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @return Y coordinate of the corridor's corner
+     */
+    public int cornerY(int corridor) {
+        return centerY[from[corridor]];
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @return length of the corridor in steps, center to center
+     */
+    public int length(int corridor) {
+        return Math.abs(centerX[to[corridor]] - centerX[from[corridor]])
+                + Math.abs(centerY[to[corridor]] - centerY[from[corridor]]);
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return true if the tile is on the corridor's row part (between the first center and the corner)
+     */
+    public boolean onRow(int corridor, int x, int y) {
+        int x1 = centerX[from[corridor]];
+        int x2 = cornerX(corridor);
+        return y == cornerY(corridor) && x >= Math.min(x1, x2) && x <= Math.max(x1, x2);
+    }
+
+    /**
+     * @param corridor A corridor id
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return true if the tile is on the corridor's column part (between the corner and the second center)
+     */
+    public boolean onColumn(int corridor, int x, int y) {
+        int y1 = cornerY(corridor);
+        int y2 = centerY[to[corridor]];
+        return x == cornerX(corridor) && y >= Math.min(y1, y2) && y <= Math.max(y1, y2);
+    }
+
+    /**
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return id of the room whose floor contains the tile, or -1
+     */
+    public int roomAt(int x, int y) {
+        int b = bucket(x, y);
+        if (b < 0) {
+            return -1;
+        }
+        for (int i = 0; i < bucketSize[b]; i++) {
+            int r = buckets[b][i];
+            if (r >= 0 && x >= xMin[r] && x <= xMax[r] && y >= yMin[r] && y <= yMax[r]) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return id of a corridor running through the tile, or -1
+     */
+    public int corridorAt(int x, int y) {
+        int b = bucket(x, y);
+        if (b < 0) {
+            return -1;
+        }
+        for (int i = 0; i < bucketSize[b]; i++) {
+            int c = buckets[b][i];
+            if (c < 0 && (onRow(~c, x, y) || onColumn(~c, x, y))) {
+                return ~c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Like roomAt, but also counts the ring of wall around the floor, minus its
+     * four corners. Every tile of that ring touches the floor, so a corridor
+     * running through it is connected to the room.
+     *
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return id of the room whose floor or wall contains the tile, or -1
+     */
+    int zoneAt(int x, int y) {
+        int b = bucket(x, y);
+        if (b < 0) {
+            return -1;
+        }
+        for (int i = 0; i < bucketSize[b]; i++) {
+            int r = buckets[b][i];
+            if (r >= 0 && inZone(r, x, y)) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param room A room id
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return true if the tile is on the room's floor or wall, corners excepted
+     */
+    boolean inZone(int room, int x, int y) {
+        boolean inX = x >= xMin[room] && x <= xMax[room];
+        boolean inY = y >= yMin[room] && y <= yMax[room];
+        boolean nearX = x >= xMin[room] - 1 && x <= xMax[room] + 1;
+        boolean nearY = y >= yMin[room] - 1 && y <= yMax[room] + 1;
+        return (inX && nearY) || (nearX && inY);
+    }
+
+    /**
+     * @param x0 Left column of a rectangle
+     * @param y0 Bottom row of the rectangle
+     * @param x1 Right column of the rectangle
+     * @param y1 Top row of the rectangle
+     * @return the rooms (as ids) and corridors (as ~ids) that may overlap the
+     *         rectangle, each once, in no particular order
+     */
+    int[] near(int x0, int y0, int x1, int y1) {
+        if (buckets == null) {
+            buildIndex();
+        }
+        int bx0 = Math.max(0, x0 / BUCKET);
+        int by0 = Math.max(0, y0 / BUCKET);
+        int bx1 = Math.min(bucketsX - 1, x1 / BUCKET);
+        int by1 = Math.min(bucketsY - 1, y1 / BUCKET);
+        int[] found = new int[16];
+        int n = 0;
+        for (int bx = bx0; bx <= bx1; bx++) {
+            for (int by = by0; by <= by1; by++) {
+                int b = bx * bucketsY + by;
+                for (int i = 0; i < bucketSize[b]; i++) {
+                    if (n == found.length) {
+                        found = Arrays.copyOf(found, n * 2);
+                    }
+                    found[n++] = buckets[b][i];
+                }
+            }
+        }
+        Arrays.sort(found, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || found[i] != found[unique - 1]) {
+                found[unique++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    /**
+     * @param x X coordinate of a tile
+     * @param y Y coordinate of a tile
+     * @return true if the tile is on a room's floor or in a corridor
+     */
+    public boolean walkable(int x, int y) {
+        return roomAt(x, y) >= 0 || corridorAt(x, y) >= 0;
+    }
+
+    // Index of the bucket holding (x, y), building the index first if needed; -1 if outside it
+    private int bucket(int x, int y) {
+        if (buckets == null) {
+            buildIndex();
+        }
+        int bx = x / BUCKET;
+        int by = y / BUCKET;
+        if (x < 0 || y < 0 || bx >= bucketsX || by >= bucketsY) {
+            return -1;
+        }
+        return bx * bucketsY + by;
+    }
+
+    private void buildIndex() {
+        int maxX = 0;
+        int maxY = 0;
+        for (int r = 0; r < rooms; r++) {
+            maxX = Math.max(maxX, xMax[r] + 1);
+            maxY = Math.max(maxY, yMax[r] + 1);
+        }
+        bucketsX = maxX / BUCKET + 1;
+        bucketsY = maxY / BUCKET + 1;
+        buckets = new int[bucketsX * bucketsY][];
+        bucketSize = new int[bucketsX * bucketsY];
+        for (int r = 0; r < rooms; r++) {
+            index(r, xMin[r] - 1, yMin[r] - 1, xMax[r] + 1, yMax[r] + 1);
+        }
+        for (int c = 0; c < corridors; c++) {
+            int x1 = centerX[from[c]];
+            int y1 = centerY[from[c]];
+            int x2 = centerX[to[c]];
+            int y2 = centerY[to[c]];
+            index(~c, Math.min(x1, x2), y1, Math.max(x1, x2), y1);
+            index(~c, x2, Math.min(y1, y2), x2, Math.max(y1, y2));
+        }
+    }
+
+    // Adds entry to every bucket the rectangle overlaps
+    private void index(int entry, int x0, int y0, int x1, int y1) {
+        for (int bx = Math.max(0, x0) / BUCKET; bx <= x1 / BUCKET; bx++) {
+            for (int by = Math.max(0, y0) / BUCKET; by <= y1 / BUCKET; by++) {
+                int b = bx * bucketsY + by;
+                if (buckets[b] == null) {
+                    buckets[b] = new int[4];
+                } else if (bucketSize[b] == buckets[b].length) {
+                    buckets[b] = Arrays.copyOf(buckets[b], bucketSize[b] * 2);
+                }
+                buckets[b][bucketSize[b]++] = entry;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package core;
+
+/**
+ * A place where a saved game lives.
+ *
+ * The game and AutograderBuddy only ever need to check whether a save exists,
+ * read it back, and overwrite it, so every kind of save storage implements
+ * just those three operations. The save itself is the single CSV line written
+ * by Game.saveGame and AutograderBuddy.fakeSave:
+ * seed,avatarX,avatarY,duckX,duckY[,carrotX,carrotY...]
+ *
+ * Implementations:
+ * - FileSaveStore: a single file on disk (the classic ./save.txt)
+ * - MemorySaveStore: a string held in memory, for headless and test runs
+ * - SlotSaveStore: one directory per named save slot
+ *
+ * @version 1.0
+ */
+public interface SaveStore {
+
+    /**
+     * @return true if a save has been written to this store
+     */
+    boolean exists();
+
+    /**
+     * Reads the saved game.
+     *
+     * @return the save contents
+     * @throws IllegalStateException if nothing has been saved yet
+     */
+    String read();
+
+    /**
+     * Replaces the saved game with the given contents.
+     *
+     * @param contents the save contents
+     */
+    void write(String contents);
+
+    /**
+     * Reads the first line of the saved game, which holds the whole save.
+     *
+     * @return the first line of the save contents
+     */
+    default String readLine() {
+        String contents = read();
+        int newline = contents.indexOf('\n');
+        return newline < 0 ? contents : contents.substring(0, newline);
+    }
+}
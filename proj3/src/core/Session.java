@@ -0,0 +1,536 @@
+package core;
+
+import tileengine.TETile;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The state of one game in progress, advanced one tick at a time.
+ *
+ * A session owns both worlds, both movement controllers and the carrot
+ * world timer, and knows how a single key press changes them. It never
+ * touches StdDraw, so the same rules run in the interactive game loop
+ * (Game.play, at 10 ticks per second) and in headless replays (ReplayEngine,
+ * as fast as the CPU allows).
+ *
+ * Each tick of the game loop is split in two so the loop can render in between:
+ * 1. advance(key): check for a carrot under the gardener, apply the key,
+ *    and count down the carrot world timer
+ * 2. settle(): if the timer ran out, leave carrot world and respawn the carrot
+ *
+ * Carrot world is only built when it is first needed, since many games
+ * never pick up a carrot: when the gardener steps on one, or when something
+ * looks at it (frame, stateHash, fingerprint). Once the gardener comes within
+ * PREFETCH_TILES steps of a carrot it starts being built in the background,
+ * so entering it does not stall the game loop. It depends only on the seed,
+ * so a session looks the same whenever it is built.
+ *
+ * Once history() has been asked for, every move is recorded in a
+ * MoveHistory, and UNDO_KEY and REDO_KEY take moves back and make them
+ * again. A tick with one of those keys does nothing else: the avatars,
+ * ducks and carrot world timer stay still.
+ *
+ * @version 1.0
+ */
+public class Session {
+
+    // Key value meaning "no key was typed this tick"
+    public static final char NO_KEY = 0;
+
+    // Number of ticks the gardener stays in carrot world (12 seconds at 10 FPS)
+    public static final int CARROT_TICKS = 120;
+
+    // Distance (in steps, ignoring walls) from a carrot at which carrot world starts being built
+    public static final int PREFETCH_TILES = 8;
+
+    // Keys that take back the latest move and make it again, when moves are recorded
+    public static final char UNDO_KEY = 'u';
+    public static final char REDO_KEY = 'r';
+
+    // Worlds and movement controllers
+    String seed;                       // Seed string the worlds were generated from
+    World world;                       // Main world
+    CarrotWorld carrotWorld;           // Carrot world, null until built (see carrotMoves)
+    AvatarMoves movement;              // Gardener and duck movement in the main world
+    CarrotMoves carrotMovement;        // Gardener movement in carrot world, null until built
+    CompletableFuture<CarrotMoves> prefetch; // Carrot world being built in the background, or null
+
+    // Carrot world state
+    boolean renderCarrot;              // Whether the gardener is in carrot world
+    long counter;                      // Ticks spent in carrot world so far
+    int carrotX;                       // X coordinate of the carrot being eaten
+    int carrotY;                       // Y coordinate of the carrot being eaten
+
+    long tick;                         // Number of ticks advanced so far
+    DistanceFields distances;          // Path fields over the main world, created on first use
+    HierarchicalPathfinder pathfinder; // Room-graph pathfinder over the main world, created on first use
+    TickScheduler scheduler;           // Tasks run every tick after the key is applied
+    DuckFlock ducks;                   // Self-moving ducks, created on first use
+    DimensionManager dimensions;       // Named worlds of this session, created on first use
+    MoveHistory history;               // Recorded moves, for undo; created on first use
+
+    private Session(String seed, World world) {
+        this.seed = seed;
+        this.world = world;
+        this.movement = new AvatarMoves(world);
+        this.scheduler = new TickScheduler();
+    }
+
+    /**
+     * Starts a new game: generates the main world, places carrots and spawns the
+     * avatars. Carrot world is built later, when it is first needed.
+     *
+     * @param seed The seed string typed by the player (e.g. "n123s")
+     * @return the new session
+     */
+    public static Session newGame(String seed) {
+        return newGame(seed, 100, 60);
+    }
+
+    /**
+     * Same as newGame(String), but with a main world of the given size.
+     *
+     * @param seed The seed string typed by the player (e.g. "n123s")
+     * @param width Width of the main world in tiles
+     * @param height Height of the main world in tiles
+     * @return the new session
+     */
+    public static Session newGame(String seed, int width, int height) {
+        World world = new World(seed, width, height);
+        world.pickCarrot();
+        Session session = new Session(seed, world);
+        session.movement.spawnAvatar();
+        session.startTimer();
+        return session;
+    }
+
+    /**
+     * Resumes a saved game: regenerates the main world from the saved seed and
+     * puts the avatars and remaining carrots back where they were.
+     *
+     * @param store The save store to load from
+     * @return the restored session
+     */
+    public static Session load(SaveStore store) {
+        String seed = Game.getSeed("", store);
+        Session session = new Session(seed, new World(seed));
+        session.movement.loadAvatar(store);
+        Game.loadCarrots(session.world, store);
+        session.startTimer();
+        return session;
+    }
+
+    /**
+     * Same as newGame(String), but generates the main world on the common
+     * fork-join pool, so the caller can do other work (such as opening the
+     * window) meanwhile. The session is exactly the one newGame would make.
+     *
+     * @param seed The seed string typed by the player (e.g. "n123s")
+     * @return the session, once the world is ready and the avatars spawned
+     */
+    public static CompletableFuture<Session> newGameAsync(String seed) {
+        return CompletableFuture.supplyAsync(() -> newGame(seed));
+    }
+
+    /**
+     * Same as load(SaveStore), but regenerates the main world on the common
+     * fork-join pool, as newGameAsync does.
+     *
+     * @param store The save store to load from
+     * @return the restored session, once the world is ready
+     */
+    public static CompletableFuture<Session> loadAsync(SaveStore store) {
+        return CompletableFuture.supplyAsync(() -> load(store));
+    }
+
+    /**
+     * Returns the carrot world controller, building carrot world first if it
+     * has not been built yet (or waiting for the background build to finish).
+     *
+     * @return the gardener's movement controller in carrot world
+     */
+    CarrotMoves carrotMoves() {
+        if (carrotMovement == null) {
+            CarrotMoves built = prefetch != null ? prefetch.join() : buildCarrotWorld(world, seed);
+            carrotMovement = built;
+            carrotWorld = built.picnic;
+            prefetch = null;
+            if (history != null) {
+                history.carrotBuilt(carrotWorld);
+            }
+        }
+        return carrotMovement;
+    }
+
+    /**
+     * @return whether carrot world has been built, or is being built in the background
+     */
+    public boolean carrotWorldStarted() {
+        return carrotMovement != null || prefetch != null;
+    }
+
+    // Builds carrot world and spawns the gardener in it
+    private static CarrotMoves buildCarrotWorld(World world, String seed) {
+        CarrotMoves moves = new CarrotMoves(world, new CarrotWorld(seed));
+        moves.spawnCarrotAvatar();
+        return moves;
+    }
+
+    // Starts building carrot world in the background once the gardener is near a carrot
+    private void prefetchCarrotWorld() {
+        if (carrotMovement != null || prefetch != null) {
+            return;
+        }
+        ArrayList<Coord> carrots = world.carrotCoord;
+        for (int c = 0; c < carrots.size(); c++) {
+            Coord i = carrots.get(c);
+            if (Math.abs(i.x - movement.avatarCoord.x) + Math.abs(i.y - movement.avatarCoord.y) <= PREFETCH_TILES) {
+                World w = world;
+                String s = seed;
+                prefetch = CompletableFuture.supplyAsync(() -> buildCarrotWorld(w, s));
+                return;
+            }
+        }
+    }
+
+    // Resets the carrot world timer, as at the start of the game loop
+    private void startTimer() {
+        carrotX = movement.avatarCoord.x;
+        carrotY = movement.avatarCoord.y;
+        counter = 0;
+        renderCarrot = false;
+        tick = 0;
+    }
+
+    /**
+     * Runs the first half of a tick: enters carrot world if the gardener is on a
+     * carrot, applies the key, runs the scheduled tasks (e.g. the ducks), and
+     * counts down the carrot world timer. Starts building carrot world if the
+     * gardener has come near a carrot. Emits a TickEvent when recording.
+     * If moves are recorded, UNDO_KEY and REDO_KEY only undo or redo a move.
+     *
+     * @param key The key typed this tick, or NO_KEY
+     */
+    public void advance(char key) {
+        TickEvent event = TickEvent.start();
+        if (history != null && (key == UNDO_KEY || key == REDO_KEY)) {
+            if (key == UNDO_KEY) {
+                history.undo();
+            } else {
+                history.redo();
+            }
+            TickEvent.finish(event, tick, key, renderCarrot);
+            tick += 1;
+            return;
+        }
+        if (history != null) {
+            history.beforeKey(key, renderCarrot || carrotUnderGardener() != null);
+        }
+        checkCarrot();
+        applyKey(renderCarrot, key, movement, carrotMovement);
+        scheduler.run(tick);
+        if (renderCarrot) {
+            counter += 1;
+        } else {
+            prefetchCarrotWorld();
+        }
+        TickEvent.finish(event, tick, key, renderCarrot);
+        tick += 1;
+    }
+
+    /**
+     * Runs the second half of a tick: when the carrot world timer runs out,
+     * returns to the main world, respawns the carrot and removes the eaten one.
+     */
+    public void settle() {
+        if (counter == CARROT_TICKS) {
+            renderCarrot = false;
+            counter = 0;
+            carrotWorld.respawnCarrot();
+            movement.removeCarrot(carrotX, carrotY);
+            if (distances != null) {
+                distances.tileChanged(carrotX, carrotY);
+            }
+
+            // Remove the collected carrot from the world
+            ArrayList<Coord> carrots = world.carrotCoord;
+            for (int i = carrots.size() - 1; i >= 0; i--) {
+                if (carrots.get(i).x == carrotX && carrots.get(i).y == carrotY) {
+                    if (history != null) {
+                        history.carrotRemoved(i, carrots.get(i));
+                    }
+                    carrots.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a whole tick with nothing drawn in between.
+     *
+     * @param key The key typed this tick, or NO_KEY
+     */
+    public void tick(char key) {
+        advance(key);
+        settle();
+    }
+
+    // Enters carrot world if the gardener is standing on a carrot
+    private void checkCarrot() {
+        Coord i = carrotUnderGardener();
+        if (i != null) {
+            renderCarrot = true;
+            carrotMoves();
+            carrotX = i.x;
+            carrotY = i.y;
+        }
+    }
+
+    // The first carrot in the main world under the gardener, or null
+    private Coord carrotUnderGardener() {
+        ArrayList<Coord> carrots = world.carrotCoord;
+        for (int c = 0; c < carrots.size(); c++) {
+            Coord i = carrots.get(c);
+            if (i.x == movement.avatarCoord.x && i.y == movement.avatarCoord.y) {
+                return i;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies one movement key to the avatars.
+     *
+     * - WASD moves the gardener (and, in carrot world, the gardener there too)
+     * - IJKL moves the duck
+     * Any other key is ignored.
+     *
+     * @param inCarrotWorld Whether the gardener is currently in carrot world
+     * @param key The key typed
+     * @param movement The avatar movement controller
+     * @param carrotMovement The carrot movement controller
+     */
+    public static void applyKey(boolean inCarrotWorld, char key, AvatarMoves movement, CarrotMoves carrotMovement) {
+        switch (key) {
+            // Gardener avatar movement (WASD)
+            case 'w':
+                movement.avatarUp();
+                if (inCarrotWorld) {
+                    carrotMovement.avatarCarrotUp();
+                }
+                break;
+            case 'a':
+                movement.avatarLeft();
+                if (inCarrotWorld) {
+                    carrotMovement.avatarCarrotLeft();
+                }
+                break;
+            case 's':
+                movement.avatarDown();
+                if (inCarrotWorld) {
+                    carrotMovement.avatarCarrotDown();
+                }
+                break;
+            case 'd':
+                movement.avatarRight();
+                if (inCarrotWorld) {
+                    carrotMovement.avatarCarrotRight();
+                }
+                break;
+
+            // Duck avatar movement (IJKL)
+            case 'i':
+                movement.duckUp();
+                break;
+            case 'j':
+                movement.duckLeft();
+                break;
+            case 'k':
+                movement.duckDown();
+                break;
+            case 'l':
+                movement.duckRight();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return the shared cache of distance fields over the main world's walkable tiles
+     */
+    public DistanceFields distances() {
+        if (distances == null) {
+            distances = new DistanceFields(world.world, TileFlags.WALKABLE);
+        }
+        return distances;
+    }
+
+    /**
+     * @return the rooms and hallways of the main world
+     */
+    public RoomGraph rooms() {
+        return world.roomGraph();
+    }
+
+    /**
+     * @return the shared pathfinder for point-to-point routes over the main world
+     */
+    public HierarchicalPathfinder pathfinder() {
+        if (pathfinder == null) {
+            pathfinder = world.pathfinder();
+        }
+        return pathfinder;
+    }
+
+    /**
+     * @return distance from every tile to the nearest carrot still in the world
+     */
+    public DistanceField carrotField() {
+        return distances().field("carrots", world.carrotCoord);
+    }
+
+    /**
+     * @return distance from every tile to the gardener
+     */
+    public DistanceField avatarField() {
+        return distances().field("avatar", movement.avatarCoord.x, movement.avatarCoord.y);
+    }
+
+    /**
+     * Returns the session's dimensions, creating the manager on first use with
+     * the two built-in ones pinned: "main" (the main world) and "carrot"
+     * (carrot world, built when first visited). Other dimensions, e.g. one
+     * picnic scene per carrot, can be added to it and are kept in memory
+     * DimensionManager.DEFAULT_RESIDENT at a time, the rest packed (up to
+     * DimensionManager.DEFAULT_PACKED_BYTES) or spilled to disk.
+     *
+     * @return the dimension manager
+     */
+    public DimensionManager dimensions() {
+        if (dimensions == null) {
+            dimensions = new DimensionManager();
+            dimensions.add("main", () -> world.world);
+            dimensions.pin("main");
+            dimensions.add("carrot", () -> carrotMoves().carrotWorld);
+            dimensions.pin("carrot");
+        }
+        return dimensions;
+    }
+
+    /**
+     * Returns the session's move history, creating it on first use with
+     * MoveHistory.DEFAULT_CAPACITY moves and a keyframe every
+     * MoveHistory.DEFAULT_KEYFRAME_INTERVAL moves. Moves are recorded from
+     * then on; the game asks for it before the first tick, so the player can
+     * undo any move. Replays of recordings with UNDO_KEY or REDO_KEY in them
+     * must ask for it at the same tick.
+     *
+     * @return the move history
+     */
+    public MoveHistory history() {
+        if (history == null) {
+            history = new MoveHistory(this, MoveHistory.DEFAULT_CAPACITY, MoveHistory.DEFAULT_KEYFRAME_INTERVAL);
+        }
+        return history;
+    }
+
+    /**
+     * @return the scheduler whose tasks run every tick
+     */
+    public TickScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the session's flock of self-moving ducks, creating it (empty) on
+     * first use. The flock moves every tick and its FOLLOW and CHASE ducks
+     * walk by the gardener and carrot fields, refreshed every
+     * DuckFlock.FIELD_TICKS ticks. Replays do not record ducks, so a session
+     * with ducks cannot be replayed.
+     *
+     * @return the duck flock
+     */
+    public DuckFlock ducks() {
+        if (ducks == null) {
+            ducks = new DuckFlock(world.world, movement.entities, world.seed);
+            scheduler.every(DuckFlock.FIELD_TICKS, t -> ducks.setTargets(avatarField(), carrotField()));
+            scheduler.every(1, t -> ducks.step());
+        }
+        return ducks;
+    }
+
+    /**
+     * @return the world that should be on screen this tick, avatars included.
+     *         The array is reused, so it is only valid until the next call.
+     */
+    public TETile[][] frame() {
+        return renderCarrot ? carrotMoves().frame() : movement.frame();
+    }
+
+    /**
+     * Hashes everything a tick can change: both worlds, every avatar position,
+     * the carrot world timer and the carrots eaten. Two sessions that ended up
+     * in the same state have the same hash, in any JVM.
+     *
+     * @return a 64-bit hash of the session state
+     */
+    public long stateHash() {
+        long h = 0xcbf29ce484222325L;
+        h = hashGrid(h, movement.frame());
+        CarrotMoves carrotMovement = carrotMoves();
+        h = hashGrid(h, carrotMovement.frame());
+        h = mix(h, movement.avatarCoord.x);
+        h = mix(h, movement.avatarCoord.y);
+        h = mix(h, movement.duckCoord.x);
+        h = mix(h, movement.duckCoord.y);
+        h = mix(h, carrotMovement.avatarCoord.x);
+        h = mix(h, carrotMovement.avatarCoord.y);
+        h = mix(h, carrotMovement.eatenCarrotCounter);
+        h = mix(h, counter);
+        return mix(h, world.carrotCoord.size());
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of both worlds as drawn, avatars included.
+     * Unlike stateHash it does not look at every tile: the worlds keep their
+     * fingerprints current as they are written to (see TileHash), so this
+     * takes constant time and can be compared across runs and JVMs.
+     *
+     * @return fingerprint of the main world frame and the carrot world frame
+     */
+    public long fingerprint() {
+        return movement.fingerprint() ^ Long.rotateLeft(carrotMoves().fingerprint(), 32);
+    }
+
+    // Folds every tile of a grid into the hash by its character and description
+    private static long hashGrid(long h, TETile[][] grid) {
+        for (TETile[] column : grid) {
+            for (TETile tile : column) {
+                h = mix(h, tile.character());
+                h = mix(h, tile.description().hashCode());
+            }
+        }
+        return h;
+    }
+
+    // FNV-1a style step
+    private static long mix(long h, long value) {
+        return (h ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * @return the seed string this session was generated from
+     */
+    public String seed() {
+        return seed;
+    }
+
+    /**
+     * @return number of ticks advanced so far
+     */
+    public long ticks() {
+        return tick;
+    }
+}
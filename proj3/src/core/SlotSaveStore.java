@@ -0,0 +1,56 @@
+package core;
+
+import utils.FileUtils;
+
+import java.io.File;
+
+/**
+ * A SaveStore that keeps each save slot in its own directory.
+ *
+ * A slot named "alice" under the root "saves" is stored at
+ * saves/alice/save.txt. Different slots never share a file, so several
+ * players (or several test scripts) can save at the same time without
+ * clobbering each other. The slot directory is created on the first write.
+ *
+ * @version 1.0
+ */
+public class SlotSaveStore implements SaveStore {
+
+    private final File slotDir;    // Directory holding this slot's save
+    private final File saveFile;   // The slot's save file
+
+    /**
+     * Creates a store for one slot under the given root directory.
+     *
+     * @param root Directory containing all slots
+     * @param slot Name of this slot
+     */
+    public SlotSaveStore(File root, String slot) {
+        if (slot.isEmpty() || slot.contains("/") || slot.contains(File.separator) || slot.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid save slot name: " + slot);
+        }
+        this.slotDir = new File(root, slot);
+        this.saveFile = new File(slotDir, "save.txt");
+    }
+
+    @Override
+    public boolean exists() {
+        return saveFile.exists();
+    }
+
+    @Override
+    public String read() {
+        if (!exists()) {
+            throw new IllegalStateException("No save in slot " + slotDir);
+        }
+        return FileUtils.readFile(saveFile.getPath());
+    }
+
+    @Override
+    public void write(String contents) {
+        if (!slotDir.isDirectory() && !slotDir.mkdirs()) {
+            throw new RuntimeException("Could not create save slot " + slotDir);
+        }
+        FileUtils.writeFile(saveFile.getPath(), contents);
+    }
+}
@@ -0,0 +1,72 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for the simulation half of one game tick
+ * (Session.advance): checking for a carrot, applying the key and running the
+ * scheduled tasks such as the duck flock. Rendering is a separate FrameEvent.
+ *
+ * When no recording asks for these events, start returns null and nothing
+ * is allocated.
+ *
+ * @version 1.0
+ */
+@Name("byow.Tick")
+@Label("Tick")
+@Category({"BYOW", "Game Loop"})
+@Description("Simulating one game tick")
+@StackTrace(false)
+public class TickEvent extends Event {
+
+    // Instance used only to ask whether the event is being recorded
+    private static final TickEvent PROBE = new TickEvent();
+
+    @Label("Tick")
+    long tick;
+
+    @Label("Key")
+    @Description("Key typed this tick, or 0 for none")
+    char key;
+
+    @Label("In Carrot World")
+    boolean inCarrotWorld;
+
+    /**
+     * @return a started event, or null if it is not being recorded
+     */
+    static TickEvent start() {
+        if (!PROBE.isEnabled()) {
+            return null;
+        }
+        TickEvent event = new TickEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a tick started by start and commits it.
+     *
+     * @param event The event returned by start (may be null)
+     * @param tick Number of the tick
+     * @param key Key typed this tick
+     * @param inCarrotWorld Whether the gardener is in carrot world after the tick
+     */
+    static void finish(TickEvent event, long tick, char key, boolean inCarrotWorld) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.key = key;
+            event.inCarrotWorld = inCarrotWorld;
+            event.commit();
+        }
+    }
+}
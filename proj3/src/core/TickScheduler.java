@@ -0,0 +1,65 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs simulation tasks on the game tick.
+ *
+ * Tasks are registered with a period in ticks and run in registration order
+ * on every tick that is a multiple of their period. Session runs its scheduler
+ * once per tick, right after the player's key has been applied, so anything
+ * that should happen "by itself" (ducks walking around, refreshing the
+ * distance fields they follow) hooks in here instead of into the game loop.
+ *
+ * @version 1.0
+ */
+public class TickScheduler {
+
+    /**
+     * Something that runs on the game tick.
+     */
+    public interface Task {
+        /**
+         * @param tick Number of the tick being run, starting at 0
+         */
+        void run(long tick);
+    }
+
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Integer> periods = new ArrayList<>();
+
+    /**
+     * Runs task on every period-th tick (tick 0, period, 2 * period, ...).
+     *
+     * @param period Number of ticks between runs, at least 1
+     * @param task The task to run
+     */
+    public void every(int period, Task task) {
+        if (period < 1) {
+            throw new IllegalArgumentException("Period must be at least 1 tick, got " + period);
+        }
+        tasks.add(task);
+        periods.add(period);
+    }
+
+    /**
+     * Runs every task that is due on this tick.
+     *
+     * @param tick Number of the tick being run
+     */
+    public void run(long tick) {
+        for (int i = 0; i < tasks.size(); i++) {
+            if (tick % periods.get(i) == 0) {
+                tasks.get(i).run(tick);
+            }
+        }
+    }
+
+    /**
+     * @return true if no tasks have been registered
+     */
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+}
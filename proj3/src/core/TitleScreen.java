@@ -0,0 +1,261 @@
+package core;
+
+import edu.princeton.cs.algs4.StdDraw;
+import utils.Histogram;
+import utils.Metrics;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The title screen artwork: the rose, the sun, the title and the menu.
+ *
+ * The artwork never changes, but drawing it with StdDraw took about 20,000
+ * line calls, 1,800 of them with double buffering off (so each one was
+ * shown on its own), every time the title screen came up. Instead it is
+ * drawn once with Java2D into a 512x512 image, the size of the default
+ * StdDraw canvas, and that image is shown with a single StdDraw.picture.
+ *
+ * The image is kept in memory for the rest of the run and in a PNG file
+ * between runs: byow.title.cache names the file (by default byow-title-1.png
+ * in the temporary directory), and an empty byow.title.cache keeps it only
+ * for this run. StdDraw can only draw pictures from files, so the image is
+ * always written somewhere. A cache file that cannot be read is drawn again
+ * and replaced; bump VERSION when the artwork changes so old files are not
+ * picked up.
+ *
+ * Each rose layer is one path stroked once rather than 3,600 separate
+ * round-capped lines. Both cover the same pixels, the path just does it in
+ * one go.
+ *
+ * @version 1.0
+ */
+public class TitleScreen {
+
+    // Version of the artwork, part of the default cache file name
+    static final int VERSION = 1;
+
+    // Size of the image in pixels, the same as StdDraw's default canvas
+    static final int SIZE = 512;
+
+    private static final Histogram SHOW_TIME = Metrics.registry().histogram("byow_title_seconds",
+            "Time to put the title screen on screen");
+
+    private static final Color GRASS = new Color(108, 162, 87);
+    private static final Color ROSE = new Color(231, 103, 182);
+    private static final Color ROSE_MEDIUM = new Color(255, 149, 217);
+    private static final Color ROSE_LIGHT = new Color(255, 192, 232);
+    private static final Color SUN = new Color(255, 217, 3);
+    private static final Color SUN_CENTER = new Color(246, 167, 21);
+    private static final Color TEXT = new Color(117, 68, 43);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 60);
+    private static final Font SUBTITLE_FONT = new Font("Arial", Font.ITALIC, 18);
+    private static final Font OPTIONS_FONT = new Font("Arial", Font.BOLD, 22);
+
+    private static BufferedImage image;   // The artwork, once drawn or read
+    private static Path file;             // Where it was written for StdDraw.picture
+
+    private TitleScreen() {
+    }
+
+    /**
+     * Puts the title screen on a fresh default-size canvas. Leaves StdDraw as
+     * drawing the artwork by hand used to: scale 0 to 1, double buffering off,
+     * and the menu's pen and font.
+     */
+    public static void show() {
+        long start = System.nanoTime();
+        Path picture = file();
+        StdDraw.setCanvasSize();
+        StdDraw.enableDoubleBuffering();
+        StdDraw.picture(0.5, 0.5, picture.toString());
+        StdDraw.show();
+        StdDraw.disableDoubleBuffering();
+        StdDraw.setPenRadius(0.1);
+        StdDraw.setPenColor(TEXT);
+        StdDraw.setFont(OPTIONS_FONT);
+        SHOW_TIME.recordSince(start);
+    }
+
+    /**
+     * Returns the artwork, reading it from the cache file or drawing it (and
+     * writing the cache file) the first time it is needed in this run.
+     *
+     * @return the 512x512 title screen image; do not modify it
+     */
+    public static synchronized BufferedImage image() {
+        if (image == null) {
+            Path cache = cacheFile();
+            image = cache == null ? null : read(cache);
+            if (image == null) {
+                image = render();
+                write(image, cache);
+            }
+        }
+        return image;
+    }
+
+    // The file StdDraw.picture should show, written if needed
+    private static synchronized Path file() {
+        BufferedImage art = image();
+        if (file == null || !Files.isRegularFile(file)) {
+            Path cache = cacheFile();
+            if (cache != null && Files.isRegularFile(cache)) {
+                file = cache;
+            } else {
+                try {
+                    file = Files.createTempFile("byow-title-", ".png");
+                    file.toFile().deleteOnExit();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                write(art, file);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return the cache file named by byow.title.cache, or null if it is set to ""
+     */
+    public static Path cacheFile() {
+        String name = System.getProperty("byow.title.cache",
+                Paths.get(System.getProperty("java.io.tmpdir"), "byow-title-" + VERSION + ".png").toString());
+        return name.isEmpty() ? null : Paths.get(name);
+    }
+
+    /**
+     * Reads a cached title image.
+     *
+     * @param path The PNG file
+     * @return the image, or null if it is missing, unreadable or the wrong size
+     */
+    public static BufferedImage read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            BufferedImage read = ImageIO.read(path.toFile());
+            return read != null && read.getWidth() == SIZE && read.getHeight() == SIZE ? read : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Writes the image as a PNG; a cache that cannot be written is only a slower start
+    private static void write(BufferedImage art, Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), "byow-title-", ".tmp");
+            ImageIO.write(art, "png", tmp.toFile());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not cache the title screen in " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Draws the artwork from scratch: the same shapes, colors and text the
+     * title screen has always had, in StdDraw's coordinates (pen radius times
+     * 512 is the stroke width in pixels).
+     *
+     * @return a new 512x512 image
+     */
+    public static BufferedImage render() {
+        BufferedImage art = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = art.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setColor(GRASS);
+        g.fillRect(0, 0, SIZE, SIZE);
+
+        // Rose, x and y from -1 to 1. Some layers join each point of the curve to
+        // the next, the others join every point to the centre, as they always have.
+        rose(g, 0.15, ROSE, 360, true);
+        rose(g, 0.08, ROSE_MEDIUM, 360, false);
+        rose(g, 0.06, ROSE_LIGHT, 360, true);
+        rose(g, 0.04, ROSE, 360, false);
+        rose(g, 0.02, ROSE_MEDIUM, 360, true);
+        rose(g, 0.00004, ROSE_LIGHT, 180, false);
+
+        // Sun, x and y from 0 to 1
+        dot(g, 0.3, SUN);
+        dot(g, 0.2, SUN_CENTER);
+        dot(g, 0.1, SUN);
+
+        g.setColor(TEXT);
+        text(g, TITLE_FONT, 0.58, "BYOG");
+        text(g, SUBTITLE_FONT, 0.52, "Build Your Own Garden");
+        text(g, OPTIONS_FONT, 0.42, "New Game (N)");
+        text(g, OPTIONS_FONT, 0.37, "Load Game (L)");
+        text(g, OPTIONS_FONT, 0.32, "Quit Game (Q)");
+        g.dispose();
+        return art;
+    }
+
+    /*
+     * Draws a five-petal rose curve from 0 to degrees, in 0.1 degree steps.
+     * A joined layer is a line along the curve. Any other layer is a line from
+     * the centre to every point of the curve. A thick one of those covers
+     * everything inside the curve plus half the pen around it, so it is drawn
+     * as exactly that: the curve filled, then stroked. Hairlines are drawn as
+     * spokes, since they leave the grass showing between them.
+     */
+    private static void rose(Graphics2D g, double radius, Color color, double degrees, boolean joined) {
+        int n = 5;
+        float width = (float) (radius * SIZE);
+        Path2D.Double curve = new Path2D.Double();
+        Path2D.Double spokes = new Path2D.Double();
+        curve.moveTo(SIZE / 2.0, SIZE / 2.0);
+        for (double t = 0.0; t <= degrees; t += 0.1) {
+            double theta = Math.toRadians(t);
+            double x = SIZE * (Math.sin(n * theta) * Math.cos(theta) + 1) / 2;
+            double y = SIZE * (1 - Math.sin(n * theta) * Math.sin(theta)) / 2;
+            curve.lineTo(x, y);
+            spokes.moveTo(SIZE / 2.0, SIZE / 2.0);
+            spokes.lineTo(x, y);
+        }
+        g.setColor(color);
+        g.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        if (joined) {
+            g.draw(curve);
+        } else if (width > 1) {
+            curve.closePath();
+            g.fill(curve);
+            g.draw(curve);
+        } else {
+            g.draw(spokes);
+        }
+    }
+
+    // Fills a disc at the centre whose diameter is radius * 512 pixels, like StdDraw.point
+    private static void dot(Graphics2D g, double radius, Color color) {
+        double d = radius * SIZE;
+        g.setColor(color);
+        g.fill(new Ellipse2D.Double(SIZE / 2.0 - d / 2, SIZE / 2.0 - d / 2, d, d));
+    }
+
+    // Draws text centred at x = 0.5 and the given y, like StdDraw.text
+    private static void text(Graphics2D g, Font font, double y, String text) {
+        g.setFont(font);
+        FontMetrics metrics = g.getFontMetrics();
+        double ys = SIZE * (1 - y);
+        g.drawString(text, (float) (SIZE / 2.0 - metrics.stringWidth(text) / 2.0),
+                (float) (ys + metrics.getDescent()));
+    }
+}
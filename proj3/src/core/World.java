@@ -2,7 +2,10 @@
 package core;
 
 import tileengine.TETile;
+import tileengine.TileHash;
 import tileengine.Tileset;
+import utils.Histogram;
+import utils.Metrics;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.Random;
@@ -26,10 +29,14 @@ import static java.lang.Math.abs;
  * @version 1.0
  */
 public class World {
+
+    // Generation time of every main world made in this process
+    static final Histogram GENERATION_TIME = Metrics.registry().histogram("byow_world_generation_seconds",
+            "Time to generate a main world");
     
     // World dimensions and generation parameters
-    int width = 100;           // Width of the world in tiles
-    int height = 60;           // Height of the world in tiles
+    int width;                 // Width of the world in tiles (100 unless given)
+    int height;                // Height of the world in tiles (60 unless given)
     int maxRoomSize = 30;      // Maximum room size (width/height)
     int minRoomSize = 13;      // Minimum room size (width/height)
     int maxFalse = 10000;      // Maximum attempts for room placement
@@ -43,10 +50,14 @@ public class World {
     
     // World state and generation
     long seed;                         // Random seed for deterministic generation
-    TETile[][] world;                 // 2D array representing the world
+    TETile[][] world;                 // 2D array representing the world (write through set)
+    long fingerprint;                  // TileHash of world, kept current by set
+    int tilesWritten;                  // Number of writes through set, for GenerationEvent
+    MoveHistory history;               // Told about every write once the session records moves, else null
     Random rand;                       // Random number generator
     int numFalse;                      // Counter for failed room placement attempts
     PythagoreanTree roomCenters;       // Data structure storing room center coordinates
+    RoomGraph rooms;                   // Rooms and the hallways between them, as a graph
     ArrayList<Coord> carrotCoord;      // List of carrot locations
 
     /**
@@ -61,15 +72,42 @@ public class World {
      * @param input The seed string for world generation
      */
     public World(String input) {
+        this(input, 100, 60);
+    }
+
+    /**
+     * Same as World(String), but generates a world of the given size instead
+     * of the usual 100x60. Larger worlds simply hold more rooms.
+     * 
+     * @param input The seed string for world generation
+     * @param width Width of the world in tiles
+     * @param height Height of the world in tiles
+     */
+    public World(String input, int width, int height) {
+        long start = System.nanoTime();
+        this.width = width;
+        this.height = height;
         world = new TETile[width][height];
         roomCenters = new PythagoreanTree();
+        rooms = new RoomGraph();
         this.seed = parseInput(input);
         rand = new Random(this.seed);
         numFalse = 0;
 
+        GenerationEvent event = GenerationEvent.start("main", "background", seed);
         fillBackground();
+        GenerationEvent.finish(event, 0, 0, tilesWritten);
+
+        event = GenerationEvent.start("main", "rooms", seed);
+        int written = tilesWritten;
         roomMaker(rand.nextInt(width), rand.nextInt(height));
+        GenerationEvent.finish(event, rooms.rooms() + numFalse, rooms.rooms(), tilesWritten - written);
+
+        event = GenerationEvent.start("main", "hallways", seed);
+        written = tilesWritten;
         makeHallways();
+        GenerationEvent.finish(event, 0, rooms.rooms(), tilesWritten - written);
+        GENERATION_TIME.recordSince(start);
     }
 
     /**
@@ -98,6 +136,8 @@ public class World {
      * Carrots are stored with their coordinates for tracking during gameplay.
      */
     public void pickCarrot() {
+        GenerationEvent event = GenerationEvent.start("main", "pickCarrot", seed);
+        int probes = 1;
         carrotCoord = new ArrayList<>();
         int x = rand.nextInt(width);
         int y = rand.nextInt(height);
@@ -108,10 +148,12 @@ public class World {
             while (world[x][y] != floor) {
                 x = rand.nextInt(width);
                 y = rand.nextInt(height);
+                probes += 1;
             }
-            world[x][y] = carrot;
+            set(x, y, carrot);
             carrotCoord.add(new Coord(x * x + y * y, x, y));
         }
+        GenerationEvent.finish(event, probes, 0, carrotNum);
     }
 
     /**
@@ -122,7 +164,7 @@ public class World {
     public void fillBackground() {
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                world[x][y] = outside;
+                set(x, y, outside);
             }
         }
     }
@@ -166,18 +208,15 @@ public class World {
         int yMin = coordY + 4;
         int yMax = coordY + roomH - 4;
 
-        ArrayList<int[]> wallTiles = new ArrayList<>();
-        
         // Check if room placement is valid
         if (makeRoomOrNot(coordX, coordY, roomW, roomH)) {
-            // Create room walls
+            // Create room walls, then carve the floor out of them
             for (int x = xMin; x < xMax; x++) {
                 for (int y = yMin; y < yMax; y++) {
-                    world[x][y] = wall;
-                    wallTiles.add(new int[]{x, y});
-                    makeFloor(xMin, xMax, yMin, yMax);
+                    set(x, y, wall);
                 }
             }
+            makeFloor(xMin, xMax, yMin, yMax);
             // Mark room center for hallway connection
             pickDirt(xMin + 1, xMax - 2, yMin + 1, yMax - 2);
         } else {
@@ -199,7 +238,7 @@ public class World {
     public void makeFloor(int xMin, int xMax, int yMin, int yMax) {
         for (int x = xMin + 1; x < xMax - 1; x++) {
             for (int y = yMin + 1; y < yMax - 1; y++) {
-                world[x][y] = floor;
+                set(x, y, floor);
             }
         }
     }
@@ -246,6 +285,8 @@ public class World {
      * @param yMax Maximum Y coordinate for selection
      */
     public void pickDirt(int xMin, int xMax, int yMin, int yMax) {
+        GenerationEvent event = GenerationEvent.start("main", "pickDirt", seed);
+        int tries = 1;
         int x = rand.nextInt(xMax - xMin + 1) + xMin;
         int y = rand.nextInt(yMax - yMin + 1) + yMin;
         boolean flip = pickDirtValid(x, y);
@@ -255,8 +296,11 @@ public class World {
             x = rand.nextInt(xMax - xMin + 1) + xMin;
             y = rand.nextInt(yMax - yMin + 1) + yMin;
             flip = pickDirtValid(x, y);
+            tries += 1;
         }
         roomCenters.putCoord(x, y);
+        rooms.addRoom(xMin, yMin, xMax, yMax, x, y);
+        GenerationEvent.finish(event, tries, 0, 0);
     }
 
     /**
@@ -318,6 +362,7 @@ public class World {
         int x2 = room2.getValue().x;
         int y1 = room1.getValue().y;
         int y2 = room2.getValue().y;
+        rooms.addCorridor(x1, y1, x2, y2);
 
         // Determine relative positions and create appropriate hallway
         if (x1 < x2 && y1 < y2) {
@@ -361,13 +406,13 @@ public class World {
     public void upAndLeft(int x1, int y1, int x2, int y2) {
         // Vertical segment from second room
         for (int y = y2; y < y1; y++) {
-            world[x2][y] = hall;
+            set(x2, y, hall);
             makeWall(x2, y, true);
         }
         
         // Horizontal segment to first room
         for (int x = x1; x < x2 + 1; x++) {
-            world[x][y1] = hall;
+            set(x, y1, hall);
             makeWall(y1, x, false);
         }
 
@@ -388,13 +433,13 @@ public class World {
     public void upAndRight(int x1, int y1, int x2, int y2) {
         // Vertical segment from second room
         for (int y = y2; y < y1; y++) {
-            world[x2][y] = hall;
+            set(x2, y, hall);
             makeWall(x2, y, true);
         }
 
         // Horizontal segment to first room
         for (int x = x2; x < x1; x++) {
-            world[x][y1] = hall;
+            set(x, y1, hall);
             makeWall(y1, x, false);
         }
 
@@ -415,13 +460,13 @@ public class World {
     public void downAndLeft(int x1, int y1, int x2, int y2) {
         // Vertical segment from second room
         for (int y = y2; y > y1; y--) {
-            world[x2][y] = hall;
+            set(x2, y, hall);
             makeWall(x2, y, true);
         }
 
         // Horizontal segment to first room
         for (int x = x2; x > x1; x--) {
-            world[x][y1] = hall;
+            set(x, y1, hall);
             makeWall(y1, x, false);
         }
 
@@ -442,13 +487,13 @@ public class World {
     public void downAndRight(int x1, int y1, int x2, int y2) {
         // Vertical segment from second room
         for (int y = y2; y > y1; y--) {
-            world[x2][y] = hall;
+            set(x2, y, hall);
             makeWall(x2, y, true);
         }
 
         // Horizontal segment to first room
         for (int x = x2; x < x1; x++) {
-            world[x][y1] = hall;
+            set(x, y1, hall);
             makeWall(y1, x, false);
         }
 
@@ -467,7 +512,7 @@ public class World {
      */
     public void vertical(int x, int y1, int y2) {
         for (int y = Math.min(y1, y2); y < Math.max(y1, y2); y++) {
-            world[x][y] = hall;
+            set(x, y, hall);
             makeWall(x, y, true);
         }
     }
@@ -483,7 +528,7 @@ public class World {
      */
     public void horizontal(int y, int x1, int x2) {
         for (int x = Math.min(x1, x2); x < Math.max(x1, x2); x++) {
-            world[x][y] = hall;
+            set(x, y, hall);
             makeWall(y, x, false);
         }
     }
@@ -502,18 +547,18 @@ public class World {
         if (xStagnant) {
             // Add walls on left and right sides of vertical hallway
             if (world[stagnant - 1][change] == outside) {
-                world[stagnant - 1][change] = wall;
+                set(stagnant - 1, change, wall);
             }
             if (world[stagnant + 1][change] == outside) {
-                world[stagnant + 1][change] = wall;
+                set(stagnant + 1, change, wall);
             }
         } else {
             // Add walls on top and bottom sides of horizontal hallway
             if (world[change][stagnant - 1] == outside) {
-                world[change][stagnant - 1] = wall;
+                set(change, stagnant - 1, wall);
             }
             if (world[change][stagnant + 1] == outside) {
-                world[change][stagnant + 1] = wall;
+                set(change, stagnant + 1, wall);
             }
         }
     }
@@ -530,13 +575,62 @@ public class World {
      */
     public void makeWallCorners(int x, int y, boolean up) {
         if (world[x][y] == outside) {
-            world[x][y] = wall;
+            set(x, y, wall);
         }
         if (up && world[x][y + 1] == outside) {
-            world[x][y + 1] = wall;
+            set(x, y + 1, wall);
         }
         if (!up && world[x][y - 1] == outside) {
-            world[x][y - 1] = wall;
+            set(x, y - 1, wall);
         }
     }
+
+    /**
+     * Returns the rooms of this world and the hallways connecting them, as
+     * recorded while the world was generated.
+     * 
+     * @return The world's room graph
+     */
+    public RoomGraph roomGraph() {
+        return rooms;
+    }
+
+    /**
+     * Creates a pathfinder that plans routes over this world's room graph and
+     * walks them on its tiles. Carrots count as walkable, avatars are ignored.
+     * 
+     * @return A new pathfinder for this world
+     */
+    public HierarchicalPathfinder pathfinder() {
+        return new HierarchicalPathfinder(rooms, (x, y) -> x >= 0 && y >= 0 && x < width && y < height
+                && (TileFlags.of(world[x][y]) & TileFlags.WALKABLE) != 0);
+    }
+
+    /**
+     * Puts a tile into the world, keeping the world's fingerprint up to date.
+     * Every write to the world's tiles should go through here.
+     * 
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     * @param tile The new tile
+     */
+    public void set(int x, int y, TETile tile) {
+        fingerprint ^= TileHash.of(x, y, world[x][y]) ^ TileHash.of(x, y, tile);
+        world[x][y] = tile;
+        tilesWritten += 1;
+        if (history != null) {
+            history.changed(MoveHistory.MAIN, world, x, y, x, y);
+        }
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the world's tiles, equal to
+     * TileHash.of(world). It is updated on every write, so this takes
+     * constant time; equal worlds have equal fingerprints, in any JVM.
+     * 
+     * @return The world's fingerprint
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
 }
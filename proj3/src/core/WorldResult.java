@@ -0,0 +1,70 @@
+package core;
+
+import tileengine.TETile;
+
+/**
+ * The outcome of running one input script through AutograderBuddy.
+ *
+ * Batch runs (AutograderBuddy.getWorldsFromInputs) return one of these per
+ * input string, in the same order the inputs were given, so callers can match
+ * each resulting world and its running time back to the script that made it.
+ *
+ * @version 1.0
+ */
+public class WorldResult {
+
+    private final String input;        // Input script that was evaluated
+    private final TETile[][] world;    // World the script produced
+    private final long fingerprint;    // TileHash fingerprint of world
+    private final long nanos;          // Wall-clock time spent evaluating the script
+
+    /**
+     * Creates a result for a single evaluated script.
+     *
+     * @param input The input script
+     * @param world The world produced by the script
+     * @param fingerprint The world's fingerprint, TileHash.of(world)
+     * @param nanos Time taken to evaluate the script, in nanoseconds
+     */
+    public WorldResult(String input, TETile[][] world, long fingerprint, long nanos) {
+        this.input = input;
+        this.world = world;
+        this.fingerprint = fingerprint;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the input script that produced this result
+     */
+    public String input() {
+        return input;
+    }
+
+    /**
+     * @return the world the script produced
+     */
+    public TETile[][] world() {
+        return world;
+    }
+
+    /**
+     * @return 64-bit fingerprint of the world; equal worlds have equal fingerprints
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return time taken to evaluate the script, in nanoseconds
+     */
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * @return time taken to evaluate the script, in milliseconds
+     */
+    public double millis() {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,330 @@
+package tileengine;
+
+import java.util.Arrays;
+
+/**
+ * A grid of tiles stored as square chunks that are shared between copies
+ * until one of them writes (copy-on-write).
+ *
+ * The grid is cut into CHUNK x CHUNK chunks, each a flat array of tiles.
+ * snapshot() makes a new grid that points at the same chunks, so it costs
+ * one reference per chunk however many tiles there are: a 4096 x 4096
+ * world has 16,384 chunks and 16 million tiles. The first write to a chunk
+ * after a snapshot copies just that chunk (on whichever side writes), so
+ * a move, which touches a tile or two, copies one chunk, and both grids
+ * still see exactly what they saw when the snapshot was taken.
+ *
+ * Each chunk counts the places in chunk tables that point at it, and a grid
+ * writes to a chunk in place only when it is the one place. After a
+ * snapshot every chunk is pointed at twice, so each side copies a chunk
+ * before its first write to it.
+ *
+ * Grids made from one another (by snapshot or snapshotInto) share a pool of
+ * spare chunks. snapshotInto reuses an existing grid instead of making a
+ * new one, and puts the chunks that grid no longer points at, and nothing
+ * else does, into the pool; copies take their chunk from the pool before
+ * making a new one. Something that keeps a fixed set of grids and keeps
+ * snapshotting into them (like a ring of keyframes) therefore stops
+ * allocating once the pool holds as many chunks as it ever needs at once.
+ * A grid that is simply dropped never gives its chunks back; they are left
+ * to the garbage collector and, until then, are copied rather than written.
+ *
+ * A new grid filled with one tile shares a single chunk between all its
+ * cells, so it is also cheap until it is written to. Grids are not
+ * thread-safe, and neither are grids that share chunks.
+ */
+public class ChunkedGrid {
+
+    // Chunks are CHUNK x CHUNK tiles; CHUNK = 1 << CHUNK_BITS
+    public static final int CHUNK_BITS = 5;
+    public static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK - 1;
+
+    // A block of tiles, indexed (x % CHUNK) * CHUNK + (y % CHUNK)
+    private static final class Chunk {
+        final TETile[] tiles;
+        int refs;              // Places in chunk tables that point at this chunk
+
+        Chunk(TETile[] tiles) {
+            this.tiles = tiles;
+        }
+    }
+
+    // Spare chunks of a family of grids made from one another
+    private static final class Pool {
+        Chunk[] spare = new Chunk[16];
+        int count;             // Chunks in spare
+        long created;          // Chunks made so far for the family, spare or not
+
+        // A chunk nothing points at: a spare one, or else a new one
+        Chunk take() {
+            if (count > 0) {
+                Chunk chunk = spare[--count];
+                spare[count] = null;
+                return chunk;
+            }
+            created += 1;
+            return new Chunk(new TETile[CHUNK * CHUNK]);
+        }
+
+        void give(Chunk chunk) {
+            if (count == spare.length) {
+                spare = Arrays.copyOf(spare, count * 2);
+            }
+            spare[count++] = chunk;
+        }
+    }
+
+    /**
+     * Receives the cells diff finds.
+     */
+    public interface CellVisitor {
+        /**
+         * @param x x coordinate of a cell that differs
+         * @param y y coordinate of the cell
+         * @param tile the other grid's tile there
+         */
+        void visit(int x, int y, TETile tile);
+    }
+
+    private final int width;
+    private final int height;
+    private final int chunksHigh;    // Number of chunks in a column of chunks
+    private final Chunk[] chunks;    // Indexed (x / CHUNK) * chunksHigh + (y / CHUNK)
+    private final Pool pool;         // Spare chunks, shared with the grids this one was made from
+    private long copies;             // Chunks this grid has copied so far
+
+    /**
+     * Creates a grid with every cell set to the same tile.
+     * @param width width in tiles
+     * @param height height in tiles
+     * @param fill tile for every cell, may be null
+     */
+    public ChunkedGrid(int width, int height, TETile fill) {
+        this.width = width;
+        this.height = height;
+        this.chunksHigh = (height + MASK) >> CHUNK_BITS;
+        this.chunks = new Chunk[((width + MASK) >> CHUNK_BITS) * chunksHigh];
+        this.pool = new Pool();
+        Chunk shared = pool.take();
+        Arrays.fill(shared.tiles, fill);
+        shared.refs = chunks.length;
+        Arrays.fill(chunks, shared);
+    }
+
+    // Shares other's chunks, for snapshot
+    private ChunkedGrid(ChunkedGrid other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.chunksHigh = other.chunksHigh;
+        this.chunks = other.chunks.clone();
+        this.pool = other.pool;
+        for (Chunk chunk : chunks) {
+            chunk.refs += 1;
+        }
+    }
+
+    /**
+     * Copies a tile array into a new chunked grid.
+     * @param grid the tiles, indexed [x][y]
+     * @return a grid with the same tiles
+     */
+    public static ChunkedGrid of(TETile[][] grid) {
+        ChunkedGrid chunked = new ChunkedGrid(grid.length, grid[0].length, null);
+        for (int x = 0; x < grid.length; x += 1) {
+            for (int y = 0; y < grid[0].length; y += 1) {
+                chunked.set(x, y, grid[x][y]);
+            }
+        }
+        chunked.copies = 0;
+        return chunked;
+    }
+
+    /**
+     * @return width in tiles
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return height in tiles
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the tile at (x, y)
+     */
+    public TETile get(int x, int y) {
+        check(x, y);
+        return chunks[chunkIndex(x, y)].tiles[cellIndex(x, y)];
+    }
+
+    /**
+     * Sets the tile at (x, y), first copying its chunk if it is shared with
+     * another grid.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param tile the new tile
+     */
+    public void set(int x, int y, TETile tile) {
+        check(x, y);
+        int c = chunkIndex(x, y);
+        Chunk chunk = chunks[c];
+        if (chunk.refs > 1) {
+            Chunk copy = pool.take();
+            System.arraycopy(chunk.tiles, 0, copy.tiles, 0, CHUNK * CHUNK);
+            copy.refs = 1;
+            chunk.refs -= 1;
+            chunks[c] = copy;
+            chunk = copy;
+            copies += 1;
+        }
+        chunk.tiles[cellIndex(x, y)] = tile;
+    }
+
+    /**
+     * Takes a snapshot: a grid with the same tiles that shares every chunk
+     * with this one. Later writes to either grid are not seen by the other.
+     * Costs one reference per chunk.
+     * @return the snapshot
+     */
+    public ChunkedGrid snapshot() {
+        return new ChunkedGrid(this);
+    }
+
+    /**
+     * Makes target a snapshot of this grid, reusing it instead of making a
+     * new grid: target shares every chunk with this one afterwards, and the
+     * chunks only target pointed at go to the pool for later copies.
+     * Allocates nothing.
+     * @param target a grid made from this one, or this one from it (by
+     *               snapshot, snapshotInto or from a common grid)
+     * @throws IllegalArgumentException if target does not share this grid's pool
+     */
+    public void snapshotInto(ChunkedGrid target) {
+        if (target.pool != pool) {
+            throw new IllegalArgumentException("Can only snapshot into a grid made from the same grid");
+        }
+        for (int c = 0; c < chunks.length; c += 1) {
+            Chunk old = target.chunks[c];
+            Chunk now = chunks[c];
+            if (old != now) {
+                now.refs += 1;
+                old.refs -= 1;
+                if (old.refs == 0) {
+                    pool.give(old);
+                }
+                target.chunks[c] = now;
+            }
+        }
+    }
+
+    /**
+     * @return number of chunks this grid has copied because they were shared
+     */
+    public long copies() {
+        return copies;
+    }
+
+    /**
+     * @return number of chunks made so far for this grid and the grids it
+     *         was made from or made (by snapshot or snapshotInto), including
+     *         the spare ones in their pool
+     */
+    public long chunksCreated() {
+        return pool.created;
+    }
+
+    /**
+     * @return number of chunks the grid is cut into
+     */
+    public int chunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Calls visitor with every cell whose tile in other is not the one in
+     * this grid, and other's tile there. Chunks the two grids share are
+     * skipped without looking at their tiles, so comparing a grid with an
+     * earlier snapshot of it costs one check per chunk plus CHUNK * CHUNK
+     * per chunk written to since.
+     * @param other a grid of the same size
+     * @param visitor called once per differing cell
+     */
+    public void diff(ChunkedGrid other, CellVisitor visitor) {
+        checkSize(other);
+        for (int c = 0; c < chunks.length; c += 1) {
+            TETile[] mine = chunks[c].tiles;
+            TETile[] theirs = other.chunks[c].tiles;
+            if (mine == theirs) {
+                continue;
+            }
+            int x0 = (c / chunksHigh) << CHUNK_BITS;
+            int y0 = (c % chunksHigh) << CHUNK_BITS;
+            for (int x = x0; x < Math.min(x0 + CHUNK, width); x += 1) {
+                for (int y = y0; y < Math.min(y0 + CHUNK, height); y += 1) {
+                    int i = cellIndex(x, y);
+                    if (mine[i] != theirs[i]) {
+                        visitor.visit(x, y, theirs[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param other a grid of the same size
+     * @return number of chunks whose tiles this grid and other share
+     */
+    public int sharedChunks(ChunkedGrid other) {
+        checkSize(other);
+        int shared = 0;
+        for (int c = 0; c < chunks.length; c += 1) {
+            if (chunks[c].tiles == other.chunks[c].tiles) {
+                shared += 1;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Copies the grid out into a plain tile array.
+     * @return a new array, indexed [x][y]
+     */
+    public TETile[][] toArray() {
+        TETile[][] grid = new TETile[width][height];
+        for (int x = 0; x < width; x += 1) {
+            for (int y = 0; y < height; y += 1) {
+                grid[x][y] = chunks[chunkIndex(x, y)].tiles[cellIndex(x, y)];
+            }
+        }
+        return grid;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (x >> CHUNK_BITS) * chunksHigh + (y >> CHUNK_BITS);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return ((x & MASK) << CHUNK_BITS) | (y & MASK);
+    }
+
+    private void checkSize(ChunkedGrid other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Cannot compare a " + width + "x" + height
+                    + " grid with a " + other.width + "x" + other.height + " one");
+        }
+    }
+
+    private void check(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is outside the "
+                    + width + "x" + height + " grid");
+        }
+    }
+}
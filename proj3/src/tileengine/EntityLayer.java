@@ -0,0 +1,357 @@
+package tileengine;
+
+import java.util.Arrays;
+
+/**
+ * A sparse layer of moving tiles (avatars, ducks, ...) drawn over a terrain grid.
+ *
+ * The terrain is never written to: entities live here, indexed by their
+ * position, and only become tiles when the layer is composited onto a copy of
+ * the terrain for rendering or export. Several entities may share a tile; the
+ * one that arrived last is on top and is the one that gets drawn.
+ *
+ * Everything is stored in primitive arrays:
+ * - per entity: x, y, tile and the next entity below it on the same tile
+ * - per occupied tile: an open-addressing (linear probing) table from the
+ *   tile's position to the entity on top
+ *
+ * Adding entities may grow the arrays, but moving and removing them never
+ * allocates, so a layer can hold thousands of entities that move every tick.
+ * Positions must be inside the width x height area given to the constructor.
+ */
+public class EntityLayer {
+
+    private static final int EMPTY = -1;   // Marks an unused table slot or missing entity
+
+    private final int width;               // Width of the area entities can be in
+    private final int height;              // Height of the area entities can be in
+
+    // Per entity, indexed by id
+    private int[] xs;                      // X coordinate
+    private int[] ys;                      // Y coordinate
+    private TETile[] tiles;                // Tile drawn for the entity, null if the id is free
+    private int[] below;                   // Next entity down on the same tile (or next free id)
+    private int freeIds;                   // First id free for reuse, or EMPTY
+    private int ids;                       // Number of ids handed out so far
+    private int size;                      // Number of live entities
+
+    // Position table: key is x * height + y, value is the entity on top there
+    private int[] keys;
+    private int[] tops;
+    private int mask;                      // keys.length - 1
+    private int occupied;                  // Number of keys in the table
+
+    /**
+     * Creates an empty layer for entities inside a width x height area.
+     * @param width width of the area
+     * @param height height of the area
+     */
+    public EntityLayer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.xs = new int[8];
+        this.ys = new int[8];
+        this.tiles = new TETile[8];
+        this.below = new int[8];
+        this.freeIds = EMPTY;
+        this.keys = new int[16];
+        this.tops = new int[16];
+        this.mask = 15;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Adds an entity on top of whatever is already at (x, y).
+     * @param tile the tile to draw for the entity
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the new entity's id, used to move or remove it later
+     */
+    public int add(TETile tile, int x, int y) {
+        int key = key(x, y);
+        int id;
+        if (freeIds != EMPTY) {
+            id = freeIds;
+            freeIds = below[id];
+        } else {
+            if (ids == xs.length) {
+                growEntities();
+            }
+            id = ids;
+            ids += 1;
+        }
+        tiles[id] = tile;
+        push(id, key);
+        size += 1;
+        return id;
+    }
+
+    /**
+     * Moves an entity to (x, y), putting it on top of anything already there.
+     * @param id the entity to move
+     * @param x new x coordinate
+     * @param y new y coordinate
+     */
+    public void move(int id, int x, int y) {
+        int key = key(x, y);
+        checkLive(id);
+        unlink(id);
+        push(id, key);
+    }
+
+    /**
+     * Removes an entity. Its id may be handed out again by a later add.
+     * @param id the entity to remove
+     */
+    public void remove(int id) {
+        checkLive(id);
+        unlink(id);
+        tiles[id] = null;
+        below[id] = freeIds;
+        freeIds = id;
+        size -= 1;
+    }
+
+    /**
+     * Changes the tile drawn for an entity.
+     * @param id the entity
+     * @param tile the new tile
+     */
+    public void setTile(int id, TETile tile) {
+        checkLive(id);
+        tiles[id] = tile;
+    }
+
+    /**
+     * @param id an entity
+     * @return the entity's x coordinate
+     */
+    public int x(int id) {
+        checkLive(id);
+        return xs[id];
+    }
+
+    /**
+     * @param id an entity
+     * @return the entity's y coordinate
+     */
+    public int y(int id) {
+        checkLive(id);
+        return ys[id];
+    }
+
+    /**
+     * @param id an entity
+     * @return the tile drawn for the entity
+     */
+    public TETile tile(int id) {
+        checkLive(id);
+        return tiles[id];
+    }
+
+    /**
+     * @return number of entities in the layer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return true if at least one entity is at (x, y)
+     */
+    public boolean occupied(int x, int y) {
+        return top(x, y) != EMPTY;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return id of the entity on top at (x, y), or -1 if there is none
+     */
+    public int top(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return EMPTY;
+        }
+        int key = x * height + y;
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return tops[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @param id an entity
+     * @return id of the entity directly below it on the same tile, or -1
+     */
+    public int below(int id) {
+        checkLive(id);
+        return below[id];
+    }
+
+    /**
+     * Draws the top entity of every occupied tile into grid. Only occupied
+     * tiles are visited.
+     * @param grid the tile array to draw into
+     */
+    public void drawOnto(TETile[][] grid) {
+        for (int i = 0; i < keys.length; i++) {
+            int key = keys[i];
+            if (key != EMPTY) {
+                grid[key / height][key % height] = tiles[tops[i]];
+            }
+        }
+    }
+
+    /**
+     * Turns the fingerprint of the terrain into the fingerprint of the
+     * composited grid: for every occupied tile, swaps the terrain tile's
+     * TileHash key for the top entity's. Only occupied tiles are visited, so
+     * with a terrain whose fingerprint is kept up to date this is as cheap as
+     * the number of entities.
+     * @param terrain the terrain grid, which is only read
+     * @param terrainHash TileHash.of(terrain)
+     * @return TileHash.of(composite(terrain, ...))
+     */
+    public long fingerprint(TETile[][] terrain, long terrainHash) {
+        long hash = terrainHash;
+        for (int i = 0; i < keys.length; i++) {
+            int key = keys[i];
+            if (key != EMPTY) {
+                int x = key / height;
+                int y = key % height;
+                hash ^= TileHash.of(x, y, terrain[x][y]) ^ TileHash.of(x, y, tiles[tops[i]]);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Copies terrain into out and draws the entities over it.
+     * @param terrain the terrain grid, which is only read
+     * @param out the grid to write to, the same size as terrain
+     * @return out
+     */
+    public TETile[][] composite(TETile[][] terrain, TETile[][] out) {
+        for (int x = 0; x < terrain.length; x++) {
+            System.arraycopy(terrain[x], 0, out[x], 0, terrain[x].length);
+        }
+        drawOnto(out);
+        return out;
+    }
+
+    private int key(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is outside the "
+                    + width + "x" + height + " entity area");
+        }
+        return x * height + y;
+    }
+
+    private void checkLive(int id) {
+        if (id < 0 || id >= ids || tiles[id] == null) {
+            throw new IllegalArgumentException("No entity with id " + id);
+        }
+    }
+
+    // Fibonacci hashing of the key into the table
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Puts entity id on top of the stack at key
+    private void push(int id, int key) {
+        xs[id] = key / height;
+        ys[id] = key % height;
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                below[id] = tops[i];
+                tops[i] = id;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        tops[i] = id;
+        below[id] = EMPTY;
+        occupied += 1;
+        if (occupied * 2 > keys.length) {
+            growTable();
+        }
+    }
+
+    // Takes entity id out of the stack at its current position
+    private void unlink(int id) {
+        int key = xs[id] * height + ys[id];
+        int i = slot(key);
+        while (keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (tops[i] == id) {
+            if (below[id] == EMPTY) {
+                deleteSlot(i);
+            } else {
+                tops[i] = below[id];
+            }
+            return;
+        }
+        int above = tops[i];
+        while (below[above] != id) {
+            above = below[above];
+        }
+        below[above] = below[id];
+    }
+
+    // Removes the key at slot i, shifting later keys of the same run back so lookups still find them
+    private void deleteSlot(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int home = slot(keys[j]);
+            // Move keys[j] into the hole unless its home slot lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                tops[i] = tops[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        occupied -= 1;
+    }
+
+    private void growEntities() {
+        int n = xs.length * 2;
+        xs = Arrays.copyOf(xs, n);
+        ys = Arrays.copyOf(ys, n);
+        tiles = Arrays.copyOf(tiles, n);
+        below = Arrays.copyOf(below, n);
+    }
+
+    private void growTable() {
+        int[] oldKeys = keys;
+        int[] oldTops = tops;
+        keys = new int[oldKeys.length * 2];
+        tops = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                tops[j] = oldTops[i];
+            }
+        }
+    }
+}
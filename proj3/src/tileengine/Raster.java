@@ -0,0 +1,174 @@
+package tileengine;
+
+/**
+ * Fills simple shapes into a 2D tile array, one horizontal span at a time.
+ *
+ * Every shape is drawn row by row: for each row the first and last column
+ * inside the shape are worked out with integer math, and only the tiles in
+ * between are written. Nothing outside the shape's bounding box is visited,
+ * and no square roots, trig or per-tile allocations are needed.
+ *
+ * Shapes are clipped to the array, and each fill method returns how many
+ * tiles it wrote. Like the rest of the tile engine, tiles are indexed as
+ * world[x][y] with y = 0 at the bottom.
+ */
+public class Raster {
+
+    private Raster() {
+    }
+
+    /**
+     * Writes tile into row y for every column from x0 to x1 (inclusive).
+     * @param world the tile array to draw into
+     * @param y the row
+     * @param x0 first column
+     * @param x1 last column
+     * @param tile the tile to write
+     * @return number of tiles written
+     */
+    public static int fillSpan(TETile[][] world, int y, int x0, int x1, TETile tile) {
+        if (y < 0 || world.length == 0 || y >= world[0].length) {
+            return 0;
+        }
+        int from = Math.max(x0, 0);
+        int to = Math.min(x1, world.length - 1);
+        for (int x = from; x <= to; x++) {
+            world[x][y] = tile;
+        }
+        return Math.max(0, to - from + 1);
+    }
+
+    /**
+     * Fills the rectangle with corners (xMin, yMin) and (xMax, yMax), both inclusive.
+     * @param world the tile array to draw into
+     * @param xMin left column
+     * @param yMin bottom row
+     * @param xMax right column
+     * @param yMax top row
+     * @param tile the tile to write
+     * @return number of tiles written
+     */
+    public static int fillRect(TETile[][] world, int xMin, int yMin, int xMax, int yMax, TETile tile) {
+        int written = 0;
+        for (int y = yMin; y <= yMax; y++) {
+            written += fillSpan(world, y, xMin, xMax, tile);
+        }
+        return written;
+    }
+
+    /**
+     * Fills every tile whose distance from (cx, cy) is at most r, i.e. every
+     * (x, y) with (x - cx)^2 + (y - cy)^2 <= r^2.
+     * @param world the tile array to draw into
+     * @param cx center column
+     * @param cy center row
+     * @param r radius in tiles
+     * @param tile the tile to write
+     * @return number of tiles written
+     */
+    public static int fillCircle(TETile[][] world, int cx, int cy, int r, TETile tile) {
+        if (r < 0) {
+            return 0;
+        }
+        int written = 0;
+        int rr = r * r;
+        int dx = r;
+        for (int dy = 0; dy <= r; dy++) {
+            // Shrink the half-width until (dx, dy) is back inside the circle
+            while (dx * dx + dy * dy > rr) {
+                dx -= 1;
+            }
+            written += fillSpan(world, cy + dy, cx - dx, cx + dx, tile);
+            if (dy != 0) {
+                written += fillSpan(world, cy - dy, cx - dx, cx + dx, tile);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Fills the triangle with corners (x1, y1), (x2, y2) and (x3, y3), including
+     * its edges. A tile is inside when it is on the same side of (or on) all three
+     * edges, which is the usual sign-of-the-cross-product test done one row at a time.
+     * A flat triangle (all corners on one line) fills only the part of that line
+     * inside the corners' bounding box.
+     * @param world the tile array to draw into
+     * @param x1 first corner column
+     * @param y1 first corner row
+     * @param x2 second corner column
+     * @param y2 second corner row
+     * @param x3 third corner column
+     * @param y3 third corner row
+     * @param tile the tile to write
+     * @return number of tiles written
+     */
+    public static int fillTriangle(TETile[][] world, int x1, int y1, int x2, int y2, int x3, int y3,
+                                   TETile tile) {
+        int written = 0;
+        int yMin = Math.min(y1, Math.min(y2, y3));
+        int yMax = Math.max(y1, Math.max(y2, y3));
+        int xMin = Math.min(x1, Math.min(x2, x3));
+        int xMax = Math.max(x1, Math.max(x2, x3));
+
+        // Edge function of edge i at (x, y) is a_i * x + (c_i * y + d_i)
+        long a1 = y1 - y2;
+        long c1 = -(x1 - x2);
+        long d1 = (long) (x1 - x2) * y2 - (long) x2 * (y1 - y2);
+        long a2 = y2 - y3;
+        long c2 = -(x2 - x3);
+        long d2 = (long) (x2 - x3) * y3 - (long) x3 * (y2 - y3);
+        long a3 = y3 - y1;
+        long c3 = -(x3 - x1);
+        long d3 = (long) (x3 - x1) * y1 - (long) x1 * (y3 - y1);
+
+        for (int y = yMin; y <= yMax; y++) {
+            long b1 = c1 * y + d1;
+            long b2 = c2 * y + d2;
+            long b3 = c3 * y + d3;
+
+            // Columns where all three edge functions are >= 0
+            int posFrom = Math.max(xMin, Math.max(lowerBound(a1, b1), Math.max(lowerBound(a2, b2), lowerBound(a3, b3))));
+            int posTo = Math.min(xMax, Math.min(upperBound(a1, b1), Math.min(upperBound(a2, b2), upperBound(a3, b3))));
+            // Columns where all three edge functions are <= 0
+            int negFrom = Math.max(xMin, Math.max(lowerBound(-a1, -b1), Math.max(lowerBound(-a2, -b2), lowerBound(-a3, -b3))));
+            int negTo = Math.min(xMax, Math.min(upperBound(-a1, -b1), Math.min(upperBound(-a2, -b2), upperBound(-a3, -b3))));
+
+            boolean pos = posFrom <= posTo;
+            boolean neg = negFrom <= negTo;
+            if (pos && neg && negFrom <= posTo + 1 && posFrom <= negTo + 1) {
+                // Only a flat triangle has tiles on both sides at once; fill the union
+                written += fillSpan(world, y, Math.min(posFrom, negFrom), Math.max(posTo, negTo), tile);
+            } else {
+                if (pos) {
+                    written += fillSpan(world, y, posFrom, posTo, tile);
+                }
+                if (neg) {
+                    written += fillSpan(world, y, negFrom, negTo, tile);
+                }
+            }
+        }
+        return written;
+    }
+
+    // Smallest x with a * x + b >= 0 (Integer.MIN_VALUE if every x, MAX_VALUE if none)
+    private static int lowerBound(long a, long b) {
+        if (a > 0) {
+            return (int) -Math.floorDiv(b, a);
+        }
+        if (a < 0 || b >= 0) {
+            return Integer.MIN_VALUE;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    // Largest x with a * x + b >= 0 (Integer.MAX_VALUE if every x, MIN_VALUE if none)
+    private static int upperBound(long a, long b) {
+        if (a < 0) {
+            return (int) Math.floorDiv(b, -a);
+        }
+        if (a > 0 || b >= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,126 @@
+package tileengine;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders tiles into an image instead of a window. It draws the same thing as
+ * TERenderer (each tile's picture, or its character on its background color,
+ * 16 pixels per tile) but into a BufferedImage, without StdDraw, so it works
+ * with no display at all: in headless benchmarks, tests and for screenshots.
+ *
+ * Pictures are read from disk once per path and kept; a picture that cannot
+ * be read falls back to the character and colors, as in TETile.draw.
+ */
+public class TEImageRenderer {
+    private static final int TILE_SIZE = 16;
+    private int width;
+    private int height;
+    private int xOffset;
+    private int yOffset;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private FontMetrics metrics;
+    private final Map<String, Image> pictures = new HashMap<>();
+
+    /**
+     * Creates the image to draw into. The arguments mean the same as in
+     * TERenderer.initialize(int, int, int, int).
+     * @param w width of the image in tiles
+     * @param h height of the image in tiles
+     * @param xOff number of blank tiles left of the world
+     * @param yOff number of blank tiles below the world
+     */
+    public void initialize(int w, int h, int xOff, int yOff) {
+        this.width = w;
+        this.height = h;
+        this.xOffset = xOff;
+        this.yOffset = yOff;
+        image = new BufferedImage(width * TILE_SIZE, height * TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setFont(new Font("Monaco", Font.BOLD, TILE_SIZE - 2));
+        metrics = graphics.getFontMetrics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Same as initialize(w, h, 0, 0).
+     * @param w width of the image in tiles
+     * @param h height of the image in tiles
+     */
+    public void initialize(int w, int h) {
+        initialize(w, h, 0, 0);
+    }
+
+    /**
+     * Clears the image to black and draws the world into it, with [0][0] at the
+     * bottom left as on screen.
+     * @param world the 2D TETile[][] array to render
+     */
+    public void renderFrame(TETile[][] world) {
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        for (int x = 0; x < world.length; x += 1) {
+            for (int y = 0; y < world[0].length; y += 1) {
+                if (world[x][y] == null) {
+                    throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
+                            + " is null.");
+                }
+                draw(world[x][y], x + xOffset, y + yOffset);
+            }
+        }
+    }
+
+    /**
+     * @return the image drawn by the last renderFrame; it is reused by the next one
+     */
+    public BufferedImage image() {
+        return image;
+    }
+
+    // Draws one tile with its bottom left corner at tile (x, y)
+    private void draw(TETile tile, int x, int y) {
+        int px = x * TILE_SIZE;
+        int py = (height - 1 - y) * TILE_SIZE;
+        if (tile.filepath() != null) {
+            Image picture = picture(tile.filepath());
+            if (picture != null) {
+                graphics.drawImage(picture, px, py, TILE_SIZE, TILE_SIZE, null);
+                return;
+            }
+        }
+
+        graphics.setColor(tile.backgroundColor());
+        graphics.fillRect(px, py, TILE_SIZE, TILE_SIZE);
+        graphics.setColor(tile.textColor());
+        String text = tile.text();
+        graphics.drawString(text, px + (TILE_SIZE - metrics.stringWidth(text)) / 2f,
+                py + TILE_SIZE / 2f + metrics.getDescent());
+    }
+
+    // The picture at path, or null if it cannot be read
+    private Image picture(String path) {
+        if (!pictures.containsKey(path)) {
+            Image picture = null;
+            try {
+                picture = ImageIO.read(new File(path));
+            } catch (IOException e) {
+                // Fall back to the character and colors, as TETile.draw does
+            }
+            pictures.put(path, picture);
+        }
+        return pictures.get(path);
+    }
+}
@@ -1,9 +1,15 @@
 package tileengine;
 
 import edu.princeton.cs.algs4.StdDraw;
+import utils.Histogram;
+import utils.Metrics;
 
+import javax.swing.ImageIcon;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 
 /**
  * Utility class for rendering tiles. You do not need to modify this file. You're welcome
@@ -13,10 +19,18 @@ import java.awt.Font;
  */
 public class TERenderer {
     private static final int TILE_SIZE = 16;
+    private static final Color BACKGROUND = new Color(0, 0, 0);
+    private static final Histogram FRAME_TIME = Metrics.registry().histogram("byow_render_frame_seconds",
+            "Time to draw one frame with TERenderer.renderFrame");
     private int width;
     private int height;
     private int xOffset;
     private int yOffset;
+    private int[][] drawn;      // Id of the tile last drawn in each cell of the world, or null
+    private int dirtyMinX;      // Screen tiles redrawn by the last frame, as a box; empty if
+    private int dirtyMinY;      // dirtyMinX > dirtyMaxX
+    private int dirtyMaxX;
+    private int dirtyMaxY;
 
     /**
      * Same functionality as the other initialization method. The only difference is that the xOff
@@ -38,12 +52,37 @@ public class TERenderer {
         StdDraw.setXscale(0, width);
         StdDraw.setYscale(0, height);
 
-        StdDraw.clear(new Color(0, 0, 0));
+        StdDraw.clear(BACKGROUND);
+        drawn = null;
 
         StdDraw.enableDoubleBuffering();
         StdDraw.show();
     }
 
+    /**
+     * Gets every tile ready to draw without touching the window, so the first
+     * frame does not stall on it: reads each tile's picture the way
+     * StdDraw.picture does (through ImageIcon, whose images the toolkit keeps),
+     * and draws each tile's character once with the tile font, off screen, so
+     * its glyph is cached. Safe to call from any thread, e.g. while the worlds
+     * are being generated.
+     * @param tiles the tiles to get ready, e.g. every tile in TileRegistry
+     */
+    public static void preload(Iterable<TETile> tiles) {
+        BufferedImage scratch = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scratch.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setFont(new Font("Monaco", Font.BOLD, TILE_SIZE - 2));
+        for (TETile tile : tiles) {
+            if (tile.filepath() != null) {
+                new ImageIcon(tile.filepath());
+            }
+            g.setColor(tile.textColor());
+            g.drawString(tile.text(), 0, TILE_SIZE);
+        }
+        g.dispose();
+    }
+
     /**
      * Initializes StdDraw parameters and launches the StdDraw window. w and h are the
      * width and height of the world in number of tiles. If the TETile[][] array that you
@@ -84,9 +123,10 @@ public class TERenderer {
      * @param world the 2D TETile[][] array to render
      */
     public void renderFrame(TETile[][] world) {
+        long start = System.nanoTime();
         int numXTiles = world.length;
         int numYTiles = world[0].length;
-        StdDraw.clear(new Color(0, 0, 0));
+        StdDraw.clear(BACKGROUND);
         for (int x = 0; x < numXTiles; x += 1) {
             for (int y = 0; y < numYTiles; y += 1) {
                 if (world[x][y] == null) {
@@ -97,5 +137,88 @@ public class TERenderer {
             }
         }
         StdDraw.show();
+        remember(world);
+        FRAME_TIME.recordSince(start);
+    }
+
+    /**
+     * Same as renderFrame, but only redraws the tiles that changed since the last
+     * frame. The screen is not cleared: each changed tile is painted over with the
+     * background color and drawn again, so the result looks exactly as if the whole
+     * frame had been drawn. Tiles are compared by id (see TileRegistry), so tiles
+     * that look the same are never redrawn. The first frame after initialize, or
+     * after the world changes size, is drawn whole.
+     *
+     * Anything else drawn on the screen (such as a HUD) stays there unless a tile
+     * under it changes; redrew says whether one did.
+     * @param world the 2D TETile[][] array to render
+     * @return number of tiles drawn
+     */
+    public int renderChanges(TETile[][] world) {
+        if (drawn == null || drawn.length != world.length || drawn[0].length != world[0].length) {
+            renderFrame(world);
+            return world.length * world[0].length;
+        }
+        long start = System.nanoTime();
+        int count = 0;
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+        for (int x = 0; x < world.length; x += 1) {
+            int[] column = drawn[x];
+            for (int y = 0; y < column.length; y += 1) {
+                TETile tile = world[x][y];
+                if (tile == null) {
+                    throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
+                            + " is null.");
+                }
+                if (tile.id() != column[y]) {
+                    StdDraw.setPenColor(BACKGROUND);
+                    StdDraw.filledSquare(x + xOffset + 0.5, y + yOffset + 0.5, 0.5);
+                    tile.draw(x + xOffset, y + yOffset);
+                    column[y] = tile.id();
+                    dirtyMinX = Math.min(dirtyMinX, x + xOffset);
+                    dirtyMinY = Math.min(dirtyMinY, y + yOffset);
+                    dirtyMaxX = Math.max(dirtyMaxX, x + xOffset);
+                    dirtyMaxY = Math.max(dirtyMaxY, y + yOffset);
+                    count += 1;
+                }
+            }
+        }
+        if (count > 0) {
+            StdDraw.show();
+        }
+        FRAME_TIME.recordSince(start);
+        return count;
+    }
+
+    /**
+     * Whether the last renderFrame or renderChanges drew any tile inside a box of
+     * screen tiles, and so may have drawn over whatever else was there.
+     * @param minX left column of the box
+     * @param minY bottom row of the box
+     * @param maxX right column of the box, inclusive
+     * @param maxY top row of the box, inclusive
+     * @return true if a tile in the box was drawn
+     */
+    public boolean redrew(int minX, int minY, int maxX, int maxY) {
+        return dirtyMinX <= maxX && minX <= dirtyMaxX && dirtyMinY <= maxY && minY <= dirtyMaxY;
+    }
+
+    // Records the ids of a frame that was just drawn whole
+    private void remember(TETile[][] world) {
+        if (drawn == null || drawn.length != world.length || drawn[0].length != world[0].length) {
+            drawn = new int[world.length][world[0].length];
+        }
+        for (int x = 0; x < world.length; x += 1) {
+            for (int y = 0; y < world[0].length; y += 1) {
+                drawn[x][y] = world[x][y].id();
+            }
+        }
+        dirtyMinX = 0;
+        dirtyMinY = 0;
+        dirtyMaxX = width - 1;
+        dirtyMaxY = height - 1;
     }
 }
@@ -19,6 +19,10 @@ import utils.RandomUtils;
  *
  * The provided TETile is immutable, i.e. none of its instance variables can change. You are welcome
  * to make your TETile class mutable, if you prefer.
+ *
+ * Every tile is registered with TileRegistry when it is created. Tiles with the same character,
+ * colors, description and image share one id, and equals/hashCode compare ids, so two such
+ * tiles are equal even if they are different objects.
  */
 
 public class TETile {
@@ -27,6 +31,9 @@ public class TETile {
     private final Color backgroundColor;
     private final String description;
     private final String filepath;
+    private final String text;
+    private final int id;
+    private final long hashKey;        // TileHash's key for this kind of tile, from its contents
 
     /**
      * Full constructor for TETile objects.
@@ -43,6 +50,9 @@ public class TETile {
         this.backgroundColor = backgroundColor;
         this.description = description;
         this.filepath = filepath;
+        this.text = Character.toString(character);
+        this.hashKey = TileHash.tileKey(character, textColor, backgroundColor, description, filepath);
+        this.id = TileRegistry.register(this);
     }
 
     /**
@@ -59,6 +69,9 @@ public class TETile {
         this.backgroundColor = backgroundColor;
         this.description = description;
         this.filepath = null;
+        this.text = Character.toString(character);
+        this.hashKey = TileHash.tileKey(character, textColor, backgroundColor, description, null);
+        this.id = TileRegistry.register(this);
     }
 
     /**
@@ -95,7 +108,7 @@ public class TETile {
         StdDraw.setPenColor(backgroundColor);
         StdDraw.filledSquare(x + 0.5, y + 0.5, 0.5);
         StdDraw.setPenColor(textColor);
-        StdDraw.text(x + 0.5, y + 0.5, Character.toString(character()));
+        StdDraw.text(x + 0.5, y + 0.5, text);
     }
 
     /** Character representation of the tile. Used for drawing in text mode.
@@ -105,6 +118,55 @@ public class TETile {
         return character;
     }
 
+    /**
+     * Small integer identifying this kind of tile; see TileRegistry. Ids start at 0 and are
+     * handed out in order, with the Tileset constants always first in declaration order
+     * (whichever tile is created first), so tables with one entry per tile can be indexed
+     * by them.
+     * @return id of the tile
+     */
+    public int id() {
+        return id;
+    }
+
+    Color textColor() {
+        return textColor;
+    }
+
+    Color backgroundColor() {
+        return backgroundColor;
+    }
+
+    String filepath() {
+        return filepath;
+    }
+
+    // TileHash's key for this kind of tile, the same in every JVM
+    long hashKey() {
+        return hashKey;
+    }
+
+    // The character as a string, made once so drawing a tile never allocates one
+    String text() {
+        return text;
+    }
+
+    /**
+     * Two tiles are equal if they have the same id, i.e. the same character, colors,
+     * description and image.
+     * @param o the object to compare with
+     * @return true if o is a tile with the same id
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TETile && ((TETile) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
     /**
      * Description of the tile. Useful for displaying mouseover text or
      * testing that two tiles represent the same type of thing.
@@ -123,6 +185,7 @@ public class TETile {
      * @param dg the maximum difference in green value
      * @param db the maximum difference in blue value
      * @param r the random number generator to use
+     * @return the registered tile with the new color, shared by every variant with that color
      */
     public static TETile colorVariant(TETile t, int dr, int dg, int db, Random r) {
         Color oldColor = t.textColor;
@@ -132,7 +195,7 @@ public class TETile {
 
         Color c = new Color(newRed, newGreen, newBlue);
 
-        return new TETile(t, c);
+        return TileRegistry.intern(new TETile(t, c));
     }
 
     private static int newColorValue(int v, int dv, Random r) {
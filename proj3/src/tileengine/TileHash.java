@@ -0,0 +1,99 @@
+package tileengine;
+
+import java.awt.Color;
+
+/**
+ * 64-bit fingerprints of tile grids (Zobrist hashing).
+ *
+ * Every combination of position and kind of tile gets a pseudo-random 64-bit key,
+ * and a grid's fingerprint is the XOR of the keys of all its cells. Because
+ * XOR undoes itself, changing one cell only takes two XORs:
+ *
+ *     hash ^= TileHash.of(x, y, oldTile) ^ TileHash.of(x, y, newTile);
+ *
+ * so a grid that is written through such an update always knows its
+ * fingerprint without ever looking at the whole grid again. Two grids with
+ * different fingerprints are different; two grids with the same fingerprint
+ * are the same except with a chance of about 1 in 2^64.
+ *
+ * The keys depend only on x, y and what the tile is: its character, colors,
+ * description and image path (see tileKey). They do not depend on
+ * TETile.id(), which follows the order tiles were created in, so the same
+ * grid has the same fingerprint in every run and JVM, whatever tiles were
+ * made before it. An empty (null) cell has key 0.
+ */
+public class TileHash {
+
+    private TileHash() {
+    }
+
+    /**
+     * @param x X coordinate of a cell
+     * @param y Y coordinate of a cell
+     * @param tile the tile in the cell, or null
+     * @return the key of that tile in that cell
+     */
+    public static long of(int x, int y, TETile tile) {
+        if (tile == null) {
+            return 0;
+        }
+        return mix(tile.hashKey() + mix(((long) x << 32) | (y & 0xffffffffL)));
+    }
+
+    /**
+     * Computes the part of a tile's keys that depends on the tile, from its
+     * contents only. TETile computes it once, when the tile is created.
+     * @param character the tile's character
+     * @param textColor its text color, or null
+     * @param backgroundColor its background color, or null
+     * @param description its description, or null
+     * @param filepath its image path, or null
+     * @return a 64-bit value that is the same for equal contents in every JVM
+     */
+    static long tileKey(char character, Color textColor, Color backgroundColor,
+                        String description, String filepath) {
+        long h = mix(character);
+        h = mix(h ^ (textColor == null ? 0 : textColor.getRGB() & 0xffffffffL));
+        h = mix(h ^ (backgroundColor == null ? 0 : backgroundColor.getRGB() & 0xffffffffL));
+        h = mix(h ^ (description == null ? 0 : description.hashCode()));
+        return mix(h ^ (filepath == null ? 0 : filepath.hashCode()));
+    }
+
+    // SplitMix64 step
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Computes a grid's fingerprint from scratch.
+     * @param grid the grid, indexed [x][y]
+     * @return the XOR of the keys of all its cells
+     */
+    public static long of(TETile[][] grid) {
+        return of(grid, 0, 0, grid.length - 1, grid[0].length - 1);
+    }
+
+    /**
+     * Computes the fingerprint of a rectangle of a grid, clipped to the grid.
+     * XOR it out before drawing into the rectangle and back in afterwards to
+     * update a whole-grid fingerprint after a bulk write.
+     * @param grid the grid, indexed [x][y]
+     * @param x0 left column
+     * @param y0 bottom row
+     * @param x1 right column (inclusive)
+     * @param y1 top row (inclusive)
+     * @return the XOR of the keys of the cells in the rectangle
+     */
+    public static long of(TETile[][] grid, int x0, int y0, int x1, int y1) {
+        long hash = 0;
+        for (int x = Math.max(0, x0); x <= Math.min(grid.length - 1, x1); x++) {
+            for (int y = Math.max(0, y0); y <= Math.min(grid[x].length - 1, y1); y++) {
+                hash ^= of(x, y, grid[x][y]);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,132 @@
+package tileengine;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Gives every distinct kind of tile a small, stable integer id.
+ *
+ * Two tiles are the same kind when they have the same character, text color,
+ * background color, description and image. Tiles are registered as they are
+ * created (see the TETile constructors); the first tile of each kind becomes
+ * its canonical instance, and later tiles of the same kind get the same id.
+ *
+ * Ids are compact (0, 1, 2, ...) and handed out in creation order, except
+ * that registering any tile first loads Tileset. Its constants therefore
+ * always get ids 0 to 22 in declaration order (AVATAR is 0, GREEN is 22),
+ * however early another tile is made, and other tiles get ids from 23 on.
+ * Arrays indexed by id can therefore stand in for tiles in grids, saves and
+ * tables.
+ *
+ * Tileset is loaded before taking the registry's lock, never inside it or
+ * inside the registry's own initialization: a thread creating a tile while
+ * another is loading Tileset waits for Tileset to finish, and the two
+ * classes' initialization never wait on each other.
+ *
+ * - intern(t) returns the canonical tile of t's kind, so variants made over
+ *   and over (e.g. by TETile.colorVariant) collapse into one object
+ * - byId(id) is the reverse lookup
+ */
+public class TileRegistry {
+
+    // Id of each kind of tile, and the canonical tile of each id
+    private static final Map<Key, Integer> BY_KEY = new HashMap<>();
+    private static final List<TETile> BY_ID = new ArrayList<>();
+
+    private TileRegistry() {
+    }
+
+    /**
+     * Registers a newly created tile. Called by every TETile constructor.
+     * @param t the tile, with all fields but its id set
+     * @return the id of t's kind
+     */
+    static int register(TETile t) {
+        // Loads Tileset first; a no-op once it is loaded, or while Tileset itself is loading on this thread
+        Tileset.load();
+        return add(t);
+    }
+
+    // Gives t the id of its kind, a new one if it is the first of its kind
+    private static synchronized int add(TETile t) {
+        Key key = new Key(t);
+        Integer id = BY_KEY.get(key);
+        if (id != null) {
+            return id;
+        }
+        BY_KEY.put(key, BY_ID.size());
+        BY_ID.add(t);
+        return BY_ID.size() - 1;
+    }
+
+    /**
+     * @param t any tile
+     * @return the canonical tile with the same id as t (the first one created)
+     */
+    public static synchronized TETile intern(TETile t) {
+        return BY_ID.get(t.id());
+    }
+
+    /**
+     * @param id a tile id
+     * @return the canonical tile with that id
+     * @throws IllegalArgumentException if no tile has that id
+     */
+    public static synchronized TETile byId(int id) {
+        if (id < 0 || id >= BY_ID.size()) {
+            throw new IllegalArgumentException("No tile with id " + id);
+        }
+        return BY_ID.get(id);
+    }
+
+    /**
+     * @return the canonical tile of every id handed out so far, in id order
+     */
+    public static synchronized List<TETile> tiles() {
+        return new ArrayList<>(BY_ID);
+    }
+
+    /**
+     * @return number of ids handed out so far; every id is below this
+     */
+    public static synchronized int size() {
+        return BY_ID.size();
+    }
+
+    // The value of a tile that decides its id
+    private static final class Key {
+        private final char character;
+        private final Color textColor;
+        private final Color backgroundColor;
+        private final String description;
+        private final String filepath;
+
+        Key(TETile t) {
+            this.character = t.character;
+            this.textColor = t.textColor();
+            this.backgroundColor = t.backgroundColor();
+            this.description = t.description();
+            this.filepath = t.filepath();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return character == k.character && Objects.equals(textColor, k.textColor)
+                    && Objects.equals(backgroundColor, k.backgroundColor)
+                    && Objects.equals(description, k.description) && Objects.equals(filepath, k.filepath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(character, textColor, backgroundColor, description, filepath);
+        }
+    }
+}
@@ -65,4 +65,11 @@ public class Tileset {
     public static final TETile NAPKIN = new TETile('/', new Color(219, 213, 215), new Color(230, 223, 225), "white");
     public static final TETile ORANGE = new TETile('/', new Color(186, 116, 11), new Color(252, 152, 3), "orange");
     public static final TETile GREEN = new TETile('▒', new Color(15, 51, 10), new Color(26, 97, 16), "green");
+
+    /**
+     * Does nothing, but calling it makes sure every tile above has been
+     * created, so they get the first tile ids (see TileRegistry).
+     */
+    static void load() {
+    }
 }
\ No newline at end of file
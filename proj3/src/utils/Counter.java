@@ -0,0 +1,34 @@
+package utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as the number of ticks played. Safe to
+ * increment from many threads at once.
+ */
+public class Counter {
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds n to the count.
+     *
+     * @param n The amount to add, at least 0
+     */
+    public void add(long n) {
+        count.add(n);
+    }
+
+    /**
+     * @return the count so far
+     */
+    public long count() {
+        return count.sum();
+    }
+}
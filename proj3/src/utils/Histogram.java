@@ -0,0 +1,113 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of latencies in nanoseconds, kept the way HdrHistogram does:
+ * every power of two is split into SUB_BUCKETS equal buckets, so any recorded
+ * value is known to within 1 / SUB_BUCKETS (about 6%) of itself, from one
+ * nanosecond up to hours, in a fixed array of a few hundred counters.
+ *
+ * Recording is a couple of atomic increments and never allocates, so it can
+ * sit in the game loop. Safe to record from many threads at once.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value.
+     *
+     * @param nanos The value, in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Records the time since start.
+     *
+     * @param start A System.nanoTime() reading
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of the values recorded, in nanoseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return largest value recorded, in nanoseconds
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which a fraction q of the recorded values fall,
+     * to within the bucket width.
+     *
+     * @param q The quantile, from 0 to 1
+     * @return the quantile in nanoseconds, or 0 if nothing was recorded
+     */
+    public long quantile(double q) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return max();
+    }
+
+    // Bucket holding v: values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS per power of two
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) - SUB_BUCKETS);
+    }
+
+    // Largest value that falls in bucket i
+    private static long highest(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        long sub = i % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
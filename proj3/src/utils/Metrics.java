@@ -0,0 +1,140 @@
+package utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A registry of named counters, gauges and latency histograms that can be
+ * written out in the Prometheus text format.
+ *
+ * Metrics are created on first use and shared after that, so code that wants
+ * to count something just asks for it by name:
+ *
+ *     static final Histogram SAVE = Metrics.registry().histogram("byow_save_seconds", "Time to write a save");
+ *
+ * Names should follow the Prometheus conventions (snake_case, a _total suffix
+ * on counters, a unit suffix on the rest). Histograms record nanoseconds and
+ * are exported in seconds, as summaries with a few quantiles. MetricsExporter
+ * writes the default registry to a file and serves it over HTTP.
+ */
+public class Metrics {
+    private static final Metrics REGISTRY = new Metrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+    // One registered metric and its help text
+    private static final class Entry {
+        final String help;
+        final Object metric;
+
+        Entry(String help, Object metric) {
+            this.help = help;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * @return the registry the game reports to
+     */
+    public static Metrics registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name Metric name
+     * @param help One line describing it
+     * @return the counter
+     */
+    public Counter counter(String name, String help) {
+        return get(name, help, Counter.class, new Counter());
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     *
+     * @param name Metric name, ending in _seconds
+     * @param help One line describing it
+     * @return the histogram
+     */
+    public Histogram histogram(String name, String help) {
+        return get(name, help, Histogram.class, new Histogram());
+    }
+
+    /**
+     * Registers a gauge whose value is read from value whenever the metrics are
+     * written. Registering the same name again replaces the function.
+     *
+     * @param name Metric name
+     * @param help One line describing it
+     * @param value Function giving the current value
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        entries.put(name, new Entry(help, value));
+    }
+
+    // The metric registered under name, registering fresh if there is none
+    private <T> T get(String name, String help, Class<T> type, T fresh) {
+        Object metric = entries.computeIfAbsent(name, n -> new Entry(help, fresh)).metric;
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format, in name order.
+     *
+     * @param out Where to write
+     * @param timestamp Milliseconds since the epoch to stamp every sample with, or
+     *                  a negative number for no timestamps
+     */
+    public void write(Writer out, long timestamp) {
+        String stamp = timestamp < 0 ? "\n" : " " + timestamp + "\n";
+        try {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                String name = e.getKey();
+                Object metric = e.getValue().metric;
+                out.write("# HELP " + name + " " + e.getValue().help + "\n");
+                if (metric instanceof Counter) {
+                    out.write("# TYPE " + name + " counter\n");
+                    out.write(name + " " + ((Counter) metric).count() + stamp);
+                } else if (metric instanceof Histogram) {
+                    Histogram h = (Histogram) metric;
+                    out.write("# TYPE " + name + " summary\n");
+                    for (double q : QUANTILES) {
+                        out.write(name + "{quantile=\"" + q + "\"} " + seconds(h.quantile(q)) + stamp);
+                    }
+                    out.write(name + "_sum " + seconds(h.sum()) + stamp);
+                    out.write(name + "_count " + h.count() + stamp);
+                } else {
+                    out.write("# TYPE " + name + " gauge\n");
+                    out.write(name + " " + number(((DoubleSupplier) metric).getAsDouble()) + stamp);
+                }
+            }
+            out.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // Nanoseconds as seconds
+    private static String seconds(long nanos) {
+        return number(nanos / 1e9);
+    }
+
+    // A sample value as Prometheus expects it
+    private static String number(double v) {
+        if (Double.isNaN(v)) {
+            return "NaN";
+        } else if (Double.isInfinite(v)) {
+            return v > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(v);
+    }
+}
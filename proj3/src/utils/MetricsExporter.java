@@ -0,0 +1,180 @@
+package utils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets a metrics registry out of the process, in the Prometheus text format:
+ *
+ * - optionally, every interval, a snapshot (with timestamps) is appended to a
+ *   local file; once the file reaches maxBytes it is rolled over to file.1,
+ *   file.1 to file.2 and so on, keeping a fixed number of old files. It is
+ *   off unless a file is given.
+ * - optionally, http://127.0.0.1:port/metrics serves the current values, for
+ *   a Prometheus server or curl on the same machine. It only listens on the
+ *   loopback address and is off unless a port is given.
+ *
+ * Both run on daemon threads, so they never keep the game from exiting.
+ */
+public class MetricsExporter implements Closeable {
+    private final Metrics metrics;
+    private final Path file;
+    private final long maxBytes;
+    private final int backups;
+    private final ScheduledExecutorService timer;
+    private final HttpServer server;
+    private final ExecutorService httpThread;
+
+    /**
+     * Starts exporting.
+     *
+     * @param metrics The registry to export
+     * @param file File to append snapshots to, or null for none
+     * @param intervalMillis Time between snapshots
+     * @param maxBytes Size at which the file is rolled over
+     * @param backups Number of rolled over files to keep
+     * @param port Port for the HTTP endpoint, 0 for any free port, or negative for none
+     */
+    public MetricsExporter(Metrics metrics, Path file, long intervalMillis, long maxBytes, int backups, int port) {
+        this.metrics = metrics;
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.backups = backups;
+        if (port >= 0) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            server.createContext("/metrics", exchange -> {
+                StringWriter text = new StringWriter();
+                metrics.write(text, -1);
+                byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            httpThread = Executors.newSingleThreadExecutor(daemon("metrics-http"));
+            server.setExecutor(httpThread);
+            server.start();
+        } else {
+            server = null;
+            httpThread = null;
+        }
+        if (file != null) {
+            timer = Executors.newSingleThreadScheduledExecutor(daemon("metrics-file"));
+            timer.scheduleAtFixedRate(this::dump, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timer = null;
+        }
+    }
+
+    /**
+     * Starts exporting the default registry as configured by system properties:
+     *
+     * - byow.metrics.file: file to append snapshots to, e.g. metrics.prom (default none)
+     * - byow.metrics.interval: seconds between snapshots (default 15)
+     * - byow.metrics.port: port for the HTTP endpoint (default none)
+     *
+     * The file rolls over at 1 MiB, keeping 3 old files.
+     *
+     * @return the running exporter
+     */
+    public static MetricsExporter fromProperties() {
+        String file = System.getProperty("byow.metrics.file", "");
+        long interval = Long.parseLong(System.getProperty("byow.metrics.interval", "15"));
+        String port = System.getProperty("byow.metrics.port");
+        return new MetricsExporter(Metrics.registry(), file.isEmpty() ? null : Paths.get(file),
+                interval * 1000, 1 << 20, 3, port == null ? -1 : Integer.parseInt(port));
+    }
+
+    /**
+     * Appends a snapshot to the file now, rolling it over first if it is full.
+     */
+    public synchronized void dump() {
+        if (file == null) {
+            return;
+        }
+        try {
+            if (Files.exists(file) && Files.size(file) >= maxBytes) {
+                roll();
+            }
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                metrics.write(out, System.currentTimeMillis());
+            }
+        } catch (IOException | RuntimeException ex) {
+            // A full disk must not take the game down; try again next interval
+            System.err.println("Could not write metrics to " + file + ": " + ex);
+        }
+    }
+
+    // Shifts file.(i) to file.(i + 1), dropping the oldest, then file to file.1
+    private void roll() throws IOException {
+        for (int i = backups - 1; i >= 1; i--) {
+            Path from = backup(i);
+            if (Files.exists(from)) {
+                Files.move(from, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (backups > 0) {
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+    }
+
+    // The i-th rolled over file
+    private Path backup(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i);
+    }
+
+    /**
+     * @return the port the HTTP endpoint listens on, or -1 if there is none
+     */
+    public int port() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Stops exporting, writing one last snapshot to the file.
+     */
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            dump();
+        }
+        if (server != null) {
+            server.stop(0);
+            httpThread.shutdownNow();
+        }
+    }
+
+    // Names threads and marks them as daemons
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,207 @@
+import core.Session;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The golden seed corpus: a few thousand seeds, each with the fingerprint of
+ * the game it starts (Session.fingerprint, covering both worlds, the carrots
+ * and the spawned avatars), plus the p95 time it took to generate one.
+ *
+ * WorldGenTests.goldenCorpusTest regenerates every seed and fails if any
+ * fingerprint changed, i.e. if some seed no longer gives players the world
+ * they know. The p95 generation time is only checked when asked for with
+ * -Dcorpus.p95Factor=F: the test then also fails if it got more than F
+ * times slower than the recorded baseline. The baseline was measured on
+ * one machine, so the check is only meaningful on comparable hardware.
+ *
+ * The corpus lives in tests/golden-seeds.txt, one "seed fingerprint" pair per
+ * line with the fingerprint in hex, after a "# p95Nanos=..." header. After a
+ * change that is meant to alter generation, rewrite it with
+ *
+ *     java GoldenCorpus [file] [seeds]
+ *
+ * (defaults: tests/golden-seeds.txt 4000) and commit the new file.
+ */
+public class GoldenCorpus {
+
+    // Where the corpus is kept, relative to proj3
+    public static final Path FILE = Paths.get("tests", "golden-seeds.txt");
+
+    // Allowed slowdown of p95 generation time over the baseline; <= 0 (the default) turns the check off
+    public static final double P95_FACTOR = Double.parseDouble(System.getProperty("corpus.p95Factor", "0"));
+
+    // Seeds generated (and thrown away) before timing starts, so the JIT has warmed up
+    private static final int WARM_UP = 300;
+
+    String[] seeds;        // Seed strings, e.g. "n123s"
+    long[] fingerprints;   // Session fingerprint of each seed
+    long[] nanos;          // Time taken to generate each seed, or null if not measured
+    long p95Nanos;         // 95th percentile of nanos
+
+    private GoldenCorpus(String[] seeds, long[] fingerprints, long[] nanos, long p95Nanos) {
+        this.seeds = seeds;
+        this.fingerprints = fingerprints;
+        this.nanos = nanos;
+        this.p95Nanos = p95Nanos;
+    }
+
+    /**
+     * Picks the seeds of a new corpus: 1 to count / 2, then random seeds over the
+     * whole positive long range (drawn from a fixed generator, so always the same).
+     *
+     * @param count number of seeds
+     * @return the seed strings
+     */
+    public static String[] seeds(int count) {
+        String[] seeds = new String[count];
+        Random rand = new Random(20231130);
+        for (int i = 0; i < count; i++) {
+            long seed = i < count / 2 ? i + 1 : rand.nextLong() >>> 1;
+            seeds[i] = "n" + seed + "s";
+        }
+        return seeds;
+    }
+
+    /**
+     * Generates a new game for every seed, in parallel with one worker per core.
+     *
+     * @param seeds the seed strings
+     * @return the fingerprint and generation time of each seed
+     */
+    public static GoldenCorpus generate(String[] seeds) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < Math.min(WARM_UP, seeds.length); i++) {
+                Session.newGame(seeds[i]);
+            }
+
+            // One task per block of seeds, so the tasks themselves cost nothing
+            int block = Math.max(1, seeds.length / (threads * 8));
+            long[] fingerprints = new long[seeds.length];
+            long[] nanos = new long[seeds.length];
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int from = 0; from < seeds.length; from += block) {
+                int start = from;
+                int end = Math.min(seeds.length, from + block);
+                tasks.add(() -> {
+                    for (int i = start; i < end; i++) {
+                        long t = System.nanoTime();
+                        Session session = Session.newGame(seeds[i]);
+                        nanos[i] = System.nanoTime() - t;
+                        fingerprints[i] = session.fingerprint();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                task.get();
+            }
+            return new GoldenCorpus(seeds, fingerprints, nanos, percentile(nanos, 95));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a corpus written by write.
+     *
+     * @param file the corpus file
+     * @return the recorded seeds, fingerprints and p95 time (nanos is null)
+     */
+    public static GoldenCorpus read(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        long p95 = 0;
+        List<String> seeds = new ArrayList<>();
+        List<Long> fingerprints = new ArrayList<>();
+        for (String line : lines) {
+            if (line.startsWith("# p95Nanos=")) {
+                p95 = Long.parseLong(line.substring("# p95Nanos=".length()).trim());
+            } else if (!line.isBlank() && !line.startsWith("#")) {
+                String[] parts = line.trim().split(" ");
+                seeds.add(parts[0]);
+                fingerprints.add(Long.parseUnsignedLong(parts[1], 16));
+            }
+        }
+        long[] prints = new long[fingerprints.size()];
+        for (int i = 0; i < prints.length; i++) {
+            prints[i] = fingerprints.get(i);
+        }
+        return new GoldenCorpus(seeds.toArray(new String[0]), prints, null, p95);
+    }
+
+    /**
+     * Writes the corpus as text.
+     *
+     * @param file where to write it
+     */
+    public void write(Path file) {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("# Golden seed corpus: seed, Session.fingerprint() in hex. Regenerate with GoldenCorpus.main.");
+            out.println("# p95Nanos=" + p95Nanos);
+            for (int i = 0; i < seeds.length; i++) {
+                out.println(seeds[i] + " " + Long.toHexString(fingerprints[i]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Lists every seed whose fingerprint differs from the golden one.
+     *
+     * @param golden the recorded corpus, over the same seeds
+     * @return one "seed: expected ..., got ..." line per changed seed
+     */
+    public List<String> changedFrom(GoldenCorpus golden) {
+        List<String> changed = new ArrayList<>();
+        for (int i = 0; i < seeds.length; i++) {
+            if (fingerprints[i] != golden.fingerprints[i]) {
+                changed.add(seeds[i] + ": expected " + Long.toHexString(golden.fingerprints[i])
+                        + ", got " + Long.toHexString(fingerprints[i]));
+            }
+        }
+        return changed;
+    }
+
+    // p-th percentile of the values, by nearest rank
+    private static long percentile(long[] values, int p) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public static void main(String[] args) {
+        Path file = args.length > 0 ? Paths.get(args[0]) : FILE;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+
+        GoldenCorpus corpus = generate(seeds(count));
+        corpus.write(file);
+        System.out.printf("%d seeds, p95 %.3f ms per game, written to %s%n", count, corpus.p95Nanos / 1e6, file);
+    }
+}
@@ -1,8 +1,63 @@
 import core.AutograderBuddy;
+import core.CarrotWorld;
+import core.Coord;
+import core.DistanceField;
+import core.DimensionManager;
+import core.DistanceFields;
+import core.DuckFlock;
+import core.HierarchicalPathfinder;
+import core.Hud;
+import core.MemorySaveStore;
+import core.MoveHistory;
+import core.Replay;
+import core.ReplayEngine;
+import core.ReplayReport;
+import core.RoomGraph;
+import core.SaveStore;
+import core.Session;
+import core.TileFlags;
+import core.TitleScreen;
+import core.WorldDump;
+import core.WorldResult;
 import edu.princeton.cs.algs4.StdDraw;
 import org.junit.jupiter.api.Test;
+import tileengine.ChunkedGrid;
+import tileengine.EntityLayer;
+import tileengine.TEImageRenderer;
 import tileengine.TERenderer;
 import tileengine.TETile;
+import tileengine.TileHash;
+import tileengine.TileRegistry;
+import tileengine.Tileset;
+import utils.Histogram;
+import utils.Metrics;
+import utils.MetricsExporter;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -69,25 +124,50 @@ public class WorldGenTests {
 
     /**
      * Test for save and load functionality.
-     * 
-     * This test should validate the persistence system by:
-     * 1. Starting a game and making some moves
-     * 2. Saving the game state
-     * 3. Loading the saved state
-     * 4. Verifying that the loaded state matches the expected state
-     * 
-     * TODO: Implement comprehensive save/load testing
+     *
+     * Starting a game, moving and saving with ":q" leaves a save in the
+     * store, and loading that save and making more moves gives the same
+     * world as playing all the moves in one game without saving.
      */
     @Test
     public void basicSaveTest() {
-        // TODO: Write a test that calls getWorldFromInput twice:
-        // 1. First call: "n123swasd:q" (new game, move, save and quit)
-        // 2. Second call: "lwasd" (load game, move)
-        // This test should validate:
-        // - Game state is properly saved
-        // - Saved state can be loaded correctly
-        // - Avatar positions are preserved
-        // - Carrot states are maintained
+        // Save into memory so the test never touches ./save.txt
+        SaveStore store = new MemorySaveStore();
+        AutograderBuddy.getWorldFromInput("n123swasd:q", store);
+        assertThat(store.exists()).isTrue();
+
+        // Loading and moving must match playing the same moves without saving
+        assertThat(AutograderBuddy.getWorldFromInput("lwasd", store))
+                .isEqualTo(AutograderBuddy.getWorldFromInput("n123swasdwasd", new MemorySaveStore()));
+    }
+
+    /**
+     * Runs many save/load round trips on several threads at once.
+     *
+     * Each round trip has its own in-memory save store, so the round trips
+     * cannot see each other's saves no matter how they interleave.
+     */
+    @Test
+    public void parallelSaveTest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> roundTrips = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String seed = "n" + (1000 + i) + "s";
+                roundTrips.add(pool.submit(() -> {
+                    SaveStore store = new MemorySaveStore();
+                    AutograderBuddy.getWorldFromInput(seed + "ddww:q", store);
+                    TETile[][] loaded = AutograderBuddy.getWorldFromInput("laass", store);
+                    TETile[][] played = AutograderBuddy.getWorldFromInput(seed + "ddwwaass", new MemorySaveStore());
+                    return TETile.toString(loaded).equals(TETile.toString(played));
+                }));
+            }
+            for (Future<Boolean> roundTrip : roundTrips) {
+                assertThat(roundTrip.get()).isTrue();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
     }
 
     /**
@@ -108,7 +188,7 @@ public class WorldGenTests {
         
         // Test that loading from save produces the same result as playing from start
         // This assertion validates save/load consistency
-        assertThat(AutograderBuddy.getWorldFromInput("N999SD")).isEqualTo(AutograderBuddy.getWorldFromInput("l:q"));
+        assertThat(AutograderBuddy.getFingerprintFromInput("N999SD")).isEqualTo(AutograderBuddy.getFingerprintFromInput("l:q"));
 
         // Additional comprehensive tests (commented out for development)
         /*
@@ -132,4 +212,1064 @@ public class WorldGenTests {
             .isEqualTo(AutograderBuddy.getWorldFromInput("l"));
         */
     }
+
+    /**
+     * Test for parallel batch evaluation.
+     *
+     * Runs several scripts through getWorldsFromInputs and checks that each
+     * result lines up with its input and matches a sequential run. The ":q"
+     * scripts save into their own namespaces, so they must not disturb each other.
+     */
+    @Test
+    public void batchTest() {
+        List<String> inputs = List.of("n123swasdwasd", "N999SD:Q", "n1234567890123456789sddww:q", "n42sdddwww");
+        List<WorldResult> results = AutograderBuddy.getWorldsFromInputs(inputs);
+
+        assertThat(results.size()).isEqualTo(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertThat(results.get(i).input()).isEqualTo(inputs.get(i));
+            assertThat(results.get(i).nanos() > 0).isTrue();
+        }
+        assertThat(results.get(0).world()).isEqualTo(AutograderBuddy.getWorldFromInput("n123swasdwasd"));
+        assertThat(results.get(3).world()).isEqualTo(AutograderBuddy.getWorldFromInput("n42sdddwww"));
+    }
+
+    /**
+     * Test for world dump sinks.
+     *
+     * The same world dumped through a plain Writer and through a GZIP stream
+     * must decode to the same text, with one line per world column, ending
+     * in '\n' whatever the platform.
+     */
+    @Test
+    public void worldDumpTest() throws Exception {
+        StringWriter text = new StringWriter();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        WorldDump plain = WorldDump.to(text);
+        WorldDump gzip = WorldDump.gzip(compressed);
+
+        TETile[][] tiles = AutograderBuddy.getWorldFromInput("n123swasd", new MemorySaveStore(), plain);
+        AutograderBuddy.getWorldFromInput("n123swasd", new MemorySaveStore(), gzip);
+        plain.close();
+        gzip.close();
+
+        String unzipped = new String(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))
+                .readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(unzipped).isEqualTo(text.toString());
+        assertThat(text.toString().split("\n")[0].length()).isEqualTo(tiles[0].length);
+    }
+
+    /**
+     * Test for the headless replay engine.
+     *
+     * Plays a scripted session tick by tick while recording it, then replays
+     * the recording (after a round trip through its text format) and checks
+     * that the replay ends in exactly the same state. A recording with a
+     * wrong final hash must be reported as a mismatch.
+     */
+    @Test
+    public void replayTest() {
+        String keys = "wasdijklddddwwwwaaaassssllllkkkk";
+        Session session = Session.newGame("n4242s");
+        Replay recording = new Replay("n4242s", null);
+        for (int tick = 0; tick < 2000; tick++) {
+            char key = tick % 7 == 0 ? keys.charAt((tick / 7) % keys.length()) : Session.NO_KEY;
+            if (key != Session.NO_KEY) {
+                recording.record(session.ticks(), key);
+            }
+            session.tick(key);
+        }
+        recording.finish(session.ticks(), session.stateHash());
+
+        StringBuilder text = new StringBuilder("n4242s\n-\n" + recording.finalTick() + "," + recording.finalHash() + "\n");
+        for (int i = 0; i < recording.size(); i++) {
+            text.append(recording.tickAt(i)).append(',').append((int) recording.keyAt(i)).append('\n');
+        }
+        ReplayReport report = ReplayEngine.run(Replay.parse(text.toString()));
+        assertThat(report.ticks()).isEqualTo(2000L);
+        assertThat(report.matches()).isTrue();
+        assertThat(report.ticksPerSecond() > 0).isTrue();
+
+        String wrongHash = text.toString().replace("," + recording.finalHash() + "\n",
+                "," + (recording.finalHash() + 1) + "\n");
+        assertThat(ReplayEngine.run(Replay.parse(wrongHash)).matches()).isFalse();
+    }
+
+    /**
+     * Test for the entity layer.
+     *
+     * Entities that share a tile stack with the newest on top, moving and
+     * removing them keeps the stacks right (also across the position table
+     * growing), and compositing never writes to the terrain.
+     */
+    @Test
+    public void entityLayerTest() {
+        TETile[][] terrain = AutograderBuddy.getWorldFromInput("n123s", new MemorySaveStore(), WorldDump.none());
+        TETile[][] before = TETile.copyOf(terrain);
+        EntityLayer layer = new EntityLayer(terrain.length, terrain[0].length);
+
+        int duck = layer.add(Tileset.DUCK, 10, 10);
+        int avatar = layer.add(Tileset.AVATAR, 10, 10);
+        assertThat(layer.top(10, 10)).isEqualTo(avatar);
+        assertThat(layer.below(avatar)).isEqualTo(duck);
+
+        List<Integer> crowd = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            crowd.add(layer.add(Tileset.DUCK, i % terrain.length, i % terrain[0].length));
+        }
+        for (int i = 0; i < crowd.size(); i += 2) {
+            layer.remove(crowd.get(i));
+        }
+        layer.move(avatar, 11, 10);
+        assertThat(layer.top(10, 10)).isEqualTo(duck);
+        assertThat(layer.top(11, 10)).isEqualTo(avatar);
+        assertThat(layer.size()).isEqualTo(1002);
+
+        TETile[][] frame = layer.composite(terrain, new TETile[terrain.length][terrain[0].length]);
+        assertThat(frame[11][10]).isEqualTo(Tileset.AVATAR);
+        assertThat(frame[10][10]).isEqualTo(Tileset.DUCK);
+        assertThat(TETile.toString(terrain)).isEqualTo(TETile.toString(before));
+    }
+
+    /**
+     * Test for the tile flag table.
+     *
+     * Walkability is by tile identity, ground and boundary by character, so a
+     * color variant of DIRT is ground but not walkable.
+     */
+    @Test
+    public void tileFlagsTest() {
+        assertThat(TileFlags.of(Tileset.HALLDIRT) & TileFlags.WALKABLE).isEqualTo(TileFlags.WALKABLE);
+        assertThat(TileFlags.of(Tileset.FLOWER) & TileFlags.WALKABLE).isEqualTo(0);
+        assertThat(TileFlags.of(Tileset.GRAY) & TileFlags.PICNIC_WALKABLE).isEqualTo(TileFlags.PICNIC_WALKABLE);
+        assertThat(TileFlags.of(Tileset.CARROT) & TileFlags.COLLECTIBLE).isEqualTo(TileFlags.COLLECTIBLE);
+        assertThat(AutograderBuddy.isGroundTile(Tileset.RED)).isTrue();
+        assertThat(AutograderBuddy.isBoundaryTile(Tileset.LOCKED_DOOR)).isTrue();
+        assertThat(AutograderBuddy.isBoundaryTile(Tileset.DIRT)).isFalse();
+
+        TETile variant = TETile.colorVariant(Tileset.DIRT, 10, 10, 10, new Random(1));
+        assertThat(AutograderBuddy.isGroundTile(variant)).isTrue();
+        assertThat(TileFlags.of(variant) & TileFlags.WALKABLE).isEqualTo(0);
+    }
+
+    /**
+     * Test for the tile registry.
+     *
+     * Tileset constants get the first ids in declaration order, tiles with the
+     * same value share an id and are equal, tiles that only share a character
+     * are not, and color variants are interned.
+     */
+    @Test
+    public void tileRegistryTest() {
+        assertThat(Tileset.AVATAR.id()).isEqualTo(0);
+        assertThat(Tileset.GREEN.id()).isEqualTo(22);
+        assertThat(TileRegistry.byId(Tileset.CARROT.id())).isEqualTo(Tileset.CARROT);
+
+        TETile dirt = new TETile(Tileset.DIRT, new Color(117, 68, 43));
+        assertThat(dirt.id()).isEqualTo(Tileset.DIRT.id());
+        assertThat(dirt).isEqualTo(Tileset.DIRT);
+        assertThat(TileRegistry.intern(dirt) == Tileset.DIRT).isTrue();
+        assertThat(Tileset.HALLDIRT).isNotEqualTo(Tileset.DIRT);
+        assertThat(Tileset.WHITE).isNotEqualTo(Tileset.GRASS);
+
+        TETile first = TETile.colorVariant(Tileset.WATER, 20, 20, 20, new Random(7));
+        TETile second = TETile.colorVariant(Tileset.WATER, 20, 20, 20, new Random(7));
+        assertThat(first == second).isTrue();
+        assertThat(TileRegistry.byId(first.id()) == first).isTrue();
+    }
+
+    /**
+     * Test for the distance field cache.
+     *
+     * Following a field's directions from a reachable tile walks downhill to a
+     * target. Asking again with the same targets reuses the field, and tile
+     * changes patch it in place (without another search) to exactly what a
+     * fresh search over the changed world gives.
+     */
+    @Test
+    public void distanceFieldTest() {
+        Session session = Session.newGame("n4242s");
+        DistanceField carrots = session.carrotField();
+        DistanceFields cache = session.distances();
+        assertThat(carrots.hasTargets()).isTrue();
+        assertThat(session.carrotField() == carrots).isTrue();
+        assertThat(cache.computations()).isEqualTo(1);
+
+        TETile[][] terrain = new TETile[5][3];
+        for (TETile[] column : terrain) {
+            Arrays.fill(column, Tileset.DIRT);
+        }
+        DistanceFields small = new DistanceFields(terrain, TileFlags.WALKABLE);
+        DistanceField field = small.field("corner", List.of(new Coord(0, 0, 0)));
+        assertThat(field.distance(4, 2)).isEqualTo(6);
+        assertThat(field.direction(4, 2)).isEqualTo('a');
+
+        int x = 4;
+        int y = 2;
+        for (int steps = 0; steps < 6; steps++) {
+            char key = field.direction(x, y);
+            x += key == 'd' ? 1 : key == 'a' ? -1 : 0;
+            y += key == 'w' ? 1 : key == 's' ? -1 : 0;
+        }
+        assertThat(x).isEqualTo(0);
+        assertThat(y).isEqualTo(0);
+
+        terrain[2][0] = Tileset.DIRT;
+        small.tileChanged(2, 0);
+        assertThat(small.field("corner", List.of(new Coord(0, 0, 0))) == field).isTrue();
+        assertThat(small.computations()).isEqualTo(1);
+
+        terrain[1][0] = Tileset.FLOWER;
+        terrain[1][1] = Tileset.FLOWER;
+        small.tileChanged(1, 0);
+        small.tileChanged(1, 1);
+        assertThat(small.field("corner", List.of(new Coord(0, 0, 0))).distance(4, 0)).isEqualTo(8);
+        assertThat(small.computations()).isEqualTo(1);
+
+        TETile[][] maze = new TETile[40][30];
+        for (TETile[] column : maze) {
+            Arrays.fill(column, Tileset.DIRT);
+        }
+        List<Coord> corners = List.of(new Coord(0, 0, 0), new Coord(39, 29, 0));
+        DistanceFields patched = new DistanceFields(maze, TileFlags.WALKABLE);
+        patched.field("corners", corners);
+        patched.field("middle", 20, 15);
+        Random random = new Random(31);
+        for (int change = 0; change < 2000; change++) {
+            int cx = random.nextInt(40);
+            int cy = random.nextInt(30);
+            maze[cx][cy] = random.nextInt(3) == 0 ? Tileset.DIRT : Tileset.FLOWER;
+            patched.tileChanged(cx, cy);
+            if (change % 50 == 0) {
+                DistanceFields fresh = new DistanceFields(maze, TileFlags.WALKABLE);
+                DistanceField want = fresh.field("corners", corners);
+                DistanceField got = patched.field("corners", corners);
+                DistanceField wantMiddle = fresh.field("middle", 20, 15);
+                DistanceField gotMiddle = patched.field("middle", 20, 15);
+                for (int mx = 0; mx < 40; mx++) {
+                    for (int my = 0; my < 30; my++) {
+                        assertThat(got.distance(mx, my)).isEqualTo(want.distance(mx, my));
+                        assertThat(gotMiddle.distance(mx, my)).isEqualTo(wantMiddle.distance(mx, my));
+                    }
+                }
+            }
+        }
+        assertThat(patched.computations()).isEqualTo(2);
+    }
+
+    /**
+     * Test for the duck flock.
+     *
+     * Ducks never share a tile with each other or the avatars, and ducks
+     * following the gardener end up closer to it than they started.
+     */
+    @Test
+    public void duckFlockTest() {
+        Session session = Session.newGame("n4242s");
+        DuckFlock flock = session.ducks();
+        flock.spawn(20, DuckFlock.WANDER);
+        flock.spawn(20, DuckFlock.FOLLOW);
+        flock.spawn(20, DuckFlock.CHASE);
+
+        long before = 0;
+        for (int i = 20; i < 40; i++) {
+            before += session.avatarField().distance(flock.x(i), flock.y(i));
+        }
+        for (int tick = 0; tick < 300; tick++) {
+            session.tick(Session.NO_KEY);
+        }
+        long after = 0;
+        for (int i = 20; i < 40; i++) {
+            after += session.avatarField().distance(flock.x(i), flock.y(i));
+        }
+        assertThat(after < before).isTrue();
+
+        int duckTiles = 0;
+        for (TETile[] column : session.frame()) {
+            for (TETile tile : column) {
+                if (tile == Tileset.DUCK) {
+                    duckTiles += 1;
+                }
+            }
+        }
+        assertThat(duckTiles).isEqualTo(flock.size() + 1);
+    }
+
+    /**
+     * Test for the hierarchical pathfinder.
+     *
+     * Paths from every room of a generated world to room 0 start and end on
+     * the room centers, take one step at a time over tiles that are walkable
+     * in the real world (not just in the room graph), and are at most a few
+     * steps longer than the shortest path; rooms room 0 cannot be reached
+     * from get no path. On a lattice of rooms too large to keep as tiles,
+     * a path across the whole graph walks the same way.
+     */
+    @Test
+    public void roomGraphPathTest() {
+        Session session = Session.newGame("n4242s");
+        RoomGraph rooms = session.rooms();
+        HierarchicalPathfinder pathfinder = session.pathfinder();
+        assertThat(rooms.corridors()).isGreaterThan(0);
+
+        // Paths from every room to room 0 walk the world and are about as short as possible
+        int gx = rooms.centerX(0);
+        int gy = rooms.centerY(0);
+        DistanceField exact = session.distances().field("room 0", gx, gy);
+        for (int r = 1; r < rooms.rooms(); r++) {
+            int[] path = pathfinder.path(rooms.centerX(r), rooms.centerY(r), gx, gy);
+            int shortest = exact.distance(rooms.centerX(r), rooms.centerY(r));
+            if (shortest == DistanceField.UNREACHABLE) {
+                assertThat(path).isNull();
+                continue;
+            }
+            assertThat(path[0]).isEqualTo(rooms.centerX(r));
+            assertThat(path[1]).isEqualTo(rooms.centerY(r));
+            assertThat(path[path.length - 2]).isEqualTo(gx);
+            assertThat(path[path.length - 1]).isEqualTo(gy);
+            for (int i = 0; i < path.length; i += 2) {
+                if (i > 0) {
+                    assertThat(Math.abs(path[i] - path[i - 2]) + Math.abs(path[i + 1] - path[i - 1])).isEqualTo(1);
+                }
+                assertThat(rooms.walkable(path[i], path[i + 1])).isTrue();
+                assertThat(exact.distance(path[i], path[i + 1])).isNotEqualTo(DistanceField.UNREACHABLE);
+            }
+            assertThat(path.length / 2 - 1).isAtMost(shortest + 4);
+        }
+
+        // A graph too large to keep as tiles: a 60x60 lattice of rooms, 3000x3000 tiles
+        RoomGraph lattice = new RoomGraph();
+        for (int i = 0; i < 60; i++) {
+            for (int j = 0; j < 60; j++) {
+                lattice.addRoom(i * 50 + 5, j * 50 + 5, i * 50 + 30, j * 50 + 30, i * 50 + 10 + j % 7, j * 50 + 10 + i % 7);
+            }
+        }
+        for (int i = 0; i < 60; i++) {
+            for (int j = 0; j < 60; j++) {
+                int room = i * 60 + j;
+                if (i + 1 < 60) {
+                    lattice.addCorridor(lattice.centerX(room), lattice.centerY(room),
+                            lattice.centerX(room + 60), lattice.centerY(room + 60));
+                }
+                if (j + 1 < 60 && (i + j) % 3 != 0) {
+                    lattice.addCorridor(lattice.centerX(room), lattice.centerY(room),
+                            lattice.centerX(room + 1), lattice.centerY(room + 1));
+                }
+            }
+        }
+        HierarchicalPathfinder far = new HierarchicalPathfinder(lattice, lattice::walkable);
+        int[] path = far.path(lattice.centerX(0), lattice.centerY(0), lattice.centerX(3599), lattice.centerY(3599));
+        assertThat(path.length / 2 - 1).isAtLeast(
+                Math.abs(lattice.centerX(3599) - lattice.centerX(0)) + Math.abs(lattice.centerY(3599) - lattice.centerY(0)));
+        assertThat(path[0]).isEqualTo(lattice.centerX(0));
+        assertThat(path[1]).isEqualTo(lattice.centerY(0));
+        assertThat(path[path.length - 2]).isEqualTo(lattice.centerX(3599));
+        assertThat(path[path.length - 1]).isEqualTo(lattice.centerY(3599));
+        for (int i = 0; i < path.length; i += 2) {
+            if (i > 0) {
+                assertThat(Math.abs(path[i] - path[i - 2]) + Math.abs(path[i + 1] - path[i - 1])).isEqualTo(1);
+            }
+            assertThat(lattice.walkable(path[i], path[i + 1])).isTrue();
+        }
+        int[] route = far.route(lattice.centerX(0), lattice.centerY(0), lattice.centerX(3599), lattice.centerY(3599));
+        assertThat(route.length).isLessThan(path.length);
+    }
+
+    /**
+     * Test for world fingerprints.
+     *
+     * A batch of inputs gives each world the fingerprint of its tiles, the
+     * same one a single replay of the input reports, and two worlds have the
+     * same fingerprint exactly when they have the same tiles. Writing a tile
+     * updates the fingerprint by XOR with the old and new tile's hashes.
+     */
+    @Test
+    public void fingerprintTest() {
+        List<String> inputs = List.of("n1s", "n1sd", "n1sdd", "n2s", "n4242swwddssaa", "N999SDDDWWWDDD",
+                "n5197880843569031643swwwwwwwwwwww", "n2024sddddddddssssssaaaa");
+        List<WorldResult> results = AutograderBuddy.getWorldsFromInputs(inputs);
+        for (WorldResult result : results) {
+            assertThat(result.fingerprint()).isEqualTo(TileHash.of(result.world()));
+            assertThat(AutograderBuddy.getFingerprintFromInput(result.input(), new MemorySaveStore()))
+                    .isEqualTo(result.fingerprint());
+        }
+        for (int i = 1; i < results.size(); i++) {
+            assertThat(Arrays.deepEquals(results.get(i).world(), results.get(i - 1).world()))
+                    .isEqualTo(results.get(i).fingerprint() == results.get(i - 1).fingerprint());
+        }
+
+        // Writing a tile and writing it back restores the fingerprint
+        TETile[][] grid = {{Tileset.GRASS, Tileset.DIRT}, {Tileset.FLOWER, Tileset.DIRT}};
+        long before = TileHash.of(grid);
+        long changed = before ^ TileHash.of(1, 1, Tileset.DIRT) ^ TileHash.of(1, 1, Tileset.CARROT);
+        grid[1][1] = Tileset.CARROT;
+        assertThat(TileHash.of(grid)).isEqualTo(changed);
+        assertThat(changed).isNotEqualTo(before);
+    }
+
+    /**
+     * Test for the scanline-drawn carrot world.
+     *
+     * The fingerprints below were taken from CarrotWorld before it was drawn
+     * with Raster, when every shape was tested cell by cell: after building
+     * the world for each seed and after each of three respawns. A respawned
+     * carrot is drawn over the old one, so smaller carrots leave orange tiles
+     * behind and the fingerprints also cover what each respawn overwrites.
+     */
+    @Test
+    public void carrotWorldFingerprintTest() {
+        String[] seeds = {"n123s", "N999S", "n5197880843569031643s"};
+        long[][] expected = {
+            {7363029761574170600L, 6849408024975837146L, 1238874320110683665L, 7349436001265326084L},
+            {7363029761574170600L, 1238874320110683665L, -3405878548535304291L, -8697775093885853242L},
+            {-6070627411141257586L, 1238874320110683665L, -3405878548535304291L, 1238874320110683665L},
+        };
+        for (int i = 0; i < seeds.length; i++) {
+            CarrotWorld carrots = new CarrotWorld(seeds[i]);
+            for (int visit = 0; visit < expected[i].length; visit++) {
+                if (visit > 0) {
+                    carrots.respawnCarrot();
+                }
+                assertThat(carrots.fingerprint()).isEqualTo(expected[i][visit]);
+            }
+        }
+    }
+
+    /**
+     * Determinism regression test over the golden seed corpus.
+     *
+     * Regenerates every seed in tests/golden-seeds.txt in parallel and checks
+     * that each still gives the recorded fingerprint. With
+     * -Dcorpus.p95Factor=F it also checks that the p95 generation time is
+     * within F times the recorded one; by default timing is not checked.
+     */
+    @Test
+    public void goldenCorpusTest() {
+        GoldenCorpus golden = GoldenCorpus.read(GoldenCorpus.FILE);
+        assertThat(golden.seeds.length).isAtLeast(1000);
+
+        GoldenCorpus current = GoldenCorpus.generate(golden.seeds);
+        assertThat(current.changedFrom(golden)).isEmpty();
+        if (GoldenCorpus.P95_FACTOR > 0) {
+            assertThat((double) current.p95Nanos).isAtMost(golden.p95Nanos * GoldenCorpus.P95_FACTOR);
+        }
+    }
+
+    /**
+     * Test for the offscreen renderer.
+     *
+     * Text tiles are drawn on their background color, 16 pixels per tile with
+     * y = 0 at the bottom, image tiles whose picture is missing fall back to
+     * text, and null tiles are rejected as by TERenderer.
+     */
+    @Test
+    public void imageRendererTest() {
+        TETile missing = new TETile('?', Color.white, new Color(1, 2, 3), "missing", "./no/such/picture.png");
+        TETile green = new TETile(' ', Color.white, new Color(0, 200, 0), "green");
+        TETile black = new TETile(' ', Color.white, Color.black, "black");
+        TETile[][] grid = {{green, black}, {missing, green}};
+        TEImageRenderer renderer = new TEImageRenderer();
+        renderer.initialize(2, 2);
+        renderer.renderFrame(grid);
+
+        BufferedImage image = renderer.image();
+        assertThat(image.getWidth()).isEqualTo(32);
+        assertThat(image.getHeight()).isEqualTo(32);
+        assertThat(image.getRGB(0, 31) & 0xffffff).isEqualTo(0x00c800);
+        assertThat(image.getRGB(0, 0) & 0xffffff).isEqualTo(0);
+        assertThat(image.getRGB(16, 31) & 0xffffff).isEqualTo(0x010203);
+
+        grid[1][1] = null;
+        boolean rejected = false;
+        try {
+            renderer.renderFrame(grid);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertThat(rejected).isTrue();
+    }
+
+    /**
+     * Test for the Flight Recorder events.
+     *
+     * While a recording is running, generating a session (carrot world
+     * included, which is built lazily) emits one event per generation phase
+     * (whose room counts agree with the room graph) and every tick emits a
+     * tick event.
+     */
+    @Test
+    public void flightRecorderTest() throws Exception {
+        Path file = Files.createTempFile("byow", ".jfr");
+        Session session;
+        try (Recording recording = new Recording()) {
+            recording.enable("byow.GenerationPhase");
+            recording.enable("byow.Tick");
+            recording.start();
+            session = Session.newGame("n4242s");
+            for (int i = 0; i < 50; i++) {
+                session.tick(i % 2 == 0 ? 'd' : 'w');
+            }
+            session.fingerprint();  // Builds carrot world (or waits for the background build)
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> phases = new ArrayList<>();
+        int ticks = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals("byow.Tick")) {
+                ticks += 1;
+            } else {
+                assertThat(event.getLong("seed")).isEqualTo(4242L);
+                String phase = event.getString("world") + "." + event.getString("phase");
+                phases.add(phase);
+                if (phase.equals("main.rooms")) {
+                    assertThat(event.getInt("rooms")).isEqualTo(session.rooms().rooms());
+                    assertThat(event.getInt("attempts")).isGreaterThan(event.getInt("rooms"));
+                }
+            }
+        }
+        Files.delete(file);
+        assertThat(ticks).isEqualTo(50);
+        assertThat(phases).containsAtLeast("main.background", "main.rooms", "main.pickDirt", "main.hallways",
+                "main.pickCarrot", "carrot.base", "carrot.carrot");
+        assertThat(Collections.frequency(phases, "main.pickDirt")).isEqualTo(session.rooms().rooms());
+    }
+
+    /**
+     * Test for the metrics registry and exporter.
+     *
+     * Histogram quantiles are within a bucket of the truth, the registry
+     * writes valid Prometheus text, the exporter's file rolls over when
+     * full, and its HTTP endpoint serves the same metrics on localhost.
+     */
+    @Test
+    public void metricsTest() throws Exception {
+        Metrics metrics = new Metrics();
+        Histogram latency = metrics.histogram("test_latency_seconds", "Test latencies");
+        for (long v = 1; v <= 100_000; v++) {
+            latency.record(v * 1000);
+        }
+        assertThat((double) latency.quantile(0.5)).isAtLeast(50_000_000 * 0.94);
+        assertThat((double) latency.quantile(0.5)).isAtMost(50_000_000 * 1.07);
+        assertThat(latency.quantile(0.99)).isAtMost(latency.max());
+        assertThat(latency.max()).isEqualTo(100_000_000L);
+        assertThat(metrics.histogram("test_latency_seconds", "again")).isEqualTo(latency);
+
+        metrics.counter("test_events_total", "Test events").add(3);
+        metrics.gauge("test_level", "Test level", () -> 2.5);
+        StringWriter text = new StringWriter();
+        metrics.write(text, -1);
+        String out = text.toString();
+        assertThat(out.contains("# TYPE test_events_total counter\ntest_events_total 3\n")).isTrue();
+        assertThat(out.contains("test_level 2.5\n")).isTrue();
+        assertThat(out.contains("test_latency_seconds_count 100000\n")).isTrue();
+        assertThat(out.contains("test_latency_seconds{quantile=\"0.99\"}")).isTrue();
+
+        Path dir = Files.createTempDirectory("metrics");
+        Path file = dir.resolve("metrics.prom");
+        try (MetricsExporter exporter = new MetricsExporter(metrics, file, 3_600_000, 100, 2, 0)) {
+            for (int i = 0; i < 5; i++) {
+                exporter.dump();
+            }
+            assertThat(Files.exists(dir.resolve("metrics.prom.2"))).isTrue();
+            assertThat(Files.exists(dir.resolve("metrics.prom.3"))).isFalse();
+
+            URL url = new URL("http://127.0.0.1:" + exporter.port() + "/metrics");
+            try (InputStream in = url.openStream()) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(out);
+            }
+        }
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Test that the steady-state game loop allocates nothing.
+     *
+     * A first session walks the gardener from carrot to carrot (through
+     * carrot world and back) for 10,000 ticks, recording its keys and
+     * warming up the JIT. Fresh sessions with the same seed then replay
+     * those keys (with carrot world already built), and one of them must
+     * not allocate a single byte on the way. Every session records its
+     * moves in a MoveHistory, as Game.play does. The history is warm only
+     * once it has been round its ring of keyframes, so each replay first
+     * plays the keys twice and rewinds to the start (keeping the keyframe
+     * slots and spare chunks), as a game does that has run for a while.
+     *
+     * Every tenth tick the replay also draws the frame with the headless
+     * TEImageRenderer and updates the HUD, so the drawing code is held to
+     * the same rule. What this cannot cover is drawing to the screen:
+     * TERenderer, TETile.draw and Hud.draw go through StdDraw, which needs
+     * a display (and allocates inside itself), so those paths are not
+     * measured here. (The JIT itself occasionally allocates a few bytes
+     * when it recompiles a method, so a replay gets up to three tries; an
+     * allocation in the game code would show up in every one of them.)
+     */
+    @Test
+    public void allocationFreeTickTest() {
+        int ticks = 10_000;
+        char[] keys = new char[ticks];
+        Session recording = Session.newGame("n4242s");
+        recording.history();
+        TETile[][] main = recording.frame();
+        TEImageRenderer renderer = new TEImageRenderer();
+        renderer.initialize(main.length, main[0].length);
+        Hud hud = new Hud();
+        for (int t = 0; t < ticks; t++) {
+            DistanceField gardener = recording.avatarField();
+            char key = Session.NO_KEY;
+            for (int x = 0; x < main.length; x++) {
+                for (int y = 0; y < main[0].length; y++) {
+                    if (gardener.distance(x, y) == 0) {
+                        key = recording.carrotField().direction(x, y);
+                    }
+                }
+            }
+            keys[t] = key == Session.NO_KEY ? "wasd".charAt(t / 10 % 4) : key;
+            recording.tick(keys[t]);
+            if (t % 10 == 0) {
+                TETile[][] frame = recording.frame();
+                renderer.renderFrame(frame);
+                hud.update(frame, t % main.length, t % main[0].length, frame != main, false);
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 3 && allocated > 0; attempt++) {
+            Session session = Session.newGame("n4242s");
+            MoveHistory history = session.history();
+            TETile[][] mainFrame = session.frame();
+            session.fingerprint();  // Builds carrot world, which is allocated once, up front
+            for (int lap = 0; lap < 2; lap++) {
+                for (int t = 0; t < ticks; t++) {
+                    session.tick(keys[t]);
+                }
+                history.seek(0);
+            }
+            int carrotTicks = 0;
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int t = 0; t < ticks; t++) {
+                session.tick(keys[t]);
+                TETile[][] frame = session.frame();
+                if (frame != mainFrame) {
+                    carrotTicks += 1;
+                }
+                if (t % 10 == 0) {
+                    renderer.renderFrame(frame);
+                    hud.update(frame, t % main.length, t % main[0].length, frame != mainFrame, false);
+                }
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            assertThat(carrotTicks).isAtLeast(2 * Session.CARROT_TICKS);
+        }
+        assertThat(allocated).isEqualTo(0L);
+    }
+
+    /**
+     * Test for the HUD.
+     *
+     * Labels come from the tile table (one String per kind of tile, other
+     * tiles by description), and the HUD only asks to be redrawn when the
+     * label or colors change or the renderer drew over it.
+     */
+    @Test
+    public void hudTest() {
+        assertThat(Hud.label(Tileset.FLOWER)).isEqualTo("Current Tile: garden wall");
+        assertThat(Hud.label(Tileset.HALLDIRT)).isEqualTo("Current Tile: dirt");
+        assertThat(Hud.label(Tileset.ORANGE)).isEqualTo("Current Tile: carrot");
+        assertThat(Hud.label(Tileset.GRASS)).isEqualTo("Current Tile: grass");
+        assertThat(Hud.label(Tileset.DIRT) == Hud.label(Tileset.DIRT)).isTrue();
+        TETile stone = new TETile('o', Color.gray, Color.black, "hud test stone");
+        assertThat(Hud.label(stone)).isEqualTo("Current Tile: hud test stone");
+
+        TETile[][] world = new TETile[100][60];
+        for (TETile[] column : world) {
+            Arrays.fill(column, Tileset.GRASS);
+        }
+        world[10][10] = Tileset.DIRT;
+        world[11][10] = Tileset.HALLDIRT;
+        Hud hud = new Hud();
+        assertThat(hud.update(world, 5.5, 5.5, false, false)).isTrue();
+        assertThat(hud.update(world, 5.5, 5.5, false, false)).isFalse();
+        assertThat(hud.update(world, 6.2, 5.9, false, false)).isFalse();
+        assertThat(hud.update(world, 10.5, 10.5, false, false)).isTrue();
+        assertThat(hud.update(world, 11.5, 10.5, false, false)).isFalse();
+        world[11][10] = Tileset.AVATAR;
+        assertThat(hud.update(world, 11.5, 10.5, false, false)).isTrue();
+        assertThat(hud.update(world, 11.5, 10.5, true, false)).isTrue();
+        assertThat(hud.update(world, 11.5, 10.5, true, true)).isTrue();
+        assertThat(hud.update(world, -3, 200, true, false)).isTrue();
+        assertThat(hud.update(world, 150, 70, true, false)).isFalse();
+    }
+
+    /**
+     * Test for the cached title screen.
+     *
+     * The artwork is drawn into a 512x512 image with the grass showing in
+     * the corners and the sun in the middle, and survives a round trip
+     * through a cache file; a damaged cache file is ignored.
+     */
+    @Test
+    public void titleScreenTest() throws Exception {
+        BufferedImage art = TitleScreen.render();
+        assertThat(art.getWidth()).isEqualTo(512);
+        assertThat(art.getHeight()).isEqualTo(512);
+        assertThat(new Color(art.getRGB(1, 1))).isEqualTo(new Color(108, 162, 87));
+        assertThat(new Color(art.getRGB(215, 265))).isEqualTo(new Color(246, 167, 21));
+
+        Path cache = Files.createTempFile("title", ".png");
+        try {
+            javax.imageio.ImageIO.write(art, "png", cache.toFile());
+            BufferedImage read = TitleScreen.read(cache);
+            assertThat(read).isNotNull();
+            assertThat(read.getRGB(256, 300)).isEqualTo(art.getRGB(256, 300));
+            assertThat(read.getRGB(100, 400)).isEqualTo(art.getRGB(100, 400));
+
+            Files.write(cache, new byte[] {1, 2, 3});
+            assertThat(TitleScreen.read(cache)).isNull();
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
+    /**
+     * Test for starting a game with both worlds generated at once.
+     *
+     * New and loaded sessions built in parallel are the same as the ones
+     * built one world after the other, and preloading every tile works
+     * without a window.
+     */
+    @Test
+    public void parallelStartupTest() {
+        for (String seed : new String[] {"n1s", "n123s", "n987654321s"}) {
+            Session serial = Session.newGame(seed);
+            Session parallel = Session.newGameAsync(seed).join();
+            assertThat(parallel.fingerprint()).isEqualTo(serial.fingerprint());
+            assertThat(parallel.stateHash()).isEqualTo(serial.stateHash());
+        }
+
+        SaveStore store = new MemorySaveStore();
+        AutograderBuddy.getWorldFromInput("n123sddwwaass:q", store);
+        Session loaded = Session.load(new MemorySaveStore(store.read()));
+        Session loadedAsync = Session.loadAsync(new MemorySaveStore(store.read())).join();
+        assertThat(loadedAsync.stateHash()).isEqualTo(loaded.stateHash());
+
+        TERenderer.preload(TileRegistry.tiles());
+    }
+
+    /**
+     * Test for building carrot world only when it is needed.
+     *
+     * A new session has no carrot world; walking towards a carrot starts
+     * building it before the gardener gets there, and the session ends up
+     * the same as one whose carrot world was built straight away.
+     */
+    @Test
+    public void lazyCarrotWorldTest() {
+        Session lazy = Session.newGame("n4242s");
+        Session eager = Session.newGame("n4242s");
+        eager.fingerprint();
+        assertThat(lazy.carrotWorldStarted()).isFalse();
+        assertThat(eager.carrotWorldStarted()).isTrue();
+
+        // Walk to the nearest carrot, stopping one step short of it
+        TETile[][] main = lazy.frame();
+        int carrotDistance = Integer.MAX_VALUE;
+        char key = Session.NO_KEY;
+        while (carrotDistance > 1) {
+            DistanceField carrots = lazy.carrotField();
+            DistanceField gardener = lazy.avatarField();
+            for (int x = 0; x < 100; x++) {
+                for (int y = 0; y < 60; y++) {
+                    if (gardener.distance(x, y) == 0) {
+                        key = carrots.direction(x, y);
+                        carrotDistance = carrots.distance(x, y);
+                    }
+                }
+            }
+            if (carrotDistance > 1) {
+                if (carrotDistance > Session.PREFETCH_TILES) {
+                    assertThat(lazy.carrotWorldStarted()).isFalse();
+                }
+                lazy.tick(key);
+                eager.tick(key);
+            }
+        }
+        assertThat(lazy.carrotWorldStarted()).isTrue();
+
+        // Step on it, walk around carrot world, and come back
+        lazy.tick(key);
+        eager.tick(key);
+        lazy.tick(Session.NO_KEY);
+        eager.tick(Session.NO_KEY);
+        assertThat(lazy.frame() == main).isFalse();
+        for (char move : "wasd".repeat(Session.CARROT_TICKS / 2).toCharArray()) {
+            lazy.tick(move);
+            eager.tick(move);
+        }
+        assertThat(lazy.frame() == main).isTrue();
+        assertThat(lazy.stateHash()).isEqualTo(eager.stateHash());
+        assertThat(lazy.fingerprint()).isEqualTo(eager.fingerprint());
+    }
+
+    /**
+     * Test for the dimension manager.
+     *
+     * Visiting more dimensions than the limit keeps only the most recently
+     * visited ones in memory; the others are packed and come back with every
+     * change made to them, without being generated again. Pinned dimensions
+     * are never evicted. Past the packed byte limit the oldest packed forms
+     * are spilled to disk, and come back from there just the same.
+     */
+    @Test
+    public void dimensionManagerTest() {
+        TETile[][] main = Session.newGame("n123s").frame();
+        byte[] packed = DimensionManager.pack(main);
+        assertThat(packed.length).isLessThan(main.length * main[0].length);
+        assertThat(DimensionManager.unpack(packed)).isEqualTo(main);
+
+        Session session = Session.newGame("n123s");
+        DimensionManager dims = session.dimensions();
+        int[] generated = new int[50];
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            dims.add("picnic " + i, () -> {
+                generated[n] += 1;
+                TETile[][] scene = new TETile[40][30];
+                for (TETile[] column : scene) {
+                    Arrays.fill(column, Tileset.RED);
+                }
+                scene[n % 40][n % 30] = Tileset.CARROT;
+                return scene;
+            });
+        }
+        dims.visit("main");
+        for (int i = 0; i < 50; i++) {
+            dims.visit("picnic " + i)[0][0] = Tileset.WHITE;
+            assertThat(dims.residentCount()).isAtMost(DimensionManager.DEFAULT_RESIDENT);
+        }
+        assertThat(dims.isResident("main")).isTrue();
+        assertThat(dims.isResident("picnic 0")).isFalse();
+        assertThat(dims.isResident("picnic 49")).isTrue();
+        assertThat(dims.packedBytes()).isLessThan(46L * 40);
+
+        TETile[][] again = dims.visit("picnic 7");
+        assertThat(again[0][0]).isEqualTo(Tileset.WHITE);
+        assertThat(again[7][7]).isEqualTo(Tileset.CARROT);
+        assertThat(again[1][1]).isEqualTo(Tileset.RED);
+        assertThat(generated[7]).isEqualTo(1);
+        assertThat(dims.isResident("picnic 45")).isFalse();
+        assertThat(dims.visit("carrot")).isNotNull();
+        assertThat(dims.residentCount()).isAtMost(DimensionManager.DEFAULT_RESIDENT);
+
+        DimensionManager small = new DimensionManager(2, 100);
+        for (int i = 0; i < 20; i++) {
+            int n = i;
+            small.add("scene " + i, () -> {
+                generated[n] += 1;
+                TETile[][] scene = new TETile[40][30];
+                for (TETile[] column : scene) {
+                    Arrays.fill(column, Tileset.GRASS);
+                }
+                return scene;
+            });
+        }
+        for (int i = 0; i < 20; i++) {
+            small.visit("scene " + i)[i][i] = Tileset.CARROT;
+            assertThat(small.packedBytes()).isAtMost(100L);
+        }
+        assertThat(small.isSpilled("scene 0")).isTrue();
+        assertThat(small.isSpilled("scene 17")).isFalse();
+        TETile[][] spilled = small.visit("scene 3");
+        assertThat(small.isSpilled("scene 3")).isFalse();
+        assertThat(spilled[3][3]).isEqualTo(Tileset.CARROT);
+        assertThat(spilled[4][4]).isEqualTo(Tileset.GRASS);
+        assertThat(generated[3]).isEqualTo(2);  // Once for "picnic 3", once for "scene 3"
+        for (int i = 0; i < 20; i++) {
+            small.remove("scene " + i);
+        }
+        assertThat(small.packedBytes()).isEqualTo(0L);
+        assertThat(small.residentCount()).isEqualTo(0);
+    }
+
+    /**
+     * Test for copy-on-write world snapshots.
+     *
+     * A snapshot of a 4096x4096 world shares every chunk; a write on either
+     * side copies only the chunk it lands in, and neither side sees the
+     * other's writes. Snapshotting into an old grid hands the chunks only it
+     * had to later copies instead of making new ones.
+     */
+    @Test
+    public void chunkedSnapshotTest() {
+        TETile[][] world = Session.newGame("n123s").frame();
+        ChunkedGrid small = ChunkedGrid.of(world);
+        assertThat(small.toArray()).isEqualTo(world);
+
+        ChunkedGrid big = new ChunkedGrid(4096, 4096, Tileset.GRASS);
+        assertThat(big.chunkCount()).isEqualTo(4096 / ChunkedGrid.CHUNK * 4096 / ChunkedGrid.CHUNK);
+        big.set(10, 10, Tileset.DIRT);
+        ChunkedGrid before = big.snapshot();
+        long copies = big.copies();
+
+        big.set(10, 11, Tileset.AVATAR);
+        big.set(10, 10, Tileset.DIRT);
+        assertThat(big.copies()).isEqualTo(copies + 1);
+        assertThat(before.get(10, 11)).isEqualTo(Tileset.GRASS);
+        assertThat(big.get(10, 11)).isEqualTo(Tileset.AVATAR);
+
+        before.set(4000, 4000, Tileset.CARROT);
+        assertThat(before.copies()).isEqualTo(1L);
+        assertThat(big.get(4000, 4000)).isEqualTo(Tileset.GRASS);
+
+        ChunkedGrid again = big.snapshot();
+        big.set(10, 11, Tileset.DIRT);
+        assertThat(again.get(10, 11)).isEqualTo(Tileset.AVATAR);
+        assertThat(before.get(10, 10)).isEqualTo(Tileset.DIRT);
+
+        ChunkedGrid keyframe = small.snapshot();
+        small.set(0, 0, Tileset.CARROT);
+        long made = small.chunksCreated();
+        small.snapshotInto(keyframe);
+        small.set(0, 0, Tileset.DIRT);
+        assertThat(small.chunksCreated()).isEqualTo(made);
+        assertThat(keyframe.get(0, 0)).isEqualTo(Tileset.CARROT);
+        assertThat(small.get(0, 0)).isEqualTo(Tileset.DIRT);
+    }
+
+    /**
+     * Test for the move history.
+     *
+     * The gardener heads for the carrots, eating some in carrot world. Then
+     * moves are taken back and made again, near and far, and each time the
+     * session is in the state it was in before that move. Undo and redo keys
+     * replay the same way, and the history keeps at most its capacity.
+     */
+    @Test
+    public void moveHistoryTest() {
+        int moves = 1500;
+        Session session = Session.newGame("n4242s");
+        MoveHistory history = session.history();
+        TETile[][] main = session.frame();
+        long[] hashes = new long[moves + 1];
+        boolean[] inCarrot = new boolean[moves + 1];
+        for (int m = 0; m < moves; m++) {
+            DistanceField gardener = session.avatarField();
+            char key = "wasd".charAt(m / 10 % 4);
+            for (int x = 0; x < main.length; x++) {
+                for (int y = 0; y < main[0].length; y++) {
+                    if (gardener.distance(x, y) == 0) {
+                        char toCarrot = session.carrotField().direction(x, y);
+                        key = toCarrot == Session.NO_KEY ? key : toCarrot;
+                    }
+                }
+            }
+            hashes[m] = session.stateHash();
+            inCarrot[m] = session.frame() != main;
+            session.tick(key);
+        }
+        hashes[moves] = session.stateHash();
+        inCarrot[moves] = session.frame() != main;
+        long fingerprint = session.fingerprint();
+        assertThat(history.size()).isEqualTo((long) moves);
+        assertThat(history.bytesPer1000Moves()).isGreaterThan(0L);
+
+        // Every move, including those made standing on a carrot, one step at a time, then in jumps
+        for (int m = moves; m >= 0; m--) {
+            history.seek(m);
+            assertThat(session.stateHash()).isEqualTo(hashes[m]);
+            assertThat(session.frame() != main).isEqualTo(inCarrot[m]);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            int m = random.nextInt(moves + 1);
+            history.seek(m);
+            assertThat(session.stateHash()).isEqualTo(hashes[m]);
+            assertThat(session.frame() != main).isEqualTo(inCarrot[m]);
+        }
+        history.seek(moves);
+        assertThat(history.rewind(moves)).isEqualTo((long) moves);
+        assertThat(session.stateHash()).isEqualTo(hashes[0]);
+        assertThat(history.forward(moves)).isEqualTo((long) moves);
+        assertThat(session.stateHash()).isEqualTo(hashes[moves]);
+        assertThat(session.fingerprint()).isEqualTo(fingerprint);
+
+        session.tick(Session.UNDO_KEY);
+        assertThat(history.position()).isEqualTo(moves - 1L);
+        session.tick(Session.REDO_KEY);
+        assertThat(session.stateHash()).isEqualTo(hashes[moves]);
+
+        Replay replay = new Replay("n4242s", null);
+        Session played = Session.newGame("n4242s");
+        played.history();
+        String keys = "dddwwuuurdsssuaau";
+        for (int t = 0; t < keys.length(); t++) {
+            replay.record(t, keys.charAt(t));
+            played.tick(keys.charAt(t));
+        }
+        replay.finish(played.ticks(), played.stateHash());
+        assertThat(ReplayEngine.run(replay).matches()).isTrue();
+
+        for (int m = 0; m < MoveHistory.DEFAULT_CAPACITY; m++) {
+            session.tick("wasd".charAt(m / 7 % 4));
+        }
+        assertThat(history.size()).isEqualTo((long) MoveHistory.DEFAULT_CAPACITY);
+        assertThat(history.oldest()).isEqualTo((long) moves);
+        assertThat(history.rewind(Long.MAX_VALUE)).isEqualTo((long) MoveHistory.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Test for stable tile ids.
+     *
+     * In a class loader of its own, where Tileset has not been loaded yet, a
+     * tile made before touching Tileset still leaves AVATAR at id 0 and GREEN
+     * at id 22, and gets the first id after them.
+     */
+    @Test
+    public void stableTileIdsTest() throws Exception {
+        URL[] path = {TETile.class.getProtectionDomain().getCodeSource().getLocation(),
+            StdDraw.class.getProtectionDomain().getCodeSource().getLocation()};
+        try (URLClassLoader fresh = new URLClassLoader(path, ClassLoader.getPlatformClassLoader())) {
+            Class<?> tile = fresh.loadClass("tileengine.TETile");
+            Object first = tile.getConstructor(char.class, Color.class, Color.class, String.class)
+                    .newInstance('x', Color.red, Color.blue, "made before Tileset");
+            Class<?> tileset = fresh.loadClass("tileengine.Tileset");
+            Method id = tile.getMethod("id");
+            assertThat(id.invoke(tileset.getField("AVATAR").get(null))).isEqualTo(0);
+            assertThat(id.invoke(tileset.getField("GREEN").get(null))).isEqualTo(22);
+            assertThat(id.invoke(first)).isEqualTo(23);
+        }
+        assertThat(Tileset.AVATAR.id()).isEqualTo(0);
+        assertThat(Tileset.GREEN.id()).isEqualTo(22);
+    }
+
+    /**
+     * Test for fingerprints across runs.
+     *
+     * In a class loader of its own, where a different tile is created before
+     * anything else (shifting the ids of later tiles), a new game still has
+     * the same fingerprint as here, and as recorded in the golden corpus.
+     */
+    @Test
+    public void fingerprintIgnoresTileOrderTest() throws Exception {
+        URL[] path = {Session.class.getProtectionDomain().getCodeSource().getLocation(),
+            StdDraw.class.getProtectionDomain().getCodeSource().getLocation()};
+        try (URLClassLoader fresh = new URLClassLoader(path, ClassLoader.getPlatformClassLoader())) {
+            fresh.loadClass("tileengine.TETile").getConstructor(char.class, Color.class, Color.class, String.class)
+                    .newInstance('x', Color.red, Color.blue, "made first");
+            Object session = fresh.loadClass("core.Session").getMethod("newGame", String.class).invoke(null, "n1s");
+            Object fingerprint = session.getClass().getMethod("fingerprint").invoke(session);
+            assertThat(fingerprint).isEqualTo(Session.newGame("n1s").fingerprint());
+        }
+        TETile made = new TETile('x', Color.red, Color.blue, "made first");
+        assertThat(TileHash.of(3, 4, made)).isEqualTo(TileHash.of(3, 4, new TETile(made, Color.red)));
+        assertThat(TileHash.of(3, 4, made)).isNotEqualTo(TileHash.of(4, 3, made));
+    }
 }